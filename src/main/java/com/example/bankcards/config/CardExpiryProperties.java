@@ -0,0 +1,23 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "card.expiry")
+@Getter
+@Setter
+public class CardExpiryProperties {
+
+    private boolean enabled = true;
+    //Запуск сразу после полуночи: карты с active_till раньше сегодняшнего дня переводятся в EXPIRED
+    private String cron = "0 5 0 * * *";
+    //Сколько карт обновляется одним UPDATE; каждая пачка - отдельная короткая транзакция
+    private int chunkSize = 1000;
+    //Пауза перед повторным проходом, если все оставшиеся карты заняты переводами
+    private Duration lockedRetryDelay = Duration.ofSeconds(5);
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "idempotency")
+@Getter
+@Setter
+public class IdempotencyProperties {
+
+    //Сколько последних ответов держать в памяти; остальные читаются из idempotency_keys
+    private long cacheSize = 100_000;
+    //Сколько хранится ключ: повтор позже будет выполнен как новый запрос
+    private Duration ttl = Duration.ofHours(24);
+    private String cleanupCron = "0 15 * * * *";
+}
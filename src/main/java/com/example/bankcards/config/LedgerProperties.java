@@ -0,0 +1,18 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "ledger")
+@Getter
+@Setter
+public class LedgerProperties {
+
+    //Диапазон id карт, сверяемый или пересчитываемый за одну транзакцию
+    private int rebuildChunkSize = 10_000;
+    //Сколько расхождений возвращать в отчете сверки
+    private int maxReportedMismatches = 1_000;
+}
@@ -0,0 +1,52 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "outbox")
+@Getter
+@Setter
+public class OutboxProperties {
+
+    //Куда релей отправляет события: memory или file; для другого брокера объявляется свой бин OutboxSink
+    private String sink = "memory";
+    private Relay relay = new Relay();
+    private Memory memory = new Memory();
+    private File file = new File();
+    //Сколько хранятся отправленные события
+    private Duration retention = Duration.ofDays(7);
+    private String cleanupCron = "0 30 3 * * *";
+
+    @Getter
+    @Setter
+    public static class Relay {
+
+        private boolean enabled = true;
+        //Сколько событий забирается и отправляется за одну транзакцию
+        private int batchSize = 500;
+        //Сколько полных пачек подряд отправляется за один запуск, остаток - на следующем тике
+        private int maxBatchesPerTick = 20;
+        private Duration pollInterval = Duration.ofMillis(500);
+    }
+
+    @Getter
+    @Setter
+    public static class Memory {
+
+        //Старые события вытесняются, когда буфер заполнен
+        private int capacity = 10_000;
+    }
+
+    @Getter
+    @Setter
+    public static class File {
+
+        //События дописываются построчно в формате NDJSON
+        private String path = "outbox/transfer-events.ndjson";
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "retry.optimistic")
+@Getter
+@Setter
+public class RetryProperties {
+
+    //Всего попыток, включая первую
+    private int maxAttempts = 5;
+    private Duration initialBackoff = Duration.ofMillis(10);
+    private Duration maxBackoff = Duration.ofMillis(200);
+}
@@ -0,0 +1,66 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Set;
+
+@Configuration
+@ConfigurationProperties(prefix = "transfer")
+@Getter
+@Setter
+public class TransferProperties {
+
+    private ConcurrencyMode concurrencyMode = ConcurrencyMode.CONDITIONAL_UPDATE;
+
+    private Async async = new Async();
+
+    private Sequencer sequencer = new Sequencer();
+
+    public enum ConcurrencyMode {
+        //Списание и зачисление одним условным UPDATE без загрузки карт, количество затронутых строк - результат проверки
+        CONDITIONAL_UPDATE,
+
+        //Карты блокируются SELECT ... FOR UPDATE строго по возрастанию id, баланс меняется в памяти
+        PESSIMISTIC,
+
+        //Карты читаются без блокировок, запись проверяет версию строки; при конфликте перевод повторяется
+        OPTIMISTIC
+    }
+
+    @Getter
+    @Setter
+    public static class Async {
+
+        //POST /api/transfers только сохраняет PENDING-перевод и отвечает 202, балансы меняют воркеры
+        private boolean enabled = false;
+        private int workers = 4;
+        //Сколько переводов воркер забирает за один SELECT ... FOR UPDATE SKIP LOCKED
+        private int claimSize = 50;
+        private Duration pollInterval = Duration.ofMillis(200);
+        //Перевод, застрявший в PROCESSING дольше этого (воркер упал), забирается повторно
+        private Duration staleAfter = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Sequencer {
+
+        //POST /api/transfers проводится SequencedTransferEngine вместо синхронного пути
+        private boolean enabled = false;
+        //Число очередей-шардов; у каждого один поток-писатель
+        private int shards = 8;
+        private int queueCapacity = 10000;
+        //Сколько переводов писатель проводит одной транзакцией
+        private int maxBatchSize = 500;
+        //Сколько ждать места в переполненной очереди, прежде чем ответить 503
+        private Duration offerTimeout = Duration.ofMillis(500);
+        //Сколько ждать фиксации пачки с переводом, прежде чем ответить 503 с неизвестным исходом
+        private Duration resultTimeout = Duration.ofSeconds(5);
+        //Карты мерчантов, на которые зачисляют со многих карт: переводы на них идут в шард карты зачисления
+        private Set<Long> hotCards = Set.of();
+    }
+}
@@ -16,11 +16,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.springframework.http.HttpStatus.*;
@@ -69,6 +72,28 @@ public class AdminCardController {
     }
 
 
+    @Operation(
+            summary = "Выгрузить карты по сроку действия",
+            description = "Потоково возвращает все карты со сроком действия в заданном периоде (включительно) " +
+                    "в формате NDJSON: одна карта на строку, без пагинации. Требует прав администратора."
+    )
+    @ApiResponse(responseCode = "200",
+            description = "Выгрузка успешно начата",
+            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = CardDataAdminResponse.class))
+    )
+    @GetMapping(value = "/expiring", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportExpiringCards(
+            @Parameter(name = "from", description = "Начало периода", example = "2025-01-01", in = ParameterIn.QUERY)
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(name = "to", description = "Конец периода", example = "2025-03-31", in = ParameterIn.QUERY)
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> adminCardService.exportExpiring(from, to, out));
+    }
+
+
     @Operation(summary = "получить карту", description = "возвращает карту по id, требует прав администратора")
     @ApiResponse(responseCode = "200",
             description = "Карта успешно получена",
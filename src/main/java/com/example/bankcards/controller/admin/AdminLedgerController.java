@@ -0,0 +1,57 @@
+package com.example.bankcards.controller.admin;
+
+import com.example.bankcards.dto.adminFuncs.LedgerReconciliationResponse;
+import com.example.bankcards.service.LedgerService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/ledger")
+@Tag(name = "Admin ledger API", description = "Сверка балансов карт с журналом проводок")
+@SecurityRequirement(name = "bearerAuth")
+public class AdminLedgerController {
+
+    @Autowired
+    LedgerService ledgerService;
+
+    @Operation(
+            summary = "Сверить балансы с журналом",
+            description = "Сравнивает баланс каждой карты с суммой ее проводок, не изменяя данных. " +
+                    "Требует прав администратора."
+    )
+    @ApiResponse(responseCode = "200",
+            description = "Сверка выполнена",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                    schema = @Schema(implementation = LedgerReconciliationResponse.class))
+    )
+    @GetMapping("/verify")
+    public ResponseEntity<LedgerReconciliationResponse> verify() {
+        return ResponseEntity.ok(ledgerService.verify());
+    }
+
+    @Operation(
+            summary = "Пересчитать балансы из журнала",
+            description = "Записывает в карты балансы, посчитанные по журналу проводок. " +
+                    "Выполняется диапазонами карт, каждый в отдельной транзакции. Требует прав администратора."
+    )
+    @ApiResponse(responseCode = "200",
+            description = "Пересчет выполнен",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                    schema = @Schema(implementation = LedgerReconciliationResponse.class))
+    )
+    @PostMapping("/rebuild")
+    public ResponseEntity<LedgerReconciliationResponse> rebuild() {
+        return ResponseEntity.ok(ledgerService.rebuild());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.bankcards.controller.admin;
+
+import com.example.bankcards.dto.adminFuncs.TokenRevocationRequest;
+import com.example.bankcards.security.service.TokenRevocationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/tokens")
+@Tag(name = "Admin token API", description = "Отзыв токенов пользователей")
+@SecurityRequirement(name = "bearerAuth")
+public class AdminTokenController {
+
+    @Autowired
+    TokenRevocationService revocationService;
+
+    @Operation(
+            summary = "Отозвать токен",
+            description = "Отзывает JWT токен до истечения его срока по самому токену или по его jti. " +
+                    "Другие экземпляры приложения перестают принимать токен не позже чем через интервал обновления " +
+                    "фильтра отозванных токенов. Требует прав администратора."
+    )
+    @ApiResponse(responseCode = "204",
+            description = "Токен отозван")
+    @PostMapping("/revoke")
+    public ResponseEntity<Void> revoke(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Отзываемый токен или его jti",
+                    required = true,
+                    content = @Content(schema = @Schema(implementation = TokenRevocationRequest.class))
+            )
+            @RequestBody @Validated TokenRevocationRequest request) {
+        boolean byToken = StringUtils.hasText(request.token());
+        if (byToken == StringUtils.hasText(request.jti()))
+            throw new IllegalStateException("нужно передать либо токен, либо его jti");
+
+        if (byToken) revocationService.revoke(request.token());
+        else revocationService.revokeById(request.jti());
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(
+            summary = "Отозвать все токены пользователя",
+            description = "Отзывает все JWT токены пользователя, выданные до текущего момента, и удаляет его refresh токены. " +
+                    "Токены, полученные при следующем входе, принимаются как обычно. Требует прав администратора."
+    )
+    @ApiResponse(responseCode = "204",
+            description = "Токены пользователя отозваны")
+    @PostMapping("/users/{userId}/revoke")
+    public ResponseEntity<Void> revokeAllForUser(
+            @Parameter(name = "userId", description = "id пользователя", example = "1", in = ParameterIn.PATH)
+            @PathVariable("userId") Long userId) {
+        revocationService.revokeAllForUser(userId);
+        return ResponseEntity.noContent().build();
+    }
+}
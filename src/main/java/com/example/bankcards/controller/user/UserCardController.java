@@ -4,7 +4,7 @@ package com.example.bankcards.controller.user;
 import com.example.bankcards.dto.userFuncs.CardFilter;
 import com.example.bankcards.dto.userFuncs.CardSearchRequest;
 import com.example.bankcards.dto.userFuncs.CardDataUserResponse;
-import com.example.bankcards.entity.User;
+import com.example.bankcards.security.AuthenticatedUser;
 import com.example.bankcards.service.UserCardService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -78,7 +78,7 @@ public class UserCardController {
     @GetMapping
     public ResponseEntity<Page<CardDataUserResponse>> getCards(
             @Parameter(hidden = true)
-            @AuthenticationPrincipal User user,
+            @AuthenticationPrincipal AuthenticatedUser user,
             @ParameterObject
             CardFilter filter,
             @Parameter(hidden = true)
@@ -86,7 +86,7 @@ public class UserCardController {
                     size = 5,
                     direction = Sort.Direction.DESC)
             Pageable pageable) {
-        Page<CardDataUserResponse> cards = cardService.getCards(user.getId(), filter, pageable);
+        Page<CardDataUserResponse> cards = cardService.getCards(user.id(), filter, pageable);
         return ResponseEntity.ok(cards);
     }
 
@@ -103,7 +103,7 @@ public class UserCardController {
     @PostMapping("/search")
     public ResponseEntity<Page<CardDataUserResponse>> searchCardsWithCardNum(
             @Parameter(hidden = true)
-            @AuthenticationPrincipal User user,
+            @AuthenticationPrincipal AuthenticatedUser user,
             @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     description = "Параметры поиска карт",
                     required = true,
@@ -118,7 +118,7 @@ public class UserCardController {
             Pageable pageable) {
 
         Page<CardDataUserResponse> cards = cardService.searchCardsWithNumber(
-                user.getId(),
+                user.id(),
                 searchRequest,
                 pageable
         );
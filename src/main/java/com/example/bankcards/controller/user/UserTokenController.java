@@ -0,0 +1,45 @@
+package com.example.bankcards.controller.user;
+
+import com.example.bankcards.security.service.TokenRevocationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+@RestController
+@RequestMapping("api/tokens")
+@Tag(name = "User token API", description = "Отзыв собственного токена")
+@SecurityRequirement(name = "bearerAuth")
+public class UserTokenController {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    @Autowired
+    TokenRevocationService revocationService;
+
+    @Operation(
+            summary = "Выйти из системы",
+            description = "Отзывает токен, с которым выполнен запрос, и удаляет refresh токены пользователя. " +
+                    "После этого токен не принимается, даже если его срок еще не истек, и новый по refresh токену не выдается."
+    )
+    @ApiResponse(responseCode = "204",
+            description = "Токен отозван")
+    @PostMapping("/revoke")
+    public ResponseEntity<Void> revokeCurrent(
+            @Parameter(hidden = true)
+            @RequestHeader(AUTHORIZATION) String authorization) {
+        if (!authorization.startsWith(BEARER_PREFIX))
+            throw new IllegalStateException("ожидается заголовок Authorization вида \"Bearer <токен>\"");
+        revocationService.logout(authorization.substring(BEARER_PREFIX.length()).trim());
+        return ResponseEntity.noContent().build();
+    }
+}
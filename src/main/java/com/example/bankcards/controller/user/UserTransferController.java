@@ -1,10 +1,16 @@
 package com.example.bankcards.controller.user;
 
 
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.userFuncs.transfer.TransferBatchRequest;
+import com.example.bankcards.dto.userFuncs.transfer.TransferBatchResponse;
+import com.example.bankcards.dto.userFuncs.transfer.TransferHistorySlice;
 import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
 import com.example.bankcards.dto.userFuncs.transfer.TransferResponse;
+import com.example.bankcards.dto.userFuncs.transfer.TransferStatusResponse;
 import com.example.bankcards.dto.userFuncs.transfer.TransferSummary;
-import com.example.bankcards.entity.User;
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.service.TransferIdempotencyService;
 import com.example.bankcards.service.TransferService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -40,28 +46,96 @@ public class UserTransferController {
     @Autowired
     TransferService transferService;
 
+    @Autowired
+    TransferIdempotencyService transferIdempotencyService;
+
+    @Autowired
+    TransferProperties transferProperties;
+
     @Operation(
             summary = "Создать перевод средств",
             description = "Выполняет перевод средств между картами пользователя. " +
                     "Отправителем является текущий аутентифицированный пользователь. " +
-                    "Требуется достаточный баланс на карте отправителя."
+                    "Требуется достаточный баланс на карте отправителя. " +
+                    "В асинхронном режиме перевод только ставится в очередь со статусом PENDING, " +
+                    "результат можно узнать через GET /api/transfers/{id}. " +
+                    "Повтор запроса с тем же заголовком Idempotency-Key возвращает исходный ответ " +
+                    "и не выполняет перевод повторно."
     )
     @ApiResponse(responseCode = "201",
             description = "Перевод успешно создан и обработан",
             content = @Content(mediaType = APPLICATION_JSON_VALUE,
             schema = @Schema(implementation = TransferResponse.class))
     )
+    @ApiResponse(responseCode = "202",
+            description = "Перевод принят к асинхронной обработке",
+            content = @Content(mediaType = APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = TransferResponse.class))
+    )
     @PostMapping
     public ResponseEntity<TransferResponse> commitTransfer(
             @Parameter(hidden = true)
-            @AuthenticationPrincipal User user,
+            @AuthenticationPrincipal AuthenticatedUser user,
+            @Parameter(description = "Ключ идемпотентности, сгенерированный клиентом для этого перевода",
+                    example = "6f1c2a4e-3b7d-4f0a-9c1e-2d5b8a7e4f10",
+                    in = HEADER)
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     description = "Данные для выполнения перевода",
                     required = true,
                     content = @Content(schema = @Schema(implementation = TransferRequest.class))
             )
             @Valid @RequestBody TransferRequest request) {
-        return ResponseEntity.status(CREATED).body(transferService.createTransfer(request, user.getId()));
+        var status = transferProperties.getAsync().isEnabled() ? ACCEPTED : CREATED;
+        if (idempotencyKey != null)
+            return ResponseEntity.status(status)
+                    .body(transferIdempotencyService.createTransfer(request, user.id(), idempotencyKey));
+        if (transferProperties.getAsync().isEnabled())
+            return ResponseEntity.status(status).body(transferService.submitTransfer(request, user.id()));
+        return ResponseEntity.status(status).body(transferService.createTransfer(request, user.id()));
+    }
+
+    @Operation(
+            summary = "Получить состояние перевода",
+            description = "Возвращает текущий статус перевода текущего пользователя. " +
+                    "Используется для опроса переводов, принятых в асинхронном режиме."
+    )
+    @ApiResponse(responseCode = "200",
+            description = "Состояние перевода успешно получено",
+            content = @Content(mediaType = APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = TransferStatusResponse.class))
+    )
+    @GetMapping("/{id}")
+    public ResponseEntity<TransferStatusResponse> getTransferStatus(
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal AuthenticatedUser user,
+            @Parameter(description = "Идентификатор перевода", example = "789", in = PATH)
+            @PathVariable Long id) {
+        return ResponseEntity.ok(transferService.getTransferStatus(id, user.id()));
+    }
+
+    @Operation(
+            summary = "Выполнить пакет переводов",
+            description = "Выполняет до " + TransferBatchRequest.MAX_SIZE + " переводов между картами пользователя " +
+                    "в одной транзакции, по порядку. Перевод, не прошедший проверки, отклоняется " +
+                    "и не влияет на остальные; результат возвращается для каждого перевода."
+    )
+    @ApiResponse(responseCode = "200",
+            description = "Пакет обработан, результаты по каждому переводу в поле results",
+            content = @Content(mediaType = APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = TransferBatchResponse.class))
+    )
+    @PostMapping("/batch")
+    public ResponseEntity<TransferBatchResponse> commitTransferBatch(
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal AuthenticatedUser user,
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Переводы для выполнения",
+                    required = true,
+                    content = @Content(schema = @Schema(implementation = TransferBatchRequest.class))
+            )
+            @Valid @RequestBody TransferBatchRequest request) {
+        return ResponseEntity.ok(transferService.createTransferBatch(request, user.id()));
     }
 
     @Operation(
@@ -93,12 +167,37 @@ public class UserTransferController {
     @GetMapping
     public ResponseEntity<Page<TransferSummary>> getTransferHistory(
             @Parameter(hidden = true)
-            @AuthenticationPrincipal User user,
+            @AuthenticationPrincipal AuthenticatedUser user,
             @Parameter(hidden = true)
             @PageableDefault(
                     sort = "createdAt",
                     direction = Sort.Direction.DESC)
             Pageable pageable) {
-        return ResponseEntity.ok(transferService.getTransferHistory(pageable, user.getId()));
+        return ResponseEntity.ok(transferService.getTransferHistory(pageable, user.id()));
+    }
+
+    @Operation(
+            summary = "Получить историю переводов по курсору",
+            description = "Возвращает историю переводов текущего пользователя частями, новые переводы первыми. " +
+                    "Первая часть запрашивается с пустым cursor, следующая - со значением nextCursor " +
+                    "из предыдущего ответа. В отличие от постраничного режима, не считает общее количество " +
+                    "переводов и не замедляется на глубоких страницах."
+    )
+    @ApiResponse(responseCode = "200",
+            description = "Часть истории переводов успешно получена",
+            content = @Content(mediaType = APPLICATION_JSON_VALUE,
+                    schema = @Schema(implementation = TransferHistorySlice.class)))
+    @GetMapping(params = "cursor")
+    public ResponseEntity<TransferHistorySlice> getTransferHistoryByCursor(
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal AuthenticatedUser user,
+            @Parameter(description = "Курсор из nextCursor предыдущего ответа; пустой для первой части",
+                    in = QUERY)
+            @RequestParam String cursor,
+            @Parameter(description = "Количество переводов в части, не больше " + TransferHistorySlice.MAX_SIZE,
+                    example = "20",
+                    in = QUERY)
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(transferService.getTransferHistory(cursor, size, user.id()));
     }
 }
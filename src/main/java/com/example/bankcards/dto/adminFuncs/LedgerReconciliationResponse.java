@@ -0,0 +1,46 @@
+package com.example.bankcards.dto.adminFuncs;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Schema(description = "Итог сверки или пересчета балансов карт по журналу проводок")
+public record LedgerReconciliationResponse(
+        @Schema(
+                description = "Сколько диапазонов карт обработано",
+                example = "120"
+        )
+        int chunks,
+
+        @Schema(
+                description = "Сколько карт найдено с расхождением (при сверке) или исправлено (при пересчете)",
+                example = "0"
+        )
+        long affectedCards,
+
+        @ArraySchema(
+                schema = @Schema(implementation = Mismatch.class),
+                arraySchema = @Schema(description = "Первые найденные расхождения; пусто при пересчете")
+        )
+        List<Mismatch> mismatches,
+
+        @Schema(
+                description = "Длительность в миллисекундах",
+                example = "84210"
+        )
+        long durationMillis
+) {
+    @Schema(description = "Карта, баланс которой не совпадает с журналом")
+    public record Mismatch(
+            @Schema(description = "Идентификатор карты", example = "123")
+            Long cardId,
+
+            @Schema(description = "Баланс в таблице карт", example = "1500.75")
+            BigDecimal balance,
+
+            @Schema(description = "Баланс по журналу проводок", example = "1400.75")
+            BigDecimal ledgerBalance
+    ) {}
+}
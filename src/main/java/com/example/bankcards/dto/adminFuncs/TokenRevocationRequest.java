@@ -0,0 +1,21 @@
+package com.example.bankcards.dto.adminFuncs;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Size;
+
+@Schema(description = "Запрос на отзыв JWT токена: передается либо сам токен, либо его идентификатор")
+public record TokenRevocationRequest(
+        @Schema(
+                description = "Отзываемый JWT токен",
+                example = "eyJhbGciOiJIUzI1NiJ9.eyJzdWIiOiJ1c2VyIn0.signature"
+        )
+        String token,
+
+        @Schema(
+                description = "Идентификатор отзываемого токена (claim jti)",
+                example = "3f0c9a5e-8d1b-4c4e-9a57-1f2e3d4c5b6a"
+        )
+        @Size(max = 36, message = "идентификатор токена не длиннее 36 символов")
+        String jti) {
+
+}
@@ -0,0 +1,16 @@
+package com.example.bankcards.dto.auth;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+
+@Schema(description = "Запрос на обмен refresh токена на новую пару токенов")
+public record RefreshTokenRequest(
+        @Schema(
+                description = "Refresh токен, полученный при входе или предыдущем обмене",
+                example = "q7Xc2mN9vB4kL8pR1sT6wY3zA5dF0gH2jK4lM6nP8rS",
+                requiredMode = Schema.RequiredMode.REQUIRED
+        )
+        @NotBlank(message = "refresh токен обязателен для заполнения")
+        String refreshToken) {
+
+}
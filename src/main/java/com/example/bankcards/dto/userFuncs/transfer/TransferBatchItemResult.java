@@ -0,0 +1,39 @@
+package com.example.bankcards.dto.userFuncs.transfer;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Результат одного перевода из пакета")
+public record TransferBatchItemResult(
+        @Schema(
+                description = "Позиция перевода в пакете (начиная с 0)",
+                example = "0"
+        )
+        int index,
+
+        @Schema(
+                description = "Итог обработки перевода",
+                example = "COMPLETED",
+                allowableValues = {"COMPLETED", "REJECTED"}
+        )
+        String status,
+
+        @Schema(
+                description = "Выполненный перевод, если он прошел проверки",
+                implementation = TransferResponse.class
+        )
+        TransferResponse transfer,
+
+        @Schema(
+                description = "Причина отказа, если перевод не выполнен",
+                example = "недостаточно средств на карте **** **** **** 1111 (100.00) для перевода в 500.00 рублей"
+        )
+        String error
+) {
+    public static TransferBatchItemResult completed(int index, TransferResponse transfer) {
+        return new TransferBatchItemResult(index, "COMPLETED", transfer, null);
+    }
+
+    public static TransferBatchItemResult rejected(int index, String error) {
+        return new TransferBatchItemResult(index, "REJECTED", null, error);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.bankcards.dto.userFuncs.transfer;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Пакет переводов, выполняемых в одной транзакции")
+public record TransferBatchRequest(
+        @ArraySchema(
+                schema = @Schema(implementation = TransferRequest.class),
+                arraySchema = @Schema(description = "Переводы в порядке выполнения"),
+                minItems = 1,
+                maxItems = TransferBatchRequest.MAX_SIZE
+        )
+        @NotEmpty(message = "Пакет должен содержать хотя бы один перевод")
+        @Size(max = TransferBatchRequest.MAX_SIZE, message = "Пакет не может содержать больше " + TransferBatchRequest.MAX_SIZE + " переводов")
+        List<@Valid TransferRequest> transfers
+) {
+    public static final int MAX_SIZE = 5000;
+}
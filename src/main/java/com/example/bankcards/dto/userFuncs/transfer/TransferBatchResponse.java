@@ -0,0 +1,27 @@
+package com.example.bankcards.dto.userFuncs.transfer;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Итог выполнения пакета переводов")
+public record TransferBatchResponse(
+        @Schema(
+                description = "Количество выполненных переводов",
+                example = "998"
+        )
+        int completed,
+
+        @Schema(
+                description = "Количество отклоненных переводов",
+                example = "2"
+        )
+        int rejected,
+
+        @ArraySchema(
+                schema = @Schema(implementation = TransferBatchItemResult.class),
+                arraySchema = @Schema(description = "Результаты в порядке переводов запроса")
+        )
+        List<TransferBatchItemResult> results
+) {}
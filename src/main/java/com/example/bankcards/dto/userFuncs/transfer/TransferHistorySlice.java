@@ -0,0 +1,29 @@
+package com.example.bankcards.dto.userFuncs.transfer;
+
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Часть истории переводов, полученная по курсору")
+public record TransferHistorySlice(
+        @ArraySchema(
+                schema = @Schema(implementation = TransferSummary.class),
+                arraySchema = @Schema(description = "Переводы, новые первыми")
+        )
+        List<TransferSummary> content,
+
+        @Schema(
+                description = "Курсор следующей части; пусто, если это последняя часть",
+                example = "MjAyNC0wMS0xNVQxNDozMDowMHw0NTY"
+        )
+        String nextCursor,
+
+        @Schema(
+                description = "Есть ли еще переводы после этой части",
+                example = "true"
+        )
+        boolean hasNext
+) {
+    public static final int MAX_SIZE = 100;
+}
@@ -0,0 +1,55 @@
+package com.example.bankcards.dto.userFuncs.transfer;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Schema(description = "Текущее состояние перевода")
+public record TransferStatusResponse(
+        @Schema(
+                description = "Идентификатор перевода",
+                example = "789"
+        )
+        Long id,
+
+        @Schema(
+                description = "Сумма перевода",
+                example = "1500.75"
+        )
+        BigDecimal amount,
+
+        @Schema(
+                description = "Статус перевода",
+                example = "PROCESSING",
+                allowableValues = {"PENDING", "PROCESSING", "COMPLETED", "FAILED", "CANCELLED", "REVERSED"}
+        )
+        String status,
+
+        @Schema(
+                description = "Дата и время создания перевода",
+                example = "2024-01-15T14:30:00",
+                format = "date-time"
+        )
+        LocalDateTime createdAt,
+
+        @Schema(
+                description = "Дата и время, когда воркер взял перевод в обработку",
+                example = "2024-01-15T14:30:01",
+                format = "date-time"
+        )
+        LocalDateTime processedAt,
+
+        @Schema(
+                description = "Дата и время успешного завершения перевода",
+                example = "2024-01-15T14:30:02",
+                format = "date-time"
+        )
+        LocalDateTime completedAt,
+
+        @Schema(
+                description = "Причина отказа, если перевод завершился статусом FAILED",
+                example = "недостаточно средств для перевода"
+        )
+        String failureReason
+) {}
@@ -21,6 +21,8 @@ import static io.swagger.v3.oas.annotations.media.Schema.RequiredMode.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Table(name = "cards", schema = "public")
+//Карта вместе с владельцем одним JOIN - для ответов, где нужно имя владельца
+@NamedEntityGraph(name = "Card.owner", attributeNodes = @NamedAttributeNode("owner"))
 @Schema(description = "Сущность банковской карты")
 @Builder
 public class Card {
@@ -43,12 +45,30 @@ public class Card {
     )
     private String cardNum;
 
+    @Schema(
+        description = "Последние 4 цифры номера карты. Вычисляется базой из номера, используется для поиска",
+        example = "3456",
+        accessMode = Schema.AccessMode.READ_ONLY
+    )
+    //Генерируемая колонка: значение пишет только база
+    @Column(insertable = false, updatable = false)
+    private String cardLast4;
+
+    @Schema(
+        description = "Первые 6 цифр номера карты (BIN). Вычисляется базой из номера, используется для поиска",
+        example = "123456",
+        accessMode = Schema.AccessMode.READ_ONLY
+    )
+    @Column(insertable = false, updatable = false)
+    private String cardBin;
+
     @Schema(
         description = "Владелец карты",
         implementation = User.class,
         requiredMode = REQUIRED
     )
-    @ManyToOne
+    //Владелец грузится только по требованию: проверкам владения достаточно id из прокси
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     @JsonBackReference
     private User owner;
@@ -64,7 +84,7 @@ public class Card {
 
 
     @Schema(
-        description = "Статус карты. Рассчитывается автоматически на основе даты истечения срока действия",
+        description = "Статус карты. Истекшие карты переводятся в EXPIRED ночной задачей",
         example = "ACTIVE",
         allowableValues = {"ACTIVE", "BLOCKED", "EXPIRED"},
         defaultValue = "ACTIVE",
@@ -84,6 +104,25 @@ public class Card {
 
     private BigDecimal balance = BigDecimal.ZERO;
 
+    @Schema(
+        description = "Id последней проводки в журнале ledger_entries, учтенной в балансе. " +
+            "Баланс карты - снимок журнала на эту проводку",
+        example = "98765",
+        accessMode = Schema.AccessMode.READ_ONLY
+    )
+    //Пишется только SQL-запросами LedgerService, сущность его не перезаписывает
+    @Column(insertable = false, updatable = false)
+    private Long lastLedgerEntryId;
+
+    @Schema(
+        description = "Версия записи для оптимистической блокировки. Увеличивается при каждом изменении карты",
+        example = "3",
+        accessMode = Schema.AccessMode.READ_ONLY
+    )
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @Schema(description = "Возможные статусы карты")
     public enum CardStatus {
         @Schema(description = "Карта активна и может использоваться для операций")
@@ -104,27 +143,20 @@ public class Card {
         this.balance = balance;
     }
 
-    @Schema(
-            description = "Автоматически рассчитываемый статус карты. " +
-            "Если карта заблокирована - возвращает BLOCKED. " +
-            "Если текущая дата позже даты истечения срока действия - возвращает EXPIRED. " +
-            "В остальных случаях - ACTIVE."
-    )
-    @Transient
-    public CardStatus getStatus() {
-        if (LocalDate.now().isAfter(activeTill)) {
-            return CardStatus.EXPIRED;
-        }
-        if (status == CardStatus.BLOCKED) {
-            return status;
-        }
-        return CardStatus.ACTIVE;
+    //Срок действия истек, даже если ночная задача CardExpiryService еще не записала EXPIRED
+    public boolean isExpired() {
+        return status == CardStatus.EXPIRED || LocalDate.now().isAfter(activeTill);
+    }
+
+    //Проверка для операций с деньгами: не полагается на то, что статус истекшей карты уже обновлен
+    public boolean isActive() {
+        return status == CardStatus.ACTIVE && !LocalDate.now().isAfter(activeTill);
     }
 
     @PreUpdate
     @PrePersist
     public void updateExpirationStatus() {
-        status = getStatus();
+        if (isExpired()) status = CardStatus.EXPIRED;
     }
 }
 
@@ -0,0 +1,42 @@
+package com.example.bankcards.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+//Запуск ночной задачи истечения карт. Счетчики пишутся в транзакции каждой пачки,
+//поэтому прерванный запуск показывает, сколько карт успел перевести в EXPIRED
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "card_expiry_runs", schema = "public")
+@Schema(description = "Запуск задачи истечения срока действия карт")
+public class CardExpiryRun {
+
+    @Schema(description = "Идентификатор запуска", example = "42")
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Schema(description = "Время начала", example = "2024-01-15T00:05:00")
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime startedAt;
+
+    @Schema(description = "Время завершения; пусто, если запуск идет или прерван", example = "2024-01-15T00:05:12")
+    private LocalDateTime finishedAt;
+
+    @Schema(description = "Сколько карт переведено в EXPIRED", example = "1520")
+    @Column(nullable = false)
+    private long expiredCount;
+
+    @Schema(description = "Сколько пачек обработано", example = "2")
+    @Column(nullable = false)
+    private int chunks;
+}
@@ -0,0 +1,42 @@
+package com.example.bankcards.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "idempotency_keys", schema = "public")
+@Schema(description = "Выполненный запрос с ключом идемпотентности и его сохраненный ответ")
+public class IdempotencyKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    //Ключ уникален в пределах пользователя: unique (user_id, idem_key)
+    @Column(name = "user_id", nullable = false, updatable = false)
+    private Long userId;
+
+    @Column(name = "idem_key", nullable = false, updatable = false)
+    private String idemKey;
+
+    //SHA-256 параметров запроса: повтор ключа с другим переводом отклоняется
+    @Column(nullable = false, updatable = false, length = 64)
+    private String requestHash;
+
+    //Ответ исходного запроса в JSON - повтор отдается без обращения к картам и переводам
+    @Column(nullable = false, updatable = false)
+    private String response;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
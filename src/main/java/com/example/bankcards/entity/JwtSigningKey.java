@@ -0,0 +1,54 @@
+package com.example.bankcards.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+//Пара ключей подписи JWT. Общая таблица позволяет всем экземплярам подписывать и проверять
+//одними ключами; в памяти каждый экземпляр держит несколько последних ключей
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "jwt_signing_keys", schema = "public")
+@Schema(description = "Ключ подписи JWT")
+public class JwtSigningKey {
+
+    @Schema(description = "Идентификатор ключа (kid)", example = "8b1d6f0e-2c4a-4f5e-9d3b-7a6c5e4f3a2b")
+    @Id
+    private String kid;
+
+    @Schema(description = "Алгоритм подписи", example = "ES256")
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private Algorithm algorithm;
+
+    @Schema(description = "Открытый ключ в X.509, base64")
+    @Column(nullable = false, updatable = false)
+    private String publicKey;
+
+    @Schema(hidden = true)
+    @ToString.Exclude
+    @Column(nullable = false, updatable = false)
+    private String privateKey;
+
+    @Schema(description = "Дата и время создания ключа", example = "2024-01-15T00:00:00")
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Schema(description = "С какого момента ключ используется для подписи", example = "2024-01-15T00:01:00")
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime activatesAt;
+
+    public enum Algorithm {
+        ES256,
+        EdDSA
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bankcards.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+//Проводка журнала. Строки только добавляются: на каждый перевод - списание и зачисление,
+//на карту с начальным балансом - одна OPENING-проводка. Баланс карты = сумма ее проводок
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "ledger_entries", schema = "public")
+@Schema(description = "Проводка журнала движения средств по карте")
+public class LedgerEntry {
+
+    @Schema(description = "Уникальный идентификатор проводки", example = "98765")
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Schema(description = "Идентификатор перевода; пусто для OPENING", example = "456")
+    @Column(updatable = false)
+    private Long transferId;
+
+    @Schema(description = "Идентификатор карты", example = "123")
+    @Column(nullable = false, updatable = false)
+    private Long cardId;
+
+    @Schema(description = "Направление проводки", example = "DEBIT")
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private Direction direction;
+
+    @Schema(description = "Сумма проводки, всегда положительная", example = "1500.75")
+    @Column(nullable = false, updatable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Schema(description = "Дата и время проводки", example = "2024-01-15T14:30:00")
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public enum Direction {
+        //Списание с карты
+        DEBIT,
+        //Зачисление на карту
+        CREDIT,
+        //Начальный баланс карты, появившийся не через перевод
+        OPENING
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bankcards.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+//Событие перевода для внешних потребителей. Пишется в транзакции перевода,
+//отправляется OutboxRelay. Потребителям передается sequenceNumber: id выдается при INSERT
+//и не отражает порядок коммитов, поэтому номером события служить не может
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "outbox_events", schema = "public")
+@Schema(description = "Событие перевода, ожидающее отправки потребителям")
+public class OutboxEvent {
+
+    @Schema(description = "Идентификатор записи outbox", example = "10452")
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Schema(description = "Порядковый номер события: без пропусков, в порядке доставки; пусто, пока не присвоен",
+            example = "10450")
+    @Column(unique = true)
+    private Long sequenceNumber;
+
+    @Schema(description = "Идентификатор перевода", example = "456")
+    @Column(nullable = false, updatable = false)
+    private Long transferId;
+
+    @Schema(description = "Тип события", example = "TRANSFER_COMPLETED")
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private EventType eventType;
+
+    @Schema(description = "Содержимое события в JSON")
+    @Column(nullable = false, updatable = false)
+    private String payload;
+
+    @Schema(description = "Дата и время создания события", example = "2024-01-15T14:30:00")
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Schema(description = "Дата и время отправки; пусто, пока событие не отправлено", example = "2024-01-15T14:30:01")
+    private LocalDateTime publishedAt;
+
+    public enum EventType {
+        TRANSFER_COMPLETED,
+        TRANSFER_FAILED
+    }
+}
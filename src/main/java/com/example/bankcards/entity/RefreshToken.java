@@ -0,0 +1,49 @@
+package com.example.bankcards.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+//Refresh токен хранится только как SHA-256: утечка таблицы не дает рабочих токенов.
+//Использованный токен остается до истечения срока, чтобы распознать его повторное предъявление
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "refresh_tokens", schema = "public")
+@Schema(description = "Refresh токен пользователя")
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Schema(description = "Идентификатор пользователя", example = "1")
+    @Column(nullable = false, updatable = false)
+    private Long userId;
+
+    @Schema(hidden = true)
+    @Column(nullable = false, updatable = false, length = 64)
+    private String tokenHash;
+
+    @Schema(description = "Цепочка ротаций от одного входа", example = "5b7e2d1c-9a8f-4e3b-b6c5-d4e3f2a1b0c9")
+    @Column(nullable = false, updatable = false)
+    private String familyId;
+
+    @Schema(description = "Дата и время выдачи", example = "2024-01-15T14:30:00")
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Schema(description = "Дата и время истечения", example = "2024-01-29T14:30:00")
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime expiresAt;
+
+    @Schema(description = "Когда токен обменян на новый; пусто, пока не использован", example = "2024-01-15T14:35:00")
+    private LocalDateTime usedAt;
+}
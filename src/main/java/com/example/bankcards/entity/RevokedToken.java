@@ -0,0 +1,37 @@
+package com.example.bankcards.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+//Отозванный до истечения срока токен. Запись нужна, пока токен не истек сам
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "revoked_tokens", schema = "public")
+@Schema(description = "Отозванный JWT токен")
+public class RevokedToken {
+
+    @Schema(description = "Идентификатор токена (jti)", example = "3f0c9a5e-8d1b-4c4e-9a57-1f2e3d4c5b6a")
+    @Id
+    private String jti;
+
+    @Schema(description = "Идентификатор владельца токена", example = "1")
+    @Column(updatable = false)
+    private Long userId;
+
+    @Schema(description = "Дата и время истечения токена", example = "2024-01-15T15:00:00")
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime expiresAt;
+
+    @Schema(description = "Дата и время отзыва", example = "2024-01-15T14:30:00")
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime revokedAt;
+}
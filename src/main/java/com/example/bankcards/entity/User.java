@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 import org.jspecify.annotations.Nullable;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -19,6 +20,11 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(name = "users", schema = "public")
+//Пользователь вместе с ролями одним запросом - для аутентификации и выпуска токенов
+@NamedEntityGraph(name = "User.roles", attributeNodes = @NamedAttributeNode("roles"))
+//Ленивые ссылки на пользователя (Card.owner, Transfer.initiatedBy) инициализируются одним IN-запросом
+//на всех владельцев в сессии, а не по запросу на каждого
+@BatchSize(size = 100)
 @Schema(description = "Сущность пользователя системы")
 @Builder
 public class User implements UserDetails {
@@ -36,6 +42,7 @@ public class User implements UserDetails {
             implementation = Card.class
     )
     @OneToMany(mappedBy = "owner", cascade = CascadeType.REMOVE)
+    @BatchSize(size = 100)
     @JsonManagedReference
     private List<Card> cards;
 
@@ -43,7 +50,9 @@ public class User implements UserDetails {
             description = "Список ролей пользователя в системе",
             implementation = Role.class
     )
-    @ManyToMany(fetch = FetchType.EAGER)
+    //Для страницы пользователей роли догружаются одним IN-запросом на всю страницу (max-page-size = 100)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @BatchSize(size = 100)
     @JoinTable(
             name = "users_roles",
             joinColumns = {@JoinColumn(name = "user_id")},
@@ -0,0 +1,33 @@
+package com.example.bankcards.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+//Отзыв всех токенов пользователя, выданных до момента отзыва. Запись нужна, пока эти токены не истекли сами
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "user_token_revocations", schema = "public")
+@Schema(description = "Отзыв всех JWT токенов пользователя")
+public class UserTokenRevocation {
+
+    @Schema(description = "Идентификатор пользователя", example = "1")
+    @Id
+    private Long userId;
+
+    @Schema(description = "Токены, выданные не позже этого момента, отозваны", example = "2024-01-15T14:30:00")
+    @Column(nullable = false)
+    private LocalDateTime revokedBefore;
+
+    @Schema(description = "Дата и время, после которых отозванные токены истекли сами", example = "2024-01-15T15:30:00")
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -6,6 +6,8 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -66,7 +68,8 @@ public class GlobalExceptionHandler {
     @ExceptionHandler({
             UserNotFoundException.class,
             NoSuchElementException.class,
-            CardNotFoundExcepion.class
+            CardNotFoundExcepion.class,
+            TransferNotFoundException.class
     })
     public ResponseEntity<ErrorResponse> handleUserNotFound(Exception e) {
         return ResponseEntity
@@ -88,6 +91,55 @@ public class GlobalExceptionHandler {
                 .body(new ErrorResponse(e.getMessage()));
     }
 
+    @ApiResponse(
+            responseCode = "409",
+            description = "Карта изменялась параллельно, и повторные попытки не помогли",
+            content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+    )
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleVersionConflict(OptimisticLockingFailureException e) {
+        return ResponseEntity
+                .status(CONFLICT)
+                .body(new ErrorResponse("данные карты были изменены параллельно, повторите попытку"));
+    }
+
+    @ApiResponse(
+            responseCode = "503",
+            description = "Очередь переводов переполнена",
+            content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+    )
+    @ExceptionHandler(TransferQueueFullException.class)
+    public ResponseEntity<ErrorResponse> handleQueueFull(TransferQueueFullException e) {
+        return ResponseEntity
+                .status(SERVICE_UNAVAILABLE)
+                .body(new ErrorResponse(e.getMessage()));
+    }
+
+    @ApiResponse(
+            responseCode = "503",
+            description = "Перевод не подтвержден за отведенное время, исход неизвестен",
+            content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+    )
+    @ExceptionHandler(TransferResultTimeoutException.class)
+    public ResponseEntity<ErrorResponse> handleTransferTimeout(TransferResultTimeoutException e) {
+        return ResponseEntity
+                .status(SERVICE_UNAVAILABLE)
+                .body(new ErrorResponse(e.getMessage()));
+    }
+
+    @ApiResponse(
+            responseCode = "503",
+            description = "Очередь хеширования паролей переполнена",
+            content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+    )
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<ErrorResponse> handleHashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity
+                .status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse(e.getMessage()));
+    }
+
     @ApiResponse(
             responseCode = "403",
             description = "Доступ к ресурсу запрещен",
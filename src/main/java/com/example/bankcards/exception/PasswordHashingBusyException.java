@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class PasswordHashingBusyException extends RuntimeException {
+    public PasswordHashingBusyException() {
+        super("Сервис входа перегружен, повторите попытку позже");
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class TransferQueueFullException extends RuntimeException {
+    public TransferQueueFullException() {
+        super("Очередь переводов переполнена, повторите попытку позже");
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class TransferResultTimeoutException extends RuntimeException {
+    public TransferResultTimeoutException() {
+        super("Перевод принят, но не подтвержден вовремя; повторите запрос с тем же Idempotency-Key или проверьте историю переводов");
+    }
+}
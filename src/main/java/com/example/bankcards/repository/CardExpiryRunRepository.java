@@ -0,0 +1,16 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardExpiryRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CardExpiryRunRepository extends JpaRepository<CardExpiryRun, Long> {
+
+    @Modifying
+    @Query("UPDATE CardExpiryRun r SET r.expiredCount = r.expiredCount + :expired, r.chunks = r.chunks + 1 WHERE r.id = :id")
+    void recordChunk(@Param("id") Long id, @Param("expired") int expired);
+}
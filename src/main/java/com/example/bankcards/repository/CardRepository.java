@@ -2,35 +2,106 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.projection.CardRow;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-import static com.example.bankcards.entity.Card.*;
 
 @Repository
-public interface CardRepository extends JpaRepository<Card, Long> {
+public interface CardRepository extends JpaRepository<Card, Long>, CardRowRepository {
     Page<Card> findAll(Specification<Card> spec, Pageable pageable);
 
     Optional<Card> findByCardNum(String cardNum);
 
     void deleteByCardNum(String cardNum);
 
-    @Modifying
-    @Query("UPDATE Card c SET c.status= ?2 WHERE c.id = ?1")
-    void updateStatusById(Long id, CardStatus status);
-
     boolean existsByCardNum(String cardNum);
 
     Optional<Card> findByIdAndOwnerId(Long id, Long ownerId);
 
+    //Карта с владельцем одним запросом: ответ администратора показывает имя владельца
+    @EntityGraph("Card.owner")
+    Optional<Card> findWithOwnerById(Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id = :id AND c.owner.id = :ownerId")
+    Optional<Card> findByIdAndOwnerIdForUpdate(@Param("id") Long id, @Param("ownerId") Long ownerId);
+
+    //Все карты пакета блокируются одним запросом; ORDER BY задает порядок захвата блокировок
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids AND c.owner.id = :ownerId ORDER BY c.id")
+    List<Card> findAllByIdInAndOwnerIdForUpdate(@Param("ids") Collection<Long> ids, @Param("ownerId") Long ownerId);
+
+    //Для секвенсора: в пачке переводы разных пользователей, владелец проверяется в памяти
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Query(value = """
+            UPDATE cards SET balance = balance - :amount, version = version + 1
+            WHERE id = :id AND user_id = :ownerId AND balance >= :amount
+              AND status = 'ACTIVE' AND active_till >= CURRENT_DATE
+            RETURNING card_num""", nativeQuery = true)
+    Optional<String> debitIfSufficient(@Param("id") Long id,
+                                       @Param("ownerId") Long ownerId,
+                                       @Param("amount") BigDecimal amount);
+
+    @Query(value = """
+            UPDATE cards SET balance = balance + :amount, version = version + 1
+            WHERE id = :id AND user_id = :ownerId
+              AND status = 'ACTIVE' AND active_till >= CURRENT_DATE
+            RETURNING card_num""", nativeQuery = true)
+    Optional<String> creditIfActive(@Param("id") Long id,
+                                    @Param("ownerId") Long ownerId,
+                                    @Param("amount") BigDecimal amount);
+
+    //Пачка для CardExpiryService: кандидаты берутся из частичного индекса idx_cards_expiry_sweep.
+    //SKIP LOCKED: карта, заблокированная переводом, не задерживает пачку; ее подберет повторный проход
+    //CardExpiryService или следующий запуск.
+    //version увеличивается, чтобы параллельная запись через сущность не затерла EXPIRED
+    @Query(value = """
+            UPDATE cards SET status = 'EXPIRED', version = version + 1
+            WHERE id IN (
+                SELECT id FROM cards
+                WHERE active_till < CURRENT_DATE AND status <> 'EXPIRED'
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED)
+            RETURNING id""", nativeQuery = true)
+    List<Long> expireChunk(@Param("limit") int limit);
+
+    //Кандидаты, которых expireChunk не вернул: заняты другими транзакциями
+    @Query(value = "SELECT count(*) FROM cards WHERE active_till < CURRENT_DATE AND status <> 'EXPIRED'", nativeQuery = true)
+    long countExpiryCandidates();
+
+    //Потоковая выгрузка по индексу (active_till, id): строки читаются курсором порциями по fetch size,
+    //в памяти держится одна порция. Поток открыт, пока открыта транзакция вызывающего
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            SELECT new com.example.bankcards.repository.projection.CardRow(
+                c.id, c.cardNum, c.activeTill, c.status, c.balance, o.id, o.name)
+            FROM Card c JOIN c.owner o
+            WHERE c.activeTill BETWEEN :from AND :to
+            ORDER BY c.activeTill, c.id""")
+    Stream<CardRow> streamByActiveTillBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
 }
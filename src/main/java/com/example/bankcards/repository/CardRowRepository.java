@@ -0,0 +1,14 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.projection.CardRow;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+//Фрагмент CardRepository: страницы карт в виде CardRow по той же Specification, что и findAll
+public interface CardRowRepository {
+
+    //spec может быть null - тогда без фильтра
+    Page<CardRow> findRows(Specification<Card> spec, Pageable pageable);
+}
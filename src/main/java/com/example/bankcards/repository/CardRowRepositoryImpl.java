@@ -0,0 +1,70 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.projection.CardRow;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+
+//Один SELECT нужных колонок с JOIN владельца вместо загрузки сущностей Card: карты не попадают
+//в persistence context, а имя владельца приходит в той же строке без инициализации ленивого owner.
+//Количество считается отдельным COUNT, только когда без него нельзя определить размер страницы
+public class CardRowRepositoryImpl implements CardRowRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<CardRow> findRows(Specification<Card> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<CardRow> query = cb.createQuery(CardRow.class);
+        Root<Card> root = query.from(Card.class);
+        Join<Card, User> owner = root.join("owner");
+        query.select(cb.construct(CardRow.class,
+                root.get("id"),
+                root.get("cardNum"),
+                root.get("activeTill"),
+                root.get("status"),
+                root.get("balance"),
+                owner.get("id"),
+                owner.get("name")));
+        applySpecification(spec, root, query, cb);
+        if (pageable.getSort().isSorted())
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+
+        TypedQuery<CardRow> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        List<CardRow> rows = typedQuery.getResultList();
+
+        return PageableExecutionUtils.getPage(rows, pageable, () -> count(spec));
+    }
+
+    private long count(Specification<Card> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Card> root = query.from(Card.class);
+        query.select(cb.count(root));
+        applySpecification(spec, root, query, cb);
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static void applySpecification(Specification<Card> spec, Root<Card> root,
+                                           CriteriaQuery<?> query, CriteriaBuilder cb) {
+        if (spec == null) return;
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) query.where(predicate);
+    }
+}
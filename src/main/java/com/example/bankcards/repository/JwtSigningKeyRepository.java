@@ -0,0 +1,25 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.JwtSigningKey;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, String> {
+
+    List<JwtSigningKey> findAllByOrderByCreatedAtDesc(Limit limit);
+
+    //Ключи старше последних keep больше не проверяют ни одного действующего токена
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM jwt_signing_keys
+            WHERE kid NOT IN (SELECT kid FROM jwt_signing_keys ORDER BY created_at DESC LIMIT :keep)""",
+            nativeQuery = true)
+    int deleteAllButNewest(@Param("keep") int keep);
+}
@@ -0,0 +1,92 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    //Одним запросом: по две проводки на перевод и сдвиг last_ledger_entry_id у затронутых карт.
+    //Строки карт к этому моменту уже заблокированы транзакцией перевода
+    @Modifying
+    @Query(value = """
+            WITH entries AS (
+                INSERT INTO ledger_entries (transfer_id, card_id, direction, amount, created_at)
+                SELECT t.id,
+                       CASE d.direction WHEN 'DEBIT' THEN t.from_card_id ELSE t.to_card_id END,
+                       d.direction, t.amount, now()
+                FROM transfers t
+                CROSS JOIN (VALUES ('DEBIT'), ('CREDIT')) AS d(direction)
+                WHERE t.id IN (:transferIds)
+                ORDER BY t.id, d.direction DESC
+                RETURNING id, card_id)
+            UPDATE cards c SET last_ledger_entry_id = last.id
+            FROM (SELECT card_id, MAX(id) AS id FROM entries GROUP BY card_id) last
+            WHERE c.id = last.card_id""", nativeQuery = true)
+    int recordTransfers(@Param("transferIds") Collection<Long> transferIds);
+
+    @Modifying
+    @Query(value = """
+            WITH entry AS (
+                INSERT INTO ledger_entries (card_id, direction, amount, created_at)
+                SELECT id, 'OPENING', balance, now() FROM cards WHERE id = :cardId AND balance > 0
+                RETURNING id, card_id)
+            UPDATE cards c SET last_ledger_entry_id = entry.id
+            FROM entry
+            WHERE c.id = entry.card_id""", nativeQuery = true)
+    int recordOpening(@Param("cardId") Long cardId);
+
+    @Query(value = "SELECT COALESCE(MAX(id), 0) FROM cards", nativeQuery = true)
+    long maxCardId();
+
+    //Агрегат по диапазону карт читается покрывающим индексом (card_id, id) INCLUDE (direction, amount)
+    @Query(value = """
+            SELECT c.id AS cardId, c.balance AS balance, COALESCE(s.balance, 0) AS ledgerBalance
+            FROM cards c
+            LEFT JOIN (
+                SELECT card_id, SUM(CASE direction WHEN 'DEBIT' THEN -amount ELSE amount END) AS balance
+                FROM ledger_entries
+                WHERE card_id BETWEEN :fromId AND :toId
+                GROUP BY card_id) s ON s.card_id = c.id
+            WHERE c.id BETWEEN :fromId AND :toId
+              AND c.balance <> COALESCE(s.balance, 0)
+            ORDER BY c.id""", nativeQuery = true)
+    List<BalanceMismatch> findMismatches(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query(value = "SELECT id FROM cards WHERE id BETWEEN :fromId AND :toId ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockCardRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    //Вызывается после lockCardRange в той же транзакции: агрегат видит все проводки, закоммиченные до блокировки.
+    //Карты берутся так же, как в findMismatches - LEFT JOIN и нулевой баланс без проводок, поэтому
+    //все, что сверка считает расхождением, пересчет исправляет
+    @Modifying
+    @Query(value = """
+            UPDATE cards c
+            SET balance = r.balance, last_ledger_entry_id = r.last_id, version = c.version + 1
+            FROM (
+                SELECT cc.id, COALESCE(s.balance, 0) AS balance, s.last_id
+                FROM cards cc
+                LEFT JOIN (
+                    SELECT card_id,
+                           SUM(CASE direction WHEN 'DEBIT' THEN -amount ELSE amount END) AS balance,
+                           MAX(id) AS last_id
+                    FROM ledger_entries
+                    WHERE card_id BETWEEN :fromId AND :toId
+                    GROUP BY card_id) s ON s.card_id = cc.id
+                WHERE cc.id BETWEEN :fromId AND :toId) r
+            WHERE c.id = r.id
+              AND (c.balance <> r.balance OR c.last_ledger_entry_id IS DISTINCT FROM r.last_id)""", nativeQuery = true)
+    int rebuildRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    interface BalanceMismatch {
+        Long getCardId();
+        BigDecimal getBalance();
+        BigDecimal getLedgerBalance();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    //Одна вставка на любое число переводов: payload собирается из уже записанных строк transfers,
+    //тип события определяется статусом перевода
+    @Modifying
+    @Query(value = """
+            INSERT INTO outbox_events (transfer_id, event_type, payload, created_at)
+            SELECT t.id,
+                   CASE t.status WHEN 'FAILED' THEN 'TRANSFER_FAILED' ELSE 'TRANSFER_COMPLETED' END,
+                   jsonb_build_object(
+                           'transferId', t.id,
+                           'fromCardId', t.from_card_id,
+                           'toCardId', t.to_card_id,
+                           'userId', t.initiated_by_user_id,
+                           'amount', t.amount,
+                           'status', t.status,
+                           'failureReason', t.failure_reason,
+                           'occurredAt', COALESCE(t.completed_at, t.updated_at, t.created_at))::text,
+                   now()
+            FROM transfers t
+            WHERE t.id IN (:transferIds)
+            ORDER BY t.id""", nativeQuery = true)
+    int recordTransfers(@Param("transferIds") Collection<Long> transferIds);
+
+    //Блокировка строки счетчика упорядочивает релеи: нумерует и отправляет события один экземпляр за раз
+    @Query(value = "SELECT last_value FROM outbox_sequence WHERE id = 1 FOR UPDATE", nativeQuery = true)
+    long lockSequence();
+
+    //Номера получают только уже закоммиченные события, в порядке id, начиная с :lastValue + 1.
+    //Событие, чья транзакция еще открыта, здесь не видно и получит номер позже, больше уже выданных
+    @Modifying
+    @Query(value = """
+            UPDATE outbox_events e SET sequence_number = :lastValue + n.rn
+            FROM (SELECT id, row_number() OVER (ORDER BY id) AS rn
+                  FROM outbox_events
+                  WHERE sequence_number IS NULL
+                  ORDER BY id
+                  LIMIT :limit) n
+            WHERE e.id = n.id""", nativeQuery = true)
+    int assignSequence(@Param("lastValue") long lastValue, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE outbox_sequence SET last_value = last_value + :count WHERE id = 1", nativeQuery = true)
+    int advanceSequence(@Param("count") int count);
+
+    //Вызывается под блокировкой счетчика, поэтому пачки уходят строго по возрастанию номера
+    @Query(value = """
+            SELECT * FROM outbox_events
+            WHERE published_at IS NULL AND sequence_number IS NOT NULL
+            ORDER BY sequence_number
+            LIMIT :limit""", nativeQuery = true)
+    List<OutboxEvent> findSequencedUnpublished(@Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE outbox_events SET published_at = now() WHERE id IN (:ids)", nativeQuery = true)
+    int markPublished(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM outbox_events WHERE published_at < :before", nativeQuery = true)
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
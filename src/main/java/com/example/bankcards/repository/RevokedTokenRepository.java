@@ -0,0 +1,43 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.RevokedToken;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    //Повторный отзыв того же токена ничего не меняет
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO revoked_tokens (jti, user_id, expires_at, revoked_at)
+            VALUES (:jti, :userId, :expiresAt, now())
+            ON CONFLICT (jti) DO NOTHING""", nativeQuery = true)
+    int revoke(@Param("jti") String jti,
+               @Param("userId") Long userId,
+               @Param("expiresAt") LocalDateTime expiresAt);
+
+    //Keyset по (revoked_at, jti): фильтр Блума дочитывает отзывы порциями, не пропуская записи
+    //с одинаковым временем отзыва на границе порции
+    @Query("""
+            SELECT r FROM RevokedToken r
+            WHERE r.expiresAt > :now
+              AND (r.revokedAt > :revokedAt OR (r.revokedAt = :revokedAt AND r.jti > :jti))
+            ORDER BY r.revokedAt, r.jti""")
+    List<RevokedToken> findRevokedAfter(@Param("revokedAt") LocalDateTime revokedAt,
+                                        @Param("jti") String jti,
+                                        @Param("now") LocalDateTime now,
+                                        Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM revoked_tokens WHERE expires_at <= :now", nativeQuery = true)
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -3,11 +3,77 @@ package com.example.bankcards.repository;
 import com.example.bankcards.entity.Transfer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface TransferRepository extends JpaRepository<Transfer, Long> {
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
+public interface TransferRepository extends JpaRepository<Transfer, Long> {
 
+    //История показывает номера обеих карт: граф Transfer.cards подтягивает их в том же запросе
+    @EntityGraph("Transfer.cards")
     Page<Transfer> findAllByInitiatedById(Pageable pageable, Long initiatedById);
+
+    //Для статуса перевода карты не нужны
+    Optional<Transfer> findByIdAndInitiatedById(Long id, Long initiatedById);
+
+    //Slice вместо Page: Spring Data запрашивает size + 1 строку и не выполняет count(*)
+    @EntityGraph("Transfer.cards")
+    @Query("SELECT t FROM Transfer t WHERE t.initiatedBy.id = :userId ORDER BY t.createdAt DESC, t.id DESC")
+    Slice<Transfer> findHistoryFirst(@Param("userId") Long userId, Pageable pageable);
+
+    //Условие createdAt <= :createdAt задает начало диапазона в индексе (initiated_by_user_id, created_at, id),
+    //второе отсекает уже выданные строки с тем же created_at
+    @EntityGraph("Transfer.cards")
+    @Query("""
+            SELECT t FROM Transfer t
+            WHERE t.initiatedBy.id = :userId
+              AND t.createdAt <= :createdAt
+              AND (t.createdAt < :createdAt OR t.id < :id)
+            ORDER BY t.createdAt DESC, t.id DESC""")
+    Slice<Transfer> findHistoryAfter(@Param("userId") Long userId,
+                                     @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Transfer t WHERE t.id = :id")
+    Optional<Transfer> findByIdForUpdate(@Param("id") Long id);
+
+    //SKIP LOCKED: параллельные воркеры не ждут друг друга, а забирают разные строки.
+    //Зависшие в PROCESSING дольше staleBefore переводы забираются повторно
+    @Transactional
+    @Query(value = """
+            UPDATE transfers SET status = 'PROCESSING', processed_at = now(), updated_at = now()
+            WHERE id IN (
+                SELECT id FROM transfers
+                WHERE status = 'PENDING' OR (status = 'PROCESSING' AND processed_at < :staleBefore)
+                ORDER BY id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED)
+            RETURNING id""", nativeQuery = true)
+    List<Long> claimPending(@Param("staleBefore") LocalDateTime staleBefore, @Param("limit") int limit);
+
+    //Перевод, не проведенный из-за гонки, возвращается в очередь без отметки об отказе
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE transfers SET status = 'PENDING', updated_at = now()
+            WHERE id = :id AND status = 'PROCESSING'""", nativeQuery = true)
+    int releaseClaim(@Param("id") Long id);
+
+    @Modifying
+    @Query(value = """
+            UPDATE transfers SET status = 'FAILED', failure_reason = :reason, updated_at = now()
+            WHERE id = :id AND status = 'PROCESSING'""", nativeQuery = true)
+    int markFailed(@Param("id") Long id, @Param("reason") String reason);
 }
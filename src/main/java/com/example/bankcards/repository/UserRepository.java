@@ -4,6 +4,7 @@ import com.example.bankcards.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -12,8 +13,13 @@ import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User,Long> {
+    //Роли нужны сразу: из них строятся authorities и claim roles токена
+    @EntityGraph("User.roles")
     Optional<User> findByName(String name);
 
+    @EntityGraph("User.roles")
+    Optional<User> findWithRolesById(Long id);
+
     Page<User> findAll(Pageable pageRequest);
 
 
@@ -0,0 +1,34 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.UserTokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UserTokenRevocationRepository extends JpaRepository<UserTokenRevocation, Long> {
+
+    //Повторный отзыв только сдвигает границу вперед: более ранний параллельный отзыв ее не откатит
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_token_revocations (user_id, revoked_before, expires_at)
+            VALUES (:userId, :revokedBefore, :expiresAt)
+            ON CONFLICT (user_id) DO UPDATE
+            SET revoked_before = GREATEST(user_token_revocations.revoked_before, EXCLUDED.revoked_before),
+                expires_at = GREATEST(user_token_revocations.expires_at, EXCLUDED.expires_at)""", nativeQuery = true)
+    int revokeAll(@Param("userId") Long userId,
+                  @Param("revokedBefore") LocalDateTime revokedBefore,
+                  @Param("expiresAt") LocalDateTime expiresAt);
+
+    List<UserTokenRevocation> findByExpiresAtAfter(LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM user_token_revocations WHERE expires_at <= :now", nativeQuery = true)
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
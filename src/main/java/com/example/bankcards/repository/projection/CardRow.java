@@ -0,0 +1,18 @@
+package com.example.bankcards.repository.projection;
+
+import com.example.bankcards.entity.Card.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+//Строка карты для списков и выгрузок: только нужные колонки и владелец одним JOIN.
+//Собирается конструктором в JPQL, поэтому не попадает в persistence context
+//и не требует инициализации ленивого владельца карты
+public record CardRow(Long id,
+                      String cardNum,
+                      LocalDate activeTill,
+                      CardStatus status,
+                      BigDecimal balance,
+                      Long ownerId,
+                      String ownerName) {
+}
@@ -0,0 +1,26 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.service.JwtClaims;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+//Principal аутентифицированного запроса. Собирается из claims токена без обращения к базе,
+//поэтому содержит только то, что есть в токене: id, имя и роли на момент выдачи токена
+public record AuthenticatedUser(Long id, String username, List<String> roles) {
+
+    public static AuthenticatedUser of(JwtClaims claims) {
+        return new AuthenticatedUser(claims.userId(), claims.subject(), claims.roles());
+    }
+
+    public static AuthenticatedUser of(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(),
+                user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return roles.stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+//BCrypt стоимостью 12 занимает ядро на сотни миллисекунд. Хеширование выполняется в отдельном пуле
+//фиксированного размера с ограниченной очередью: волна входов загружает не больше threads ядер,
+//а при полной очереди запрос сразу отклоняется, не дожидаясь своей очереди на CPU.
+//Поток запроса ждет результат, не занимая процессор
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    public static final String WAIT_METRIC = "password.hash.wait";
+    public static final String DURATION_METRIC = "password.hash.duration";
+    public static final String REJECTED_METRIC = "password.hash.rejected";
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeWait;
+    private final Timer encodeDuration;
+    private final Timer matchesWait;
+    private final Timer matchesDuration;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> new Thread(task, "password-hashing-" + counter.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.encodeWait = timer(WAIT_METRIC, "encode", meterRegistry);
+        this.encodeDuration = timer(DURATION_METRIC, "encode", meterRegistry);
+        this.matchesWait = timer(WAIT_METRIC, "matches", meterRegistry);
+        this.matchesDuration = timer(DURATION_METRIC, "matches", meterRegistry);
+        this.rejected = Counter.builder(REJECTED_METRIC).register(meterRegistry);
+        meterRegistry.gauge("password.hash.queue.size", executor, e -> e.getQueue().size());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> delegate.encode(rawPassword), encodeWait, encodeDuration);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> delegate.matches(rawPassword, encodedPassword), matchesWait, matchesDuration);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T submit(Supplier<T> hashing, Timer wait, Timer duration) {
+        long queuedAt = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                wait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return duration.record(hashing);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingBusyException();
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static Timer timer(String name, String operation, MeterRegistry meterRegistry) {
+        return Timer.builder(name)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
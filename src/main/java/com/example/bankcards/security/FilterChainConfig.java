@@ -1,14 +1,13 @@
 package com.example.bankcards.security;
 
 
-import com.example.bankcards.exception.GlobalExceptionHandler;
 import jakarta.servlet.FilterChain;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -18,7 +17,6 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfigurationSource;
-import tools.jackson.databind.ObjectMapper;
 
 import java.nio.file.AccessDeniedException;
 import java.util.List;
@@ -35,7 +33,13 @@ public class FilterChainConfig {
     CorsConfigurationSource corsConfigurationSource;
 
     @Autowired
-    GlobalExceptionHandler globalHandler;
+    SecurityErrorWriter errorWriter;
+
+    @Autowired
+    RateLimiter rateLimiter;
+
+    @Autowired
+    RateLimitProperties rateLimitProperties;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity security, SecurityProperties properties) {
@@ -44,24 +48,17 @@ public class FilterChainConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource))
                 .authenticationProvider(provider)
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
-                .exceptionHandling(exception -> {
-                    exception.authenticationEntryPoint((request, response, authException) -> {
-                        var responseEntity = globalHandler.handleAuthException(authException);
-                        response.setStatus(responseEntity.getStatusCode().value());
-                        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
-                        response.getWriter().write(
-                                new ObjectMapper().writeValueAsString(responseEntity.getBody())
-                        );
-                    });
-                    exception.accessDeniedHandler((request, response, accessDeniedException) -> {
-                        var responseEntity = globalHandler.handleAuthException(accessDeniedException);
-                        response.setStatus(responseEntity.getStatusCode().value());
-                        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
-                        response.getWriter().write(
-                                new ObjectMapper().writeValueAsString(responseEntity.getBody())
-                        );
-                    });
-                })
+                //Лимит по IP - до разбора токена, лимит по пользователю - по уже проверенному токену
+                .addFilterBefore(new RateLimitFilter(rateLimiter, rateLimitProperties, errorWriter, RateLimiter.Scope.IP),
+                        JwtAuthenticationFilter.class)
+                .addFilterAfter(new RateLimitFilter(rateLimiter, rateLimitProperties, errorWriter, RateLimiter.Scope.USER),
+                        JwtAuthenticationFilter.class)
+                //Отказы пишутся готовыми байтами: под перебором паролей их очень много
+                .exceptionHandling(exception -> exception
+                        .authenticationEntryPoint((request, response, authException) ->
+                                errorWriter.write(response, HttpStatus.UNAUTHORIZED, authException.getMessage()))
+                        .accessDeniedHandler((request, response, accessDeniedException) ->
+                                errorWriter.write(response, HttpStatus.UNAUTHORIZED, accessDeniedException.getMessage())))
                 .sessionManagement(sessionConfig ->
                         sessionConfig.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(request -> request
@@ -1,6 +1,9 @@
 package com.example.bankcards.security;
 
+import com.example.bankcards.entity.User;
 import com.example.bankcards.security.service.JWTService;
+import com.example.bankcards.security.service.JwtClaims;
+import com.example.bankcards.security.service.TokenRevocationService;
 import io.jsonwebtoken.JwtException;
 import io.micrometer.common.util.StringUtils;
 import jakarta.servlet.FilterChain;
@@ -27,6 +30,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     UserDetailsService userDetailsService;
 
+    @Autowired
+    TokenRevocationService revocationService;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         String authHeader = request.getHeader("Authorization");
@@ -36,13 +42,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         try {
                 String token = authHeader.substring(7);
-                String username = jwtService.extractUsername(token);
-                if (StringUtils.isNotEmpty(username) && SecurityContextHolder.getContext().getAuthentication() == null) {
+                //Подпись проверяется и токен разбирается один раз, дальше работаем с готовыми claims
+                JwtClaims claims = jwtService.parse(token);
+                if (StringUtils.isNotEmpty(claims.subject()) && !claims.isExpired()
+                        && SecurityContextHolder.getContext().getAuthentication() == null
+                        && !revocationService.isRevoked(claims)) {
 
-                    var userDetails = userDetailsService.loadUserByUsername(username);
+                    AuthenticatedUser principal = claims.userId() != null
+                            ? AuthenticatedUser.of(claims)
+                            : loadPrincipal(claims);
 
-                    if (jwtService.isTokenValid(token, userDetails)) {
-                        UsernamePasswordAuthenticationToken upaToken = new UsernamePasswordAuthenticationToken(userDetails,null, userDetails.getAuthorities());
+                    if (principal != null) {
+                        UsernamePasswordAuthenticationToken upaToken = new UsernamePasswordAuthenticationToken(principal, null, principal.authorities());
                         upaToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                         SecurityContextHolder.getContext().setAuthentication(upaToken);
                     }
@@ -57,4 +68,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
     }
+
+    //Токен, выданный до появления claim uid: пользователь читается из базы, как раньше
+    private AuthenticatedUser loadPrincipal(JwtClaims claims) {
+        var userDetails = userDetailsService.loadUserByUsername(claims.subject());
+        if (!jwtService.isTokenValid(claims, userDetails)) return null;
+        return AuthenticatedUser.of((User) userDetails);
+    }
 }
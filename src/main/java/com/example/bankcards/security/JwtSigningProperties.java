@@ -0,0 +1,33 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.JwtSigningKey.Algorithm;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "security.jwt.signing")
+@Getter
+@Setter
+public class JwtSigningProperties {
+
+    //false - подпись общим секретом security.jwt.secret (HS256), как раньше
+    private boolean enabled = false;
+    private Algorithm algorithm = Algorithm.ES256;
+    private Duration rotationInterval = Duration.ofHours(24);
+    //Новый ключ сначала публикуется в JWKS и кольцах остальных экземпляров и только потом подписывает.
+    //Должно быть не меньше refresh-interval и времени кэширования JWKS у проверяющих узлов
+    private Duration activationDelay = Duration.ofMinutes(2);
+    //Как часто кольцо перечитывает ключи и проверяет, не пора ли ротировать
+    private Duration refreshInterval = Duration.ofSeconds(30);
+    //Сколько последних ключей держится в памяти, включая еще не активный. Ключ проверяет токены
+    //примерно (retained-keys - 1) * rotation-interval - activation-delay после того, как перестал подписывать;
+    //это должно перекрывать security.jwt.lifetime, иначе его токены отклонятся раньше срока
+    private int retainedKeys = 3;
+    //AES-256 ключ (32 байта, base64), которым закрытые ключи шифруются в jwt_signing_keys.
+    //Задается вне базы - переменной окружения или из KMS; обязателен при enabled
+    private String keyEncryptionKey;
+}
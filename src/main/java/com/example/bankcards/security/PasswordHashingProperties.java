@@ -0,0 +1,22 @@
+package com.example.bankcards.security;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "security.password-hashing")
+@Getter
+@Setter
+public class PasswordHashingProperties {
+
+    //0 - половина ядер (не меньше одного): остальные ядра остаются переводам и чтению карт
+    private int threads = 0;
+    //Сколько хеширований ждут свободный поток; сверх этого запрос сразу получает 503
+    private int queueCapacity = 64;
+
+    public int resolvedThreads() {
+        return threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bankcards.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+//Ограничение частоты запросов по группам маршрутов (security.rate-limit.families).
+//Экземпляр с Scope.IP стоит перед JwtAuthenticationFilter и отсекает лишнее до разбора токена и базы.
+//Экземпляр с Scope.USER стоит сразу после него: пользователь берется из проверенного токена,
+//иначе чужой uid в поддельном токене позволил бы исчерпать лимит другого пользователя
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+    private final SecurityErrorWriter errorWriter;
+    private final RateLimiter.Scope scope;
+
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties,
+                           SecurityErrorWriter errorWriter, RateLimiter.Scope scope) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+        this.errorWriter = errorWriter;
+        this.scope = scope;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Map.Entry<String, RateLimitProperties.Family> family = properties.isEnabled() ? familyOf(request) : null;
+        Object subject = family == null ? null : subject(request);
+        int limit = family == null ? 0 : limit(family.getValue());
+
+        if (subject == null || limit <= 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        RateLimiter.Decision decision = rateLimiter.tryAcquire(family.getKey(), scope, subject, limit,
+                family.getValue().getWindow().toMillis());
+        if (decision.allowed()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+        errorWriter.write(response, HttpStatus.TOO_MANY_REQUESTS, "Слишком много запросов, повторите попытку позже");
+    }
+
+    //Два экземпляра одного класса в цепочке: у каждого своя отметка "уже выполнен"
+    @Override
+    protected String getAlreadyFilteredAttributeName() {
+        return RateLimitFilter.class.getName() + "." + scope + ".FILTERED";
+    }
+
+    private Map.Entry<String, RateLimitProperties.Family> familyOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Map.Entry<String, RateLimitProperties.Family> family : properties.getFamilies().entrySet()) {
+            for (String pattern : family.getValue().getPatterns()) {
+                if (PATH_MATCHER.match(pattern, path)) return family;
+            }
+        }
+        return null;
+    }
+
+    private Object subject(HttpServletRequest request) {
+        if (scope == RateLimiter.Scope.IP) return request.getRemoteAddr();
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user
+                ? user.id()
+                : null;
+    }
+
+    private int limit(RateLimitProperties.Family family) {
+        return scope == RateLimiter.Scope.IP ? family.getPerIp() : family.getPerUser();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.bankcards.security;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "security.rate-limit")
+@Getter
+@Setter
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    //Как часто удаляются счетчики ключей, от которых давно не было запросов
+    private Duration cleanupInterval = Duration.ofMinutes(1);
+    //Группы маршрутов; запрос относится к первой группе, один из шаблонов которой совпал
+    private Map<String, Family> families = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Family {
+
+        private List<String> patterns = new ArrayList<>();
+        //Лимиты на окно; 0 - без ограничения
+        private int perIp = 0;
+        private int perUser = 0;
+        private Duration window = Duration.ofMinutes(1);
+    }
+}
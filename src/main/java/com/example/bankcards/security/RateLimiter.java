@@ -0,0 +1,85 @@
+package com.example.bankcards.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+//Счетчики скользящего окна по ключу (группа маршрутов, IP или пользователь).
+//Окно приближается двумя фиксированными: число запросов предыдущего окна берется с весом
+//непрошедшей доли текущего. Ключи лежат в ConcurrentHashMap (чтение без блокировок, запись
+//блокирует только свою корзину), счетчик ключа меняется CAS-ом неизменяемого состояния
+@Component
+public class RateLimiter {
+
+    public static final String REJECTED_METRIC = "rate.limit.rejected";
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<Key, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public enum Scope {
+        IP,
+        USER
+    }
+
+    public record Decision(boolean allowed, long retryAfterSeconds) {
+
+        static final Decision ALLOWED = new Decision(true, 0);
+    }
+
+    private record Key(String family, Scope scope, Object subject) {}
+
+    private record Window(long start, int current, int previous) {}
+
+    private record Bucket(long windowMillis, AtomicReference<Window> window) {
+
+        boolean idle(long now) {
+            return window.get().start() + 2 * windowMillis <= now;
+        }
+    }
+
+    public Decision tryAcquire(String family, Scope scope, Object subject, int limit, long windowMillis) {
+        return tryAcquire(family, scope, subject, limit, windowMillis, System.currentTimeMillis());
+    }
+
+    Decision tryAcquire(String family, Scope scope, Object subject, int limit, long windowMillis, long now) {
+        Bucket bucket = buckets.computeIfAbsent(new Key(family, scope, subject),
+                key -> new Bucket(windowMillis, new AtomicReference<>(new Window(now - now % windowMillis, 0, 0))));
+        long windowStart = now - now % windowMillis;
+
+        while (true) {
+            Window state = bucket.window().get();
+            Window rolled;
+            if (state.start() == windowStart) rolled = state;
+            else if (state.start() == windowStart - windowMillis) rolled = new Window(windowStart, 0, state.current());
+            else rolled = new Window(windowStart, 0, 0);
+
+            double previousWeight = 1 - (double) (now - windowStart) / windowMillis;
+            if (rolled.previous() * previousWeight + rolled.current() + 1 > limit) {
+                meterRegistry.counter(REJECTED_METRIC, "family", family, "scope", scope.name()).increment();
+                long retryAfterMillis = windowStart + windowMillis - now;
+                return new Decision(false, Math.max(1, (retryAfterMillis + 999) / 1000));
+            }
+
+            Window next = new Window(windowStart, rolled.current() + 1, rolled.previous());
+            if (bucket.window().compareAndSet(state, next)) return Decision.ALLOWED;
+        }
+    }
+
+    //Запрос, успевший взять счетчик перед удалением, учтется в удаленном счетчике - один пропущенный
+    //запрос на ключ, который и так простаивал два окна
+    @Scheduled(fixedDelayString = "${security.rate-limit.cleanup-interval:1m}")
+    public void removeIdle() {
+        long now = System.currentTimeMillis();
+        buckets.values().removeIf(bucket -> bucket.idle(now));
+    }
+
+    int size() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.bankcards.security;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "security.refresh-token")
+@Getter
+@Setter
+public class RefreshTokenProperties {
+
+    //Срок считается от последнего обмена: активный клиент не вводит пароль повторно
+    private Duration lifetime = Duration.ofDays(14);
+    private String cleanupCron = "0 0 4 * * *";
+}
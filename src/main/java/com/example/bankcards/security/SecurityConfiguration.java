@@ -1,6 +1,7 @@
 package com.example.bankcards.security;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -29,9 +30,13 @@ public class SecurityConfiguration {
     @Autowired
     UserDetailsService userDetailsService;
 
+    //Все хеширования паролей (вход, регистрация, создание и изменение пользователя) идут через ограниченный пул
     @Bean
-    public BCryptPasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength:12}") int strength) {
-        return new BCryptPasswordEncoder(strength);
+    public PasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength:12}") int strength,
+                                           PasswordHashingProperties properties,
+                                           MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength),
+                properties.resolvedThreads(), properties.getQueueCapacity(), meterRegistry);
     }
 
     @Bean
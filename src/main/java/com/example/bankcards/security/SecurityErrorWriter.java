@@ -0,0 +1,83 @@
+package com.example.bankcards.security;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Ответы об ошибках фильтров безопасности (401, 403, 429) в формате ErrorResponse.
+//Сообщения здесь из небольшого фиксированного набора, поэтому JSON каждого сериализуется один раз
+//общим ObjectMapper и кешируется байтами; меняется только время, и оно тоже кешируется
+//с точностью до секунды. На отклоненный запрос не создается ни маппер, ни строка JSON
+@Component
+public class SecurityErrorWriter {
+
+    //Сообщения берутся из исключений Spring Security, но на случай непредвиденного разнообразия кеш ограничен
+    private static final int MAX_CACHED_MESSAGES = 256;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final String FIELDS_AFTER_MESSAGE = ",\"errors\":null,\"timestamp\":\"";
+    private static final byte[] NULL_MESSAGE_PREFIX = ("{\"message\":null" + FIELDS_AFTER_MESSAGE)
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<String, byte[]> prefixes = new ConcurrentHashMap<>();
+    private volatile Timestamp timestamp = new Timestamp(Long.MIN_VALUE, new byte[0]);
+
+    private record Timestamp(long epochSecond, byte[] bytes) {}
+
+    public void write(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        byte[] prefix = prefixOf(message);
+        byte[] time = currentTimestamp();
+
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentLength(prefix.length + time.length + SUFFIX.length);
+        ServletOutputStream out = response.getOutputStream();
+        out.write(prefix);
+        out.write(time);
+        out.write(SUFFIX);
+    }
+
+    private byte[] prefixOf(String message) {
+        if (message == null) return NULL_MESSAGE_PREFIX;
+        byte[] prefix = prefixes.get(message);
+        if (prefix != null) return prefix;
+
+        prefix = serializePrefix(message);
+        if (prefixes.size() < MAX_CACHED_MESSAGES) prefixes.putIfAbsent(message, prefix);
+        return prefix;
+    }
+
+    //Поля в порядке ErrorResponse: message, errors, timestamp
+    private byte[] serializePrefix(String message) {
+        return ("{\"message\":" + objectMapper.writeValueAsString(message) + FIELDS_AFTER_MESSAGE)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    //Гонка двух потоков на смене секунды безвредна: оба посчитают одинаковое значение
+    private byte[] currentTimestamp() {
+        long now = System.currentTimeMillis() / 1000;
+        Timestamp cached = timestamp;
+        if (cached.epochSecond() == now) return cached.bytes();
+
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(now), ZoneId.systemDefault());
+        byte[] bytes = TIMESTAMP_FORMAT.format(time).getBytes(StandardCharsets.UTF_8);
+        timestamp = new Timestamp(now, bytes);
+        return bytes;
+    }
+}
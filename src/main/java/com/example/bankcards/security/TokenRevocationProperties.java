@@ -0,0 +1,27 @@
+package com.example.bankcards.security;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "security.token-revocation")
+@Getter
+@Setter
+public class TokenRevocationProperties {
+
+    //Размер фильтра Блума: при большем числе отзывов доля ложных "возможно" растет
+    private long expectedRevocations = 100_000;
+    private double falsePositiveRate = 0.001;
+    //Как часто фильтр дочитывает отзывы, сделанные другими экземплярами приложения
+    private Duration refreshInterval = Duration.ofSeconds(30);
+    //На сколько назад перечитываются отзывы при обновлении: транзакция, начатая раньше,
+    //может зафиксировать запись со временем отзыва меньше уже прочитанного
+    private Duration refreshOverlap = Duration.ofMinutes(1);
+    private int batchSize = 1000;
+    //Удаление истекших отзывов и перестроение фильтра с нуля
+    private String cleanupCron = "0 45 3 * * *";
+}
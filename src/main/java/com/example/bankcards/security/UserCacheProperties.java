@@ -0,0 +1,20 @@
+package com.example.bankcards.security;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "security.user-cache")
+@Getter
+@Setter
+public class UserCacheProperties {
+
+    private boolean enabled = true;
+    private long maximumSize = 10_000;
+    //Верхняя граница устаревания, если событие об изменении пользователя разминулось с загрузкой
+    private Duration ttl = Duration.ofMinutes(5);
+}
@@ -3,6 +3,7 @@ package com.example.bankcards.security.controller;
 
 import com.example.bankcards.dto.auth.AuthenticationRequest;
 import com.example.bankcards.dto.auth.AuthenticationResponse;
+import com.example.bankcards.dto.auth.RefreshTokenRequest;
 import com.example.bankcards.security.service.AuthenticationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -30,7 +31,8 @@ public class AuthenticationController {
     @Operation(
             summary = "Вход в систему",
             description = "Аутентифицирует пользователя по имени и паролю. " +
-                    "Возвращает JWT токен для последующей авторизации в защищенных эндпоинтах."
+                    "Возвращает JWT токен для последующей авторизации в защищенных эндпоинтах " +
+                    "и refresh токен для его обновления без повторного ввода пароля."
     )
     @ApiResponse(responseCode = "200",
             description = "Успешная аутентификация",
@@ -48,4 +50,29 @@ public class AuthenticationController {
             @RequestBody @Validated AuthenticationRequest request) {
         return ResponseEntity.ok(authenticationService.getUser(request));
     }
-}
\ No newline at end of file
+
+    @Operation(
+            summary = "Обновить токены",
+            description = "Обменивает refresh токен на новый JWT и новый refresh токен без проверки пароля. " +
+                    "Refresh токен действует один раз; повторное предъявление уже обмененного токена " +
+                    "отзывает все токены, полученные от того же входа."
+    )
+    @ApiResponse(responseCode = "200",
+            description = "Токены обновлены",
+            content = @Content(mediaType = APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = AuthenticationResponse.class))
+    )
+    @ApiResponse(responseCode = "401",
+            description = "Refresh токен недействителен, истек или уже использован")
+
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthenticationResponse> refresh(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Refresh токен",
+                    required = true,
+                    content = @Content(schema = @Schema(implementation = RefreshTokenRequest.class))
+            )
+            @RequestBody @Validated RefreshTokenRequest request) {
+        return ResponseEntity.ok(authenticationService.refresh(request));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.bankcards.security.controller;
+
+import com.example.bankcards.security.JwtSigningProperties;
+import com.example.bankcards.security.service.JwtKeyRing;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@Tag(name = "JWKS API", description = "Открытые ключи для проверки JWT")
+public class JwksController {
+
+    @Autowired(required = false)
+    JwtKeyRing keyRing;
+
+    @Autowired
+    JwtSigningProperties properties;
+
+    @Operation(
+            summary = "Получить открытые ключи подписи",
+            description = "Возвращает JWK Set с открытыми ключами, которыми проверяются токены, " +
+                    "включая следующий ключ, который еще не начал подписывать. Ключ токена выбирается по заголовку kid. " +
+                    "Пустой набор, если токены подписываются общим секретом."
+    )
+    @ApiResponse(responseCode = "200",
+            description = "Набор открытых ключей в формате JWK Set")
+    @GetMapping(value = "/.well-known/jwks.json", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> jwks() {
+        List<Map<String, Object>> keys = keyRing == null ? List.of() : keyRing.jwks();
+        //Кольцо этого экземпляра отстает от хранилища не больше чем на refresh-interval, кэш проверяющего узла -
+        //на max-age; вместе они укладываются в activation-delay, и новый ключ известен узлу до первой подписи
+        Duration maxAge = properties.getActivationDelay().minus(properties.getRefreshInterval());
+        return ResponseEntity.ok()
+                .cacheControl(maxAge.isNegative() ? CacheControl.noCache() : CacheControl.maxAge(maxAge))
+                .body(Map.of("keys", keys));
+    }
+}
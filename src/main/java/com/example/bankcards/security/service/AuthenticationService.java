@@ -3,6 +3,7 @@ package com.example.bankcards.security.service;
 
 import com.example.bankcards.dto.auth.AuthenticationRequest;
 import com.example.bankcards.dto.auth.AuthenticationResponse;
+import com.example.bankcards.dto.auth.RefreshTokenRequest;
 import com.example.bankcards.entity.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -19,13 +20,19 @@ public class AuthenticationService {
     @Autowired
     AuthenticationManager manager;
 
+    @Autowired
+    RefreshTokenService refreshTokenService;
+
     public AuthenticationResponse getUser(AuthenticationRequest request) {
         UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(request.name(),request.password());
         Authentication authentication = manager.authenticate(token);
-        String jwt = jwtService.generateToken(((User) authentication.getPrincipal()));
-        return new AuthenticationResponse(jwt);
+        User user = (User) authentication.getPrincipal();
+        String jwt = jwtService.generateToken(user);
+        return new AuthenticationResponse(jwt, refreshTokenService.issue(user));
 
     }
 
-
+    public AuthenticationResponse refresh(RefreshTokenRequest request) {
+        return refreshTokenService.refresh(request.refreshToken());
+    }
 }
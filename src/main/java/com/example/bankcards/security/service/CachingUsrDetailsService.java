@@ -0,0 +1,74 @@
+package com.example.bankcards.security.service;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.UserCacheProperties;
+import com.example.bankcards.service.UserChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.util.ArrayList;
+
+//Кэш перед UsrDetailsService: повторный вход того же пользователя не идет в users/users_roles.
+//В кэше лежит отсоединенная копия пользователя без карт, общая для всех потоков.
+//Запись удаляется после коммита изменения или удаления пользователя (UserChangedEvent)
+@Primary
+@Service
+@ConditionalOnProperty(prefix = "security.user-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CachingUsrDetailsService implements UserDetailsService {
+
+    static final String CACHE_NAME = "user-details";
+
+    @Autowired
+    UsrDetailsService usrDetailsService;
+
+    @Autowired
+    UserCacheProperties properties;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Cache<String, User> users;
+
+    @PostConstruct
+    void init() {
+        users = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        //cache.gets{result=hit|miss}, cache.evictions, cache.size с тегом cache=user-details
+        CaffeineCacheMetrics.monitor(meterRegistry, users, CACHE_NAME);
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) {
+        return users.get(username, name -> snapshot((User) usrDetailsService.loadUserByUsername(name)));
+    }
+
+    //fallbackExecution: изменение вне транзакции тоже сбрасывает кэш
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        users.asMap().values().removeIf(user -> event.userId().equals(user.getId()));
+    }
+
+    private static User snapshot(User user) {
+        return User.builder()
+                .id(user.getId())
+                .name(user.getName())
+                .password(user.getPassword())
+                .roles(new ArrayList<>(user.getRoles()))
+                .cards(new ArrayList<>())
+                .build();
+    }
+}
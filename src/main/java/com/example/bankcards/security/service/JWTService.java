@@ -1,25 +1,39 @@
 package com.example.bankcards.security.service;
 
 
+import com.example.bankcards.entity.User;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwt;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.ProtectedHeader;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.MacAlgorithm;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
+import java.security.PublicKey;
 import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
 
 
 @Service
 public class JWTService {
 
+    static final String USER_ID_CLAIM = "uid";
+    static final String ROLES_CLAIM = "roles";
+
     @Value("${security.jwt.secret}")
     private String SECRET_BASE64_ENCODED;
 
@@ -29,35 +43,69 @@ public class JWTService {
     @Value("${security.jwt.issuer:CHANGE_ME")
     private String iss;
 
+    //Ключ декодируется один раз при старте, а не на каждый токен
+    private SecretKey signingKey;
+
+    //Парсер один на сервис: ключ для каждого токена выбирает locateKey
+    private final JwtParser parser = Jwts.parser().clockSkewSeconds(1).keyLocator(this::locateKey).build();
+
+    //Асимметричная подпись с kid (security.jwt.signing.enabled); без кольца токены подписываются секретом
+    @Autowired(required = false)
+    JwtKeyRing keyRing;
+
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET_BASE64_ENCODED));
+    }
 
 
     public String generateToken(UserDetails userDetails) {
         MacAlgorithm alg = Jwts.SIG.HS256;
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .claims()
                 .issuer(iss)
                 .subject(userDetails.getUsername())
+                //jti нужен для отзыва токена до истечения срока
+                .id(UUID.randomUUID().toString())
+                //id и роли в токене позволяют фильтру собрать principal без запроса к базе
+                .add(USER_ID_CLAIM, userDetails instanceof User user ? user.getId() : null)
+                .add(ROLES_CLAIM, userDetails.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList())
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + tokenLifetimeMillis))
-                .and()
-                .signWith(getKey(), alg)
+                .and();
+
+        if (keyRing != null) {
+            JwtKeyRing.ActiveKey active = keyRing.signingKey();
+            return builder.header().keyId(active.kid()).and()
+                    .signWith(active.key(), active.algorithm())
+                    .compact();
+        }
+        return builder
+                .signWith(signingKey, alg)
                 .compact();
 
     }
     private Claims getClaims(String token) {
-        return Jwts.parser().clockSkewSeconds(1).verifyWith(getKey()).build()
-                .parseSignedClaims(token).getPayload();
+        Jws<Claims> jws = parser.parseSignedClaims(token);
+        //Подпись секретом проверена, но с кольцом этого мало: токен должен быть выпущен до его включения
+        if (keyRing != null && jws.getHeader().getKeyId() == null
+                && !keyRing.acceptsLegacyToken(jws.getPayload().getIssuedAt()))
+            throw new JwtException("токен без kid выпущен после включения асимметричной подписи");
+        return jws.getPayload();
     }
 
+    //Единственная проверка подписи и разбор токена на запрос; истекший или поддельный токен - JwtException
+    public JwtClaims parse(String token) throws JwtException {
+        return JwtClaims.of(getClaims(token));
+    }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) throws JwtException {
-
-        var sub = extractUsername(token);
-        var exp = extractExpiration(token);
-        return sub.equals(userDetails.getUsername()) && new Date().before(exp);
-
-
+    public boolean isTokenValid(JwtClaims claims, UserDetails userDetails) {
+        return claims.subject().equals(userDetails.getUsername()) && !claims.isExpired();
+    }
 
+    public boolean isTokenValid(String token, UserDetails userDetails) throws JwtException {
+        return isTokenValid(parse(token), userDetails);
     }
 
     public String extractUsername(String token) {
@@ -69,7 +117,17 @@ public class JWTService {
 
 
 
-    private SecretKey getKey() {
-        return Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET_BASE64_ENCODED));
+    //Токен с kid проверяется открытым ключом из кольца, без kid - секретом. С кольцом секрет нужен только
+    //в переходном окне для токенов, выданных до его включения; после окна токены без kid отклоняются
+    private Key locateKey(Header header) {
+        String kid = header instanceof ProtectedHeader protectedHeader ? protectedHeader.getKeyId() : null;
+        if (kid == null) {
+            if (keyRing != null && !keyRing.legacyWindowOpen())
+                throw new JwtException("токены без kid больше не принимаются");
+            return signingKey;
+        }
+        PublicKey publicKey = keyRing == null ? null : keyRing.verificationKey(kid);
+        if (publicKey == null) throw new JwtException("неизвестный ключ подписи: " + kid);
+        return publicKey;
     }
 }
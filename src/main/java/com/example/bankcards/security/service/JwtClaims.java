@@ -0,0 +1,34 @@
+package com.example.bankcards.security.service;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.List;
+
+//Результат однократного разбора и проверки подписи токена. Дальнейшие проверки работают с ним,
+//не разбирая токен заново. userId и tokenId пусты у токенов, выданных до появления claims uid и jti
+public record JwtClaims(String subject,
+                        String issuer,
+                        Instant issuedAt,
+                        Instant expiration,
+                        Long userId,
+                        List<String> roles,
+                        String tokenId) {
+
+    @SuppressWarnings("unchecked")
+    static JwtClaims of(Claims claims) {
+        List<String> roles = claims.get(JWTService.ROLES_CLAIM, List.class);
+        return new JwtClaims(
+                claims.getSubject(),
+                claims.getIssuer(),
+                claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant(),
+                claims.getExpiration() == null ? null : claims.getExpiration().toInstant(),
+                claims.get(JWTService.USER_ID_CLAIM, Long.class),
+                roles == null ? List.of() : List.copyOf(roles),
+                claims.getId());
+    }
+
+    public boolean isExpired() {
+        return expiration == null || !Instant.now().isBefore(expiration);
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.bankcards.security.service;
+
+import com.example.bankcards.entity.JwtSigningKey;
+import com.example.bankcards.entity.JwtSigningKey.Algorithm;
+import com.example.bankcards.repository.JwtSigningKeyRepository;
+import com.example.bankcards.security.JwtSigningProperties;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+//Кольцо ключей асимметричной подписи JWT (security.jwt.signing.enabled).
+//В памяти - несколько последних ключей из jwt_signing_keys: самый новый активный подписывает,
+//остальные только проверяют. Проверка ищет открытый ключ по kid в локальной карте, без запросов на токен.
+//Ротация по расписанию: новый ключ сначала публикуется (JWKS, кольца других экземпляров)
+//и начинает подписывать только через activation-delay.
+//Закрытые ключи в таблице зашифрованы ключом из конфигурации (SigningKeyCipher). Ключи, сохраненные
+//без шифрования, не подписывают и не проверяют: их мог прочитать любой с доступом к базе
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "security.jwt.signing", name = "enabled", havingValue = "true")
+public class JwtKeyRing {
+
+    @Autowired
+    JwtSigningKeyRepository signingKeyRepository;
+
+    @Autowired
+    JwtSigningProperties properties;
+
+    @Value("${security.jwt.lifetime:3600000}")
+    long tokenLifetimeMillis;
+
+    record ActiveKey(String kid, PrivateKey key, SignatureAlgorithm algorithm) {}
+
+    private record Ring(ActiveKey active, Map<String, PublicKey> verificationKeys, List<Map<String, Object>> jwks,
+                        Instant firstActivation) {}
+
+    private volatile Ring ring;
+
+    private SigningKeyCipher cipher;
+
+    //Закрывшись, переходное окно для токенов без kid не открывается снова
+    private volatile boolean legacyWindowClosed;
+
+    @PostConstruct
+    void init() {
+        cipher = new SigningKeyCipher(properties.getKeyEncryptionKey());
+        refresh();
+    }
+
+    ActiveKey signingKey() {
+        return ring.active();
+    }
+
+    PublicKey verificationKey(String kid) {
+        return ring.verificationKeys().get(kid);
+    }
+
+    //Токены без kid подписаны общим секретом до включения кольца и живут не дольше security.jwt.lifetime,
+    //поэтому секрет нужен только, пока с первой активации кольца не прошел этот срок. Первой считается
+    //активация самого старого ключа в хранилище: к моменту его удаления ротацией окно давно закрыто
+    boolean legacyWindowOpen() {
+        if (legacyWindowClosed) return false;
+        if (Instant.now().isBefore(ring.firstActivation().plusMillis(tokenLifetimeMillis))) return true;
+        legacyWindowClosed = true;
+        log.info("Переходное окно для токенов без kid закрыто, общий секрет больше не используется");
+        return false;
+    }
+
+    //Токен без kid принимается, только если выпущен до первой активации кольца и окно еще открыто
+    boolean acceptsLegacyToken(Date issuedAt) {
+        return issuedAt != null && issuedAt.toInstant().isBefore(ring.firstActivation()) && legacyWindowOpen();
+    }
+
+    //Открытые ключи кольца в формате JWK, включая еще не активный следующий ключ
+    public List<Map<String, Object>> jwks() {
+        return ring.jwks();
+    }
+
+    //Пустое хранилище (или только незашифрованные ключи) - первый запуск: ключ активен сразу,
+    //рабочих токенов других ключей еще нет.
+    //Если два экземпляра ротируют одновременно, появятся два новых ключа - оба опубликованы и рабочие
+    @Scheduled(fixedDelayString = "${security.jwt.signing.refresh-interval:30s}",
+            initialDelayString = "${security.jwt.signing.refresh-interval:30s}")
+    public synchronized void refresh() {
+        List<JwtSigningKey> keys = newestKeys();
+        if (keys.stream().noneMatch(JwtKeyRing::isEncrypted)) {
+            if (!keys.isEmpty())
+                log.warn("В хранилище нет зашифрованных ключей подписи JWT: создается новый, прежние не используются");
+            rotate(Duration.ZERO);
+            keys = newestKeys();
+        } else if (!keys.getFirst().getCreatedAt().plus(properties.getRotationInterval()).isAfter(LocalDateTime.now())) {
+            rotate(properties.getActivationDelay());
+            keys = newestKeys();
+        }
+        ring = load(keys);
+    }
+
+    private List<JwtSigningKey> newestKeys() {
+        return signingKeyRepository.findAllByOrderByCreatedAtDesc(Limit.of(properties.getRetainedKeys()));
+    }
+
+    private void rotate(Duration activationDelay) {
+        Algorithm algorithm = properties.getAlgorithm();
+        KeyPair pair = signatureAlgorithm(algorithm).keyPair().build();
+        LocalDateTime now = LocalDateTime.now();
+        String kid = UUID.randomUUID().toString();
+        JwtSigningKey key = signingKeyRepository.save(JwtSigningKey.builder()
+                .kid(kid)
+                .algorithm(algorithm)
+                .publicKey(Base64.getEncoder().encodeToString(pair.getPublic().getEncoded()))
+                .privateKey(cipher.encrypt(kid, pair.getPrivate().getEncoded()))
+                .createdAt(now)
+                .activatesAt(now.plus(activationDelay))
+                .build());
+        signingKeyRepository.deleteAllButNewest(properties.getRetainedKeys());
+        log.info("Создан ключ подписи JWT {} ({}), начнет подписывать в {}", key.getKid(), algorithm, key.getActivatesAt());
+    }
+
+    //Ключи идут от новых к старым: подписывает самый новый из уже активных.
+    //Переходное окно отсчитывается от всех ключей хранилища, включая незашифрованные
+    private Ring load(List<JwtSigningKey> keys) {
+        LocalDateTime now = LocalDateTime.now();
+        ActiveKey active = null;
+        Map<String, PublicKey> verificationKeys = new HashMap<>();
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        LocalDateTime firstActivation = keys.getLast().getActivatesAt();
+        for (JwtSigningKey key : keys) {
+            if (key.getActivatesAt().isBefore(firstActivation)) firstActivation = key.getActivatesAt();
+            if (!isEncrypted(key)) continue;
+            PublicKey publicKey = decodePublic(key);
+            verificationKeys.put(key.getKid(), publicKey);
+            jwks.add(toJwk(key, publicKey));
+            if (active == null && !key.getActivatesAt().isAfter(now))
+                active = new ActiveKey(key.getKid(), decodePrivate(key), signatureAlgorithm(key.getAlgorithm()));
+        }
+        if (active == null)
+            throw new IllegalStateException("в кольце нет активного ключа подписи JWT");
+        return new Ring(active, Map.copyOf(verificationKeys), List.copyOf(jwks),
+                firstActivation.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Map<String, Object> toJwk(JwtSigningKey key, PublicKey publicKey) {
+        Map<String, ?> jwk = Jwks.builder()
+                .key(publicKey)
+                .id(key.getKid())
+                .publicKeyUse("sig")
+                .algorithm(key.getAlgorithm().name())
+                .build();
+        return new LinkedHashMap<>(jwk);
+    }
+
+    private static PublicKey decodePublic(JwtSigningKey key) {
+        try {
+            return keyFactory(key.getAlgorithm())
+                    .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(key.getPublicKey())));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("не удалось прочитать открытый ключ " + key.getKid(), e);
+        }
+    }
+
+    private static boolean isEncrypted(JwtSigningKey key) {
+        return SigningKeyCipher.isEncrypted(key.getPrivateKey());
+    }
+
+    private PrivateKey decodePrivate(JwtSigningKey key) {
+        try {
+            return keyFactory(key.getAlgorithm())
+                    .generatePrivate(new PKCS8EncodedKeySpec(cipher.decrypt(key.getKid(), key.getPrivateKey())));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("не удалось прочитать закрытый ключ " + key.getKid(), e);
+        }
+    }
+
+    private static KeyFactory keyFactory(Algorithm algorithm) throws GeneralSecurityException {
+        return KeyFactory.getInstance(switch (algorithm) {
+            case ES256 -> "EC";
+            case EdDSA -> "EdDSA";
+        });
+    }
+
+    private static SignatureAlgorithm signatureAlgorithm(Algorithm algorithm) {
+        return switch (algorithm) {
+            case ES256 -> Jwts.SIG.ES256;
+            case EdDSA -> Jwts.SIG.EdDSA;
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.bankcards.security.service;
+
+import com.example.bankcards.dto.auth.AuthenticationResponse;
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.RefreshTokenProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+//Обмен refresh токена на новую пару токенов без проверки пароля: один поиск по индексу хеша
+//вместо BCrypt. Токен одноразовый - при обмене выдается следующий в той же цепочке.
+//Повторное предъявление уже обмененного токена означает, что его скопировали: цепочка отзывается целиком,
+//и обоим владельцам копий придется войти заново
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    @Autowired
+    RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    JWTService jwtService;
+
+    @Autowired
+    TokenRevocationService revocationService;
+
+    @Autowired
+    RefreshTokenProperties properties;
+
+    private final SecureRandom random = new SecureRandom();
+
+    //Новая цепочка: вход или регистрация
+    @Transactional
+    public String issue(User user) {
+        return issue(user.getId(), UUID.randomUUID().toString());
+    }
+
+    //noRollbackFor: отзыв цепочки при повторном использовании должен зафиксироваться вместе с отказом
+    @Transactional(noRollbackFor = BadCredentialsException.class)
+    public AuthenticationResponse refresh(String refreshToken) {
+        RefreshToken stored = refreshTokenRepository.findByTokenHashForUpdate(hash(refreshToken))
+                .orElseThrow(() -> new BadCredentialsException("refresh токен недействителен"));
+
+        if (stored.getUsedAt() != null) {
+            int revoked = refreshTokenRepository.deleteByFamilyId(stored.getFamilyId());
+            log.warn("Повторное использование refresh токена пользователя {}, отозвано токенов цепочки: {}",
+                    stored.getUserId(), revoked);
+            throw new BadCredentialsException("refresh токен уже использован");
+        }
+        if (!stored.getExpiresAt().isAfter(LocalDateTime.now()))
+            throw new BadCredentialsException("срок действия refresh токена истек");
+        //Токены пользователя удаляются при отзыве, но выданный параллельным обменом мог уцелеть
+        if (revocationService.isRevokedForUser(stored.getUserId(), stored.getCreatedAt()))
+            throw new BadCredentialsException("токены пользователя отозваны, требуется повторный вход");
+
+        User user = userRepository.findWithRolesById(stored.getUserId())
+                .orElseThrow(() -> new BadCredentialsException("refresh токен недействителен"));
+        stored.setUsedAt(LocalDateTime.now());
+        return new AuthenticationResponse(jwtService.generateToken(user), issue(user.getId(), stored.getFamilyId()));
+    }
+
+    @Scheduled(cron = "${security.refresh-token.cleanup-cron:0 0 4 * * *}")
+    public void removeExpired() {
+        int removed = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (removed > 0) log.info("Удалено {} истекших refresh токенов", removed);
+    }
+
+    private String issue(Long userId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        LocalDateTime now = LocalDateTime.now();
+        refreshTokenRepository.save(RefreshToken.builder()
+                .userId(userId)
+                .tokenHash(hash(token))
+                .familyId(familyId)
+                .createdAt(now)
+                .expiresAt(now.plus(properties.getLifetime()))
+                .build());
+        return token;
+    }
+
+    //У случайного токена из 256 бит перебирать нечего, поэтому достаточно SHA-256 без соли,
+    //и поиск идет по точному совпадению хеша
+    static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
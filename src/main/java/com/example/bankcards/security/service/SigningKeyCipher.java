@@ -0,0 +1,72 @@
+package com.example.bankcards.security.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+//Шифрование закрытых ключей подписи JWT ключом, который хранится вне базы (security.jwt.signing.key-encryption-key):
+//чтение таблицы или ее резервной копии не дает подписывать токены.
+//AES-256-GCM, kid - дополнительные данные: зашифрованный ключ нельзя подставить в строку другого ключа
+final class SigningKeyCipher {
+
+    private static final String PREFIX = "v1:";
+    private static final int KEY_BYTES = 32;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKey key;
+    private final SecureRandom random = new SecureRandom();
+
+    SigningKeyCipher(String base64Key) {
+        if (base64Key == null || base64Key.isBlank())
+            throw new IllegalStateException("не задан security.jwt.signing.key-encryption-key для шифрования ключей подписи");
+        byte[] bytes = Base64.getDecoder().decode(base64Key);
+        if (bytes.length != KEY_BYTES)
+            throw new IllegalStateException("security.jwt.signing.key-encryption-key должен содержать 32 байта в base64");
+        key = new SecretKeySpec(bytes, "AES");
+    }
+
+    //Ключи, сохраненные до появления шифрования, лежат в base64 без префикса
+    static boolean isEncrypted(String stored) {
+        return stored.startsWith(PREFIX);
+    }
+
+    String encrypt(String kid, byte[] privateKey) {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        try {
+            byte[] encrypted = cipher(Cipher.ENCRYPT_MODE, kid, iv).doFinal(privateKey);
+            return PREFIX + Base64.getEncoder().encodeToString(
+                    ByteBuffer.allocate(IV_BYTES + encrypted.length).put(iv).put(encrypted).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("не удалось зашифровать закрытый ключ " + kid, e);
+        }
+    }
+
+    byte[] decrypt(String kid, String stored) {
+        if (!isEncrypted(stored))
+            throw new IllegalStateException("закрытый ключ " + kid + " хранится без шифрования");
+        byte[] bytes = Base64.getDecoder().decode(stored.substring(PREFIX.length()));
+        try {
+            return cipher(Cipher.DECRYPT_MODE, kid, Arrays.copyOf(bytes, IV_BYTES))
+                    .doFinal(bytes, IV_BYTES, bytes.length - IV_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("не удалось расшифровать закрытый ключ " + kid
+                    + ": ключ шифрования не совпадает или запись изменена", e);
+        }
+    }
+
+    private Cipher cipher(int mode, String kid, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+}
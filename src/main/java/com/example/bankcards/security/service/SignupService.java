@@ -3,12 +3,15 @@ package com.example.bankcards.security.service;
 import com.example.bankcards.dto.signup.SignupRequest;
 import com.example.bankcards.dto.signup.SignupResponse;
 import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.UserAlreadyExistsException;
 import com.example.bankcards.repository.RoleRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.security.service.JWTService;
 import com.example.bankcards.util.mappers.SignupMapper;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,15 +29,46 @@ public class SignupService {
     RoleRepository roleRepository;
     @Autowired
     SignupMapper mapper;
+    @Autowired
+    RefreshTokenService refreshTokenService;
+
+    private static final String NAME_CONSTRAINT = "uk_users_name";
+
+    //Набор ролей не меняется во время работы, роль пользователя читается из базы один раз.
+    //Отсоединенная сущность годится для связи users_roles: нужен только ее id
+    private volatile Role userRole;
 
+    //Уникальность имени проверяет ограничение uk_users_name: один INSERT вместо SELECT + INSERT,
+    //и без гонки между проверкой и вставкой при одновременной регистрации одного имени
     @Transactional
     public SignupResponse createUser(SignupRequest request) {
-        if (userRepository.findByName(request.name()).isPresent()) throw new UserAlreadyExistsException(request.name());
-        var userRole = roleRepository.findByName(Role.RoleName.ROLE_USER).orElseThrow();
+        var user = mapper.toEntityCustom(request,encoder,userRole());
 
-        var user = mapper.toEntityCustom(request,encoder,userRole);
+        User saved;
+        try {
+            saved = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if (violates(e, NAME_CONSTRAINT)) throw new UserAlreadyExistsException(request.name());
+            throw e;
+        }
+        String jwt = jwtService.generateToken(saved);
+        return new SignupResponse(jwt, refreshTokenService.issue(saved));
+    }
+
+    private Role userRole() {
+        Role role = userRole;
+        if (role == null) {
+            role = roleRepository.findByName(Role.RoleName.ROLE_USER).orElseThrow();
+            userRole = role;
+        }
+        return role;
+    }
 
-        String jwt = jwtService.generateToken(userRepository.save(user));
-        return new SignupResponse(jwt);
+    private static boolean violates(DataIntegrityViolationException e, String constraintName) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation)
+                return constraintName.equalsIgnoreCase(violation.getConstraintName());
+        }
+        return false;
     }
 }
@@ -0,0 +1,212 @@
+package com.example.bankcards.security.service;
+
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.entity.UserTokenRevocation;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.repository.UserTokenRevocationRepository;
+import com.example.bankcards.security.RefreshTokenProperties;
+import com.example.bankcards.security.TokenRevocationProperties;
+import com.example.bankcards.util.BloomFilter;
+import io.jsonwebtoken.JwtException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Отзыв токенов до истечения срока. Источник истины - таблица revoked_tokens, перед ней фильтр Блума
+//в памяти: на почти каждый запрос ответ "не отозван" дается без обращения к базе, в базу идут
+//только возможные совпадения. Фильтр дочитывает новые отзывы по расписанию, поэтому отзыв,
+//сделанный на другом экземпляре, действует здесь не позже чем через refresh-interval.
+//Отзыв всех токенов пользователя хранится одной записью user_token_revocations с границей по iat;
+//таких записей мало и живут они не дольше security.jwt.lifetime, поэтому в памяти они лежат целиком
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Autowired
+    RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    UserTokenRevocationRepository userRevocationRepository;
+
+    @Autowired
+    RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    JWTService jwtService;
+
+    @Autowired
+    TokenRevocationProperties properties;
+
+    @Autowired
+    RefreshTokenProperties refreshTokenProperties;
+
+    @Value("${security.jwt.lifetime:3600000}")
+    long tokenLifetimeMillis;
+
+    private volatile BloomFilter filter;
+    //id пользователя -> токены, выданные не позже этого момента, отозваны
+    private final Map<Long, Instant> userRevocations = new ConcurrentHashMap<>();
+    //Время начала последнего чтения; следующее обновление начинается с него минус refresh-overlap
+    private volatile LocalDateTime loadedUntil;
+
+    @PostConstruct
+    void init() {
+        rebuild();
+    }
+
+    public void revoke(String token) {
+        revoke(parseForRevocation(token));
+    }
+
+    //Выход: кроме самого токена удаляются refresh токены пользователя, иначе по ним сразу выдается новый access токен
+    @Transactional
+    public void logout(String token) {
+        JwtClaims claims = parseForRevocation(token);
+        revoke(claims);
+        if (claims.userId() != null) refreshTokenRepository.deleteByUserId(claims.userId());
+    }
+
+    public void revoke(JwtClaims claims) {
+        if (claims.tokenId() == null)
+            throw new IllegalStateException("токен выдан без идентификатора и не может быть отозван, он истечет "
+                    + claims.expiration());
+
+        revokedTokenRepository.revoke(claims.tokenId(), claims.userId(),
+                LocalDateTime.ofInstant(claims.expiration(), ZoneId.systemDefault()));
+        filter.put(claims.tokenId());
+    }
+
+    //Отзыв по jti без самого токена: срок токена неизвестен, но он выдан не позже текущего момента
+    //и истекает не позже чем через security.jwt.lifetime
+    public void revokeById(String jti) {
+        revokedTokenRepository.revoke(jti, null, LocalDateTime.now().plus(Duration.ofMillis(tokenLifetimeMillis)));
+        filter.put(jti);
+    }
+
+    //Refresh токены удаляются до взятия границы: DELETE дожидается параллельного обмена, и выданные им токены
+    //оказываются раньше границы. Запись хранится, пока может жить выданный до границы refresh токен
+    @Transactional
+    public void revokeAllForUser(Long userId) {
+        int refreshRevoked = refreshTokenRepository.deleteByUserId(userId);
+        Instant now = Instant.now();
+        Duration retention = Duration.ofMillis(tokenLifetimeMillis);
+        if (refreshTokenProperties.getLifetime().compareTo(retention) > 0) retention = refreshTokenProperties.getLifetime();
+        userRevocationRepository.revokeAll(userId, LocalDateTime.ofInstant(now, ZoneId.systemDefault()),
+                LocalDateTime.ofInstant(now.plus(retention), ZoneId.systemDefault()));
+        userRevocations.merge(userId, now, (current, added) -> current.isAfter(added) ? current : added);
+        log.info("Отозваны все токены пользователя {}, удалено refresh токенов: {}", userId, refreshRevoked);
+    }
+
+    //Для обмена refresh токена граница читается из базы, а не из памяти: обмен редкий,
+    //а отзыв, сделанный на другом экземпляре, должен действовать сразу
+    public boolean isRevokedForUser(Long userId, LocalDateTime issuedAt) {
+        return userRevocationRepository.findById(userId)
+                .map(revocation -> !issuedAt.isAfter(revocation.getRevokedBefore()))
+                .orElse(false);
+    }
+
+    //Токены без jti выданы до появления отзыва и отозваны по одному быть не могут, токены без uid
+    //не попадают под отзыв всех токенов пользователя
+    public boolean isRevoked(JwtClaims claims) {
+        if (revokedForUser(claims)) return true;
+        String jti = claims.tokenId();
+        if (jti == null || !filter.mightContain(jti)) return false;
+        return revokedTokenRepository.existsById(jti);
+    }
+
+    //iat хранится с точностью до секунды, поэтому токен, выданный в ту же секунду сразу после отзыва,
+    //тоже считается отозванным: лучше повторный вход, чем пропущенный отзыв
+    private boolean revokedForUser(JwtClaims claims) {
+        if (claims.userId() == null) return false;
+        Instant revokedBefore = userRevocations.get(claims.userId());
+        if (revokedBefore == null) return false;
+        return claims.issuedAt() == null || !claims.issuedAt().isAfter(revokedBefore);
+    }
+
+    @Scheduled(fixedDelayString = "${security.token-revocation.refresh-interval:30s}",
+            initialDelayString = "${security.token-revocation.refresh-interval:30s}")
+    public synchronized void refresh() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        int loaded = load(filter, loadedUntil.minus(properties.getRefreshOverlap()));
+        loadedUntil = startedAt;
+        loadUserRevocations();
+        if (loaded > 0) log.debug("В фильтр отозванных токенов дочитано {} записей", loaded);
+        if (filter.insertions() > properties.getExpectedRevocations())
+            log.warn("В фильтре отозванных токенов {} вставок при расчетных {}: растет доля обращений к базе",
+                    filter.insertions(), properties.getExpectedRevocations());
+    }
+
+    //Отзыв, добавленный в старый фильтр во время перестроения, вернется со следующим refresh:
+    //он перечитывает записи начиная с момента перестроения минус refresh-overlap
+    public synchronized void rebuild() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        BloomFilter fresh = new BloomFilter(properties.getExpectedRevocations(), properties.getFalsePositiveRate());
+        int loaded = load(fresh, EPOCH);
+        filter = fresh;
+        loadedUntil = startedAt;
+        loadUserRevocations();
+        log.info("Фильтр отозванных токенов построен: {} записей", loaded);
+    }
+
+    @Scheduled(cron = "${security.token-revocation.cleanup-cron:0 45 3 * * *}")
+    public void removeExpired() {
+        int removed = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        if (removed > 0) log.info("Удалено {} истекших отозванных токенов", removed);
+        userRevocationRepository.deleteExpired(LocalDateTime.now());
+        rebuild();
+    }
+
+    private int load(BloomFilter target, LocalDateTime since) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime revokedAt = since;
+        String jti = "";
+        int loaded = 0;
+        List<RevokedToken> batch;
+        do {
+            batch = revokedTokenRepository.findRevokedAfter(revokedAt, jti, now, Limit.of(properties.getBatchSize()));
+            for (RevokedToken token : batch) target.put(token.getJti());
+            if (!batch.isEmpty()) {
+                revokedAt = batch.getLast().getRevokedAt();
+                jti = batch.getLast().getJti();
+            }
+            loaded += batch.size();
+        } while (batch.size() == properties.getBatchSize());
+        return loaded;
+    }
+
+    private JwtClaims parseForRevocation(String token) {
+        try {
+            return jwtService.parse(token);
+        } catch (JwtException e) {
+            throw new IllegalStateException("токен недействителен или уже истек");
+        }
+    }
+
+    //Записи дочитываются поверх текущих: отзыв, сделанный здесь во время чтения, не теряется.
+    //Из памяти запись убирается, когда истекли отозванные ею access токены; в базе она живет дольше - для refresh токенов
+    private void loadUserRevocations() {
+        for (UserTokenRevocation revocation : userRevocationRepository.findByExpiresAtAfter(LocalDateTime.now())) {
+            Instant revokedBefore = revocation.getRevokedBefore().atZone(ZoneId.systemDefault()).toInstant();
+            userRevocations.merge(revocation.getUserId(), revokedBefore,
+                    (current, loaded) -> current.isAfter(loaded) ? current : loaded);
+        }
+        Instant expiredBefore = Instant.now().minusMillis(tokenLifetimeMillis);
+        userRevocations.values().removeIf(revokedBefore -> revokedBefore.isBefore(expiredBefore));
+    }
+}
@@ -8,6 +8,8 @@ import com.example.bankcards.exception.CardNotFoundExcepion;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.projection.CardRow;
+import com.example.bankcards.util.OptimisticRetryExecutor;
 import com.example.bankcards.util.mappers.CardMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -15,10 +17,15 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static com.example.bankcards.entity.Card.CardStatus;
 
@@ -32,39 +39,58 @@ public class AdminCardService {
     @Autowired
     CardMapper cardMapper;
 
+    @Autowired
+    OptimisticRetryExecutor retryExecutor;
+
+    @Autowired
+    LedgerService ledgerService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
     @Transactional
     public CardDataAdminResponse addCard(CardDataAdminRequest dto) {
         var owner = userRepository.findById(dto.ownerId())
                 .orElseThrow(() -> new UserNotFoundException(dto.ownerId()));
         var createdCard = cardMapper.toEntity(dto, userRepository);
         owner.addCard(createdCard);
-        return cardMapper.toAdminDto(cardRepository.saveAndFlush(createdCard));
+        var savedCard = cardRepository.saveAndFlush(createdCard);
+        ledgerService.recordOpening(savedCard.getId());
+        return cardMapper.toAdminDto(savedCard);
     }
 
 
 
-    @Transactional
+    //Статус меняется через сущность, а не bulk UPDATE: так запись проверяет version
+    //и не затирает баланс, списанный параллельным переводом
     public void blockCard(Long cardId) {
-        var card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new CardNotFoundExcepion(cardId));
+        retryExecutor.execute("block", cardId, () -> {
+            var card = cardRepository.findById(cardId)
+                    .orElseThrow(() -> new CardNotFoundExcepion(cardId));
 
-        if (card.getStatus() == CardStatus.EXPIRED) {
-            throw new CardHasExpiredException();
-        }
+            if (card.isExpired()) {
+                throw new CardHasExpiredException();
+            }
 
-        cardRepository.updateStatusById(cardId, CardStatus.BLOCKED);
+            card.setStatus(CardStatus.BLOCKED);
+            cardRepository.saveAndFlush(card);
+        });
     }
 
-    @Transactional
     public void activateCard(Long cardId) {
-        var card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new CardNotFoundExcepion(cardId));
-
-        if (card.getStatus() == CardStatus.ACTIVE) return;
-        if (!card.getActiveTill().isAfter(LocalDate.now())) {
-           throw new CardHasExpiredException();
-        }
-        cardRepository.updateStatusById(cardId, CardStatus.ACTIVE);
+        retryExecutor.execute("activate", cardId, () -> {
+            var card = cardRepository.findById(cardId)
+                    .orElseThrow(() -> new CardNotFoundExcepion(cardId));
+
+            if (card.isActive()) return;
+            if (!card.getActiveTill().isAfter(LocalDate.now())) {
+               throw new CardHasExpiredException();
+            }
+            card.setStatus(CardStatus.ACTIVE);
+            cardRepository.saveAndFlush(card);
+        });
     }
 
     @Transactional
@@ -74,13 +100,31 @@ public class AdminCardService {
         cardRepository.deleteById(cardId);
     }
 
+    //Список строится из CardRow одним запросом: без сущностей, владельцев и их ролей
     public Page<CardDataAdminResponse> getCards(Pageable pageable) {
-        return cardRepository.findAll(pageable)
+        return cardRepository.findRows(null, pageable)
                 .map(cardMapper::toAdminDto);
     }
 
+    //Выгрузка карт со сроком действия в [from, to] в NDJSON: строка JSON на карту.
+    //Строки идут курсором и сразу пишутся в ответ, без страниц и без сущностей в памяти
+    @Transactional(readOnly = true)
+    public void exportExpiring(LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        if (from.isAfter(to))
+            throw new IllegalStateException("начало периода должно быть не позже конца");
+
+        BufferedOutputStream buffered = new BufferedOutputStream(out, EXPORT_BUFFER_SIZE);
+        try (Stream<CardRow> rows = cardRepository.streamByActiveTillBetween(from, to)) {
+            for (CardRow row : (Iterable<CardRow>) rows::iterator) {
+                buffered.write(objectMapper.writeValueAsBytes(cardMapper.toAdminDto(row)));
+                buffered.write('\n');
+            }
+        }
+        buffered.flush();
+    }
+
     public CardDataAdminResponse getCardById(Long cardId) {
-        return cardMapper.toAdminDto(cardRepository.findById(cardId).orElseThrow(() ->
+        return cardMapper.toAdminDto(cardRepository.findWithOwnerById(cardId).orElseThrow(() ->
                 new CardNotFoundExcepion(cardId)));
 
 
@@ -0,0 +1,103 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.CardExpiryProperties;
+import com.example.bankcards.entity.CardExpiryRun;
+import com.example.bankcards.repository.CardExpiryRunRepository;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+//Ночная задача: переводит карты с истекшим active_till в EXPIRED в колонке status,
+//чтобы фильтры по статусу и индекс (user_id, status) видели актуальное значение.
+//Карты обновляются пачками по chunkSize, каждая пачка - своя транзакция: блокировки строк
+//держатся недолго, а прогресс запуска в card_expiry_runs фиксируется вместе с пачкой.
+//Несколько экземпляров приложения могут выполнять задачу одновременно: SKIP LOCKED разводит их по разным строкам.
+//Поэтому неполная пачка не значит, что карт не осталось (часть строк могла быть занята) - запуск идет до пустой пачки.
+//Пустая пачка при оставшихся кандидатах значит, что все они заняты: через locked-retry-delay делается еще один проход,
+//а что осталось занятым и после него, истечет при следующем запуске.
+//Прогресс виден в card_expiry_runs и метрике cards.expired; отдельного события нет - его некому слушать
+//Задача выполняется в общем пуле планировщика (spring.task.scheduling.pool.size) и не задерживает relay и обновление ключей
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "card.expiry", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CardExpiryService {
+
+    public static final String EXPIRED_METRIC = "cards.expired";
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    CardExpiryRunRepository runRepository;
+
+    @Autowired
+    TransactionOperations transactionOperations;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    CardExpiryProperties properties;
+
+    @Scheduled(cron = "${card.expiry.cron:0 5 0 * * *}")
+    public CardExpiryRun expireCards() {
+        CardExpiryRun run = runRepository.save(CardExpiryRun.builder()
+                .startedAt(LocalDateTime.now())
+                .build());
+        int chunkSize = properties.getChunkSize();
+
+        long expired = 0;
+        int chunks = 0;
+        boolean retried = false;
+        while (true) {
+            int updated = Objects.requireNonNull(transactionOperations.execute(status -> expireChunk(run.getId(), chunkSize)));
+            if (updated > 0) {
+                expired += updated;
+                chunks++;
+                continue;
+            }
+            long locked = cardRepository.countExpiryCandidates();
+            if (locked == 0) break;
+            if (retried || !pause(properties.getLockedRetryDelay())) {
+                log.warn("Истечение карт: {} карт заняты другими транзакциями и истекут при следующем запуске", locked);
+                break;
+            }
+            retried = true;
+        }
+
+        run.setExpiredCount(expired);
+        run.setChunks(chunks);
+        run.setFinishedAt(LocalDateTime.now());
+        runRepository.save(run);
+        meterRegistry.counter(EXPIRED_METRIC).increment(expired);
+        log.info("Истечение карт: {} карт переведено в EXPIRED за {} пачек", expired, chunks);
+        return run;
+    }
+
+    private int expireChunk(Long runId, int chunkSize) {
+        List<Long> cardIds = cardRepository.expireChunk(chunkSize);
+        if (cardIds.isEmpty()) return 0;
+        runRepository.recordChunk(runId, cardIds.size());
+        return cardIds.size();
+    }
+
+    private static boolean pause(Duration delay) {
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.OutboxProperties;
+import com.example.bankcards.entity.OutboxEvent;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+//Для локального запуска: события дописываются в файл по одной JSON-строке.
+//Пачка пишется одним вызовом, поэтому файл можно читать параллельно через tail -f
+@Component
+@ConditionalOnProperty(prefix = "outbox", name = "sink", havingValue = "file")
+public class FileOutboxSink implements OutboxSink {
+
+    @Autowired
+    OutboxProperties properties;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Path path;
+
+    private record Line(Long sequence, String type, Long transferId, @JsonRawValue String payload) {}
+
+    @PostConstruct
+    void init() throws IOException {
+        path = Path.of(properties.getFile().getPath()).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+    }
+
+    @Override
+    public synchronized void send(List<OutboxEvent> events) {
+        StringBuilder lines = new StringBuilder();
+        for (OutboxEvent event : events) {
+            Line line = new Line(event.getSequenceNumber(), event.getEventType().name(), event.getTransferId(), event.getPayload());
+            lines.append(objectMapper.writeValueAsString(line)).append('\n');
+        }
+        try {
+            Files.writeString(path, lines, CREATE, APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.OutboxProperties;
+import com.example.bankcards.entity.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+//Для локального запуска и тестов: последние события держатся в памяти
+@Component
+@ConditionalOnProperty(prefix = "outbox", name = "sink", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOutboxSink implements OutboxSink {
+
+    @Autowired
+    OutboxProperties properties;
+
+    private final Deque<OutboxEvent> events = new ArrayDeque<>();
+
+    @Override
+    public synchronized void send(List<OutboxEvent> batch) {
+        for (OutboxEvent event : batch) {
+            if (events.size() == properties.getMemory().getCapacity())
+                events.removeFirst();
+            events.addLast(event);
+        }
+    }
+
+    public synchronized List<OutboxEvent> events() {
+        return List.copyOf(events);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.LedgerProperties;
+import com.example.bankcards.dto.adminFuncs.LedgerReconciliationResponse;
+import com.example.bankcards.dto.adminFuncs.LedgerReconciliationResponse.Mismatch;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Slf4j
+@Service
+public class LedgerService {
+
+    @Autowired
+    LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    TransactionOperations transactionOperations;
+
+    @Autowired
+    LedgerProperties properties;
+
+    //Вызывается в транзакции перевода, после того как его балансы изменены
+    public void record(Transfer transfer) {
+        ledgerEntryRepository.recordTransfers(List.of(transfer.getId()));
+    }
+
+    public void recordAll(Collection<Transfer> transfers) {
+        if (transfers.isEmpty()) return;
+        ledgerEntryRepository.recordTransfers(transfers.stream().map(Transfer::getId).toList());
+    }
+
+    //Начальный баланс новой карты; карта с нулевым балансом проводки не получает
+    public void recordOpening(Long cardId) {
+        ledgerEntryRepository.recordOpening(cardId);
+    }
+
+    //Только чтение: диапазоны id карт сверяются по очереди, каждый отдельным агрегирующим запросом
+    public LedgerReconciliationResponse verify() {
+        long started = System.currentTimeMillis();
+        long maxCardId = ledgerEntryRepository.maxCardId();
+        int chunkSize = properties.getRebuildChunkSize();
+
+        int chunks = 0;
+        long found = 0;
+        List<Mismatch> mismatches = new ArrayList<>();
+        for (long from = 1; from <= maxCardId; from += chunkSize) {
+            long to = from + chunkSize - 1;
+            for (var mismatch : ledgerEntryRepository.findMismatches(from, to)) {
+                found++;
+                if (mismatches.size() < properties.getMaxReportedMismatches())
+                    mismatches.add(new Mismatch(mismatch.getCardId(), mismatch.getBalance(), mismatch.getLedgerBalance()));
+            }
+            chunks++;
+        }
+        if (found > 0) log.warn("Сверка журнала: {} карт с расхождением баланса", found);
+        return new LedgerReconciliationResponse(chunks, found, mismatches, System.currentTimeMillis() - started);
+    }
+
+    //Пересчет балансов из журнала. Каждый диапазон - своя короткая транзакция: карты диапазона
+    //блокируются по возрастанию id, затем баланс и last_ledger_entry_id пишутся одним UPDATE из агрегата.
+    //Переводы ждут только на блокировке текущего диапазона, а не всей таблицы
+    public LedgerReconciliationResponse rebuild() {
+        long started = System.currentTimeMillis();
+        long maxCardId = ledgerEntryRepository.maxCardId();
+        int chunkSize = properties.getRebuildChunkSize();
+
+        int chunks = 0;
+        long updated = 0;
+        for (long from = 1; from <= maxCardId; from += chunkSize) {
+            long rangeFrom = from;
+            long rangeTo = from + chunkSize - 1;
+            Integer rows = transactionOperations.execute(status -> {
+                ledgerEntryRepository.lockCardRange(rangeFrom, rangeTo);
+                return ledgerEntryRepository.rebuildRange(rangeFrom, rangeTo);
+            });
+            updated += rows == null ? 0 : rows;
+            chunks++;
+        }
+        log.info("Пересчет балансов из журнала: {} диапазонов, исправлено {} карт", chunks, updated);
+        return new LedgerReconciliationResponse(chunks, updated, List.of(), System.currentTimeMillis() - started);
+    }
+}
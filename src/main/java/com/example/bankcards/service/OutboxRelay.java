@@ -0,0 +1,38 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.OutboxProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+//Переносит события из outbox_events в OutboxSink. Пока пачки приходят полными, в таблице есть
+//еще события, и следующая забирается сразу; иначе релей ждет poll-interval.
+//За один запуск отправляется не больше max-batches-per-tick пачек, чтобы большой хвост не занимал поток планировщика
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "outbox.relay", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    @Autowired
+    OutboxService outboxService;
+
+    @Autowired
+    OutboxProperties properties;
+
+    @Scheduled(fixedDelayString = "${outbox.relay.poll-interval:500ms}")
+    public void relay() {
+        try {
+            OutboxProperties.Relay relay = properties.getRelay();
+            int batches = 0;
+            int sent;
+            do {
+                sent = outboxService.publishBatch();
+                batches++;
+            } while (sent == relay.getBatchSize() && batches < relay.getMaxBatchesPerTick());
+        } catch (RuntimeException e) {
+            log.error("Ошибка отправки событий outbox, пачка будет отправлена повторно", e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.OutboxProperties;
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Slf4j
+@Service
+public class OutboxService {
+
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    OutboxSink sink;
+
+    @Autowired
+    TransactionOperations transactionOperations;
+
+    @Autowired
+    OutboxProperties properties;
+
+    //Вызывается в транзакции перевода, после того как перевод записан: событие и перевод фиксируются вместе
+    public void record(Transfer transfer) {
+        outboxEventRepository.recordTransfers(List.of(transfer.getId()));
+    }
+
+    public void recordAll(Collection<Transfer> transfers) {
+        if (transfers.isEmpty()) return;
+        outboxEventRepository.recordTransfers(transfers.stream().map(Transfer::getId).toList());
+    }
+
+    public void recordFailed(Long transferId) {
+        outboxEventRepository.recordTransfers(List.of(transferId));
+    }
+
+    //Два шага под блокировкой счетчика outbox_sequence. Сначала закоммиченным событиям присваиваются
+    //плотные номера, и номера фиксируются отдельной транзакцией. Затем пачка с наименьшими номерами
+    //отправляется и помечается в одной транзакции. Если sink не принял пачку или приложение упало
+    //до коммита, события уйдут повторно с теми же номерами - доставка "хотя бы один раз" в порядке номеров,
+    //и потребитель может отбрасывать дубликаты по последнему виденному номеру
+    public int publishBatch() {
+        int batchSize = properties.getRelay().getBatchSize();
+        transactionOperations.executeWithoutResult(status -> {
+            long lastValue = outboxEventRepository.lockSequence();
+            int assigned = outboxEventRepository.assignSequence(lastValue, batchSize);
+            if (assigned > 0) outboxEventRepository.advanceSequence(assigned);
+        });
+        Integer sent = transactionOperations.execute(status -> {
+            outboxEventRepository.lockSequence();
+            List<OutboxEvent> events = outboxEventRepository.findSequencedUnpublished(batchSize);
+            if (events.isEmpty()) return 0;
+            sink.send(events);
+            outboxEventRepository.markPublished(events.stream().map(OutboxEvent::getId).toList());
+            return events.size();
+        });
+        return sent == null ? 0 : sent;
+    }
+
+    @Scheduled(cron = "${outbox.cleanup-cron:0 30 3 * * *}")
+    public void removePublishedEvents() {
+        int removed = outboxEventRepository.deletePublishedBefore(LocalDateTime.now().minus(properties.getRetention()));
+        if (removed > 0) log.info("Удалено {} отправленных событий outbox", removed);
+    }
+}
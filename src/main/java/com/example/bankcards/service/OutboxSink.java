@@ -0,0 +1,14 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.OutboxEvent;
+
+import java.util.List;
+
+//Получатель событий outbox. Для брокера сообщений объявляется свой бин с outbox.sink, отличным от memory и file
+public interface OutboxSink {
+
+    //События приходят по возрастанию sequenceNumber, без пропусков. Исключение означает, что пачка
+    //не доставлена и будет отправлена повторно с теми же номерами, поэтому потребитель
+    //может отбрасывать события с номером не больше последнего обработанного
+    void send(List<OutboxEvent> events);
+}
@@ -0,0 +1,262 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
+import com.example.bankcards.dto.userFuncs.transfer.TransferResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.exception.CardNotActiveException;
+import com.example.bankcards.exception.CardNotFoundExcepion;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.TransferQueueFullException;
+import com.example.bankcards.exception.TransferResultTimeoutException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.mappers.CardMapper;
+import com.example.bankcards.util.mappers.TransferMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.example.bankcards.entity.Card.*;
+
+//Однописательный секвенсор для "горячих" карт (transfer.sequencer.enabled).
+//Перевод попадает в очередь шарда по id "горячей" карты (см. routingCardId), у каждого шарда ровно один поток-писатель.
+//Писатель забирает из очереди все накопившееся (до maxBatchSize) и проводит пачку одной транзакцией:
+//карты пачки блокируются одним SELECT ... FOR UPDATE по возрастанию id, балансы считаются в памяти,
+//а UPDATE карт и INSERT переводов уходят JDBC-пачками. Сотня переводов с одной карты - это одна
+//блокировка и одна запись строки вместо сотни транзакций в очереди на блокировку.
+//Вызывающий поток ждет, пока пачка с его переводом будет зафиксирована, но не дольше result-timeout
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "transfer.sequencer", name = "enabled", havingValue = "true")
+public class SequencedTransferEngine implements TransferEngine {
+
+    @Autowired
+    CardRepository cardRepository;
+
+    @Autowired
+    TransferRepository transferRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransferMapper transferMapper;
+
+    @Autowired
+    CardMapper cardMapper;
+
+    @Autowired
+    LedgerService ledgerService;
+
+    @Autowired
+    OutboxService outboxService;
+
+    @Autowired
+    TransactionOperations transactionOperations;
+
+    @Autowired
+    TransferProperties properties;
+
+    private List<BlockingQueue<Submission>> queues;
+    private ExecutorService writers;
+
+    record Submission(TransferRequest request,
+                      Long userId,
+                      Consumer<TransferResponse> inTransaction,
+                      CompletableFuture<TransferResponse> result) {
+
+        Submission(TransferRequest request, Long userId, Consumer<TransferResponse> inTransaction) {
+            this(request, userId, inTransaction, new CompletableFuture<>());
+        }
+    }
+
+    private record Outcome(Submission submission, TransferResponse response, RuntimeException rejection) {}
+
+    @PostConstruct
+    void start() {
+        TransferProperties.Sequencer sequencer = properties.getSequencer();
+        AtomicInteger counter = new AtomicInteger();
+        queues = new ArrayList<>(sequencer.getShards());
+        writers = Executors.newFixedThreadPool(sequencer.getShards(),
+                task -> new Thread(task, "transfer-sequencer-" + counter.incrementAndGet()));
+        for (int i = 0; i < sequencer.getShards(); i++) {
+            BlockingQueue<Submission> queue = new ArrayBlockingQueue<>(sequencer.getQueueCapacity());
+            queues.add(queue);
+            writers.submit(() -> run(queue));
+        }
+        log.info("Запущен секвенсор переводов: {} шардов", sequencer.getShards());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writers == null) return;
+        writers.shutdownNow();
+        writers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public TransferResponse transfer(TransferRequest request, Long userId, Consumer<TransferResponse> inTransaction) {
+        if (request.fromCardId().equals(request.toCardId()))
+            throw new IllegalStateException("перевод должен осуществляться на разные карты");
+
+        if (request.amount().compareTo(BigDecimal.ZERO) <= 0)
+            throw new IllegalStateException("сумма перевода должна быть положительным числом");
+
+        Submission submission = new Submission(request, userId, inTransaction);
+        try {
+            long timeout = properties.getSequencer().getOfferTimeout().toMillis();
+            if (!shardOf(request).offer(submission, timeout, TimeUnit.MILLISECONDS))
+                throw new TransferQueueFullException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferQueueFullException();
+        }
+
+        //Попавший в очередь перевод может быть зафиксирован и после таймаута, поэтому ответ по таймауту -
+        //не отказ, а неизвестный исход: повтор с тем же Idempotency-Key вернет результат, если пачка зафиксирована
+        try {
+            long timeout = properties.getSequencer().getResultTimeout().toMillis();
+            return submission.result().get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new TransferResultTimeoutException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferResultTimeoutException();
+        }
+    }
+
+    BlockingQueue<Submission> shardOf(TransferRequest request) {
+        return queues.get(Math.floorMod(Long.hashCode(routingCardId(request)), queues.size()));
+    }
+
+    //Платежи на карту мерчанта приходят с множества карт: при разбиении по карте списания они разошлись бы
+    //по всем шардам, и каждый писатель блокировал бы строку мерчанта сам. Поэтому зачисление на карту
+    //из transfer.sequencer.hot-cards идет в ее шард. Остальные переводы - по карте списания.
+    //Карта другой стороны может попасть в чужой шард, это безопасно: пачка держит блокировку строк всех своих карт
+    Long routingCardId(TransferRequest request) {
+        Set<Long> hotCards = properties.getSequencer().getHotCards();
+        if (hotCards.contains(request.toCardId()) && !hotCards.contains(request.fromCardId()))
+            return request.toCardId();
+        return request.fromCardId();
+    }
+
+    private void run(BlockingQueue<Submission> queue) {
+        int maxBatchSize = properties.getSequencer().getMaxBatchSize();
+        List<Submission> batch = new ArrayList<>(maxBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Ошибка писателя секвенсора переводов", e);
+                batch.forEach(submission -> submission.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+
+        List<Submission> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(submission -> submission.result().completeExceptionally(new TransferQueueFullException()));
+    }
+
+    //Future завершаются только после коммита. Если пачка откатилась целиком (например, ключ
+    //идемпотентности одного из переводов уже занят), переводы проводятся по одному,
+    //чтобы ошибка одного не отменяла остальные
+    void process(List<Submission> batch) {
+        List<Outcome> outcomes;
+        try {
+            outcomes = transactionOperations.execute(status -> applyBatch(batch));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.getFirst().result().completeExceptionally(e);
+                return;
+            }
+            log.warn("Пачка из {} переводов откатилась, проводим по одному", batch.size(), e);
+            batch.forEach(submission -> process(List.of(submission)));
+            return;
+        }
+
+        for (Outcome outcome : Objects.requireNonNull(outcomes)) {
+            if (outcome.rejection() != null)
+                outcome.submission().result().completeExceptionally(outcome.rejection());
+            else
+                outcome.submission().result().complete(outcome.response());
+        }
+    }
+
+    private List<Outcome> applyBatch(List<Submission> batch) {
+        Set<Long> cardIds = new HashSet<>();
+        for (Submission submission : batch) {
+            cardIds.add(submission.request().fromCardId());
+            cardIds.add(submission.request().toCardId());
+        }
+        Map<Long, Card> cards = cardRepository.findAllByIdInForUpdate(cardIds).stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+
+        List<Outcome> outcomes = new ArrayList<>(batch.size());
+        Map<Submission, Transfer> accepted = new LinkedHashMap<>();
+        for (Submission submission : batch) {
+            try {
+                accepted.put(submission, apply(submission, cards));
+            } catch (CardNotFoundExcepion | CardNotActiveException | InsufficientFundsException e) {
+                outcomes.add(new Outcome(submission, null, e));
+            }
+        }
+
+        List<Transfer> transfers = List.copyOf(accepted.values());
+        transferRepository.saveAll(transfers);
+        ledgerService.recordAll(transfers);
+        outboxService.recordAll(transfers);
+        accepted.forEach((submission, transfer) -> {
+            TransferResponse response = transferMapper.toResponse(transfer);
+            submission.inTransaction().accept(response);
+            outcomes.add(new Outcome(submission, response, null));
+        });
+        return outcomes;
+    }
+
+    private Transfer apply(Submission submission, Map<Long, Card> cards) {
+        TransferRequest request = submission.request();
+        Card fromCard = activeOwnedCard(request.fromCardId(), submission.userId(), cards);
+        Card toCard = activeOwnedCard(request.toCardId(), submission.userId(), cards);
+
+        if (fromCard.getBalance().compareTo(request.amount()) < 0)
+            throw new InsufficientFundsException(cardMapper.mapCardNumFromEntity(fromCard),
+                    fromCard.getBalance(), request.amount());
+
+        fromCard.setBalance(fromCard.getBalance().subtract(request.amount()));
+        toCard.setBalance(toCard.getBalance().add(request.amount()));
+        return transferMapper.toEntity(request, cardRepository, userRepository.getReferenceById(submission.userId()));
+    }
+
+    private Card activeOwnedCard(Long cardId, Long userId, Map<Long, Card> cards) {
+        Card card = cards.get(cardId);
+        if (card == null || !card.getOwner().getId().equals(userId))
+            throw new CardNotFoundExcepion(cardId);
+        if (!card.isActive())
+            throw new CardNotActiveException(cardMapper.mapCardNumFromEntity(card));
+        return card;
+    }
+}
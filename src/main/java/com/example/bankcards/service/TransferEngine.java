@@ -0,0 +1,14 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
+import com.example.bankcards.dto.userFuncs.transfer.TransferResponse;
+
+import java.util.function.Consumer;
+
+//Альтернативный способ провести одиночный перевод за TransferService.createTransfer.
+//Если бин не объявлен, используется синхронный путь TransferService (transfer.concurrency-mode)
+public interface TransferEngine {
+
+    //inTransaction должен выполниться в транзакции, которая фиксирует перевод
+    TransferResponse transfer(TransferRequest request, Long userId, Consumer<TransferResponse> inTransaction);
+}
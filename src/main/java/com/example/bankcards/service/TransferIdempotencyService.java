@@ -0,0 +1,159 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.IdempotencyProperties;
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
+import com.example.bankcards.dto.userFuncs.transfer.TransferResponse;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+//Дедупликация POST /api/transfers по заголовку Idempotency-Key в три уровня:
+//1. ограниченный кэш в памяти - повтор стоит одного обращения к кэшу, без транзакции;
+//2. карта выполняющихся запросов - параллельный дубль ждет результат первого, а не выполняет перевод еще раз;
+//3. таблица idempotency_keys с unique (user_id, idem_key) - ключ пишется в транзакции перевода,
+//   поэтому переживает рестарт и защищает от гонки между экземплярами приложения
+@Slf4j
+@Service
+public class TransferIdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Autowired
+    TransferService transferService;
+
+    @Autowired
+    IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    TransferProperties transferProperties;
+
+    @Autowired
+    IdempotencyProperties properties;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Cache<Key, StoredResponse> completed;
+
+    private final ConcurrentMap<Key, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        completed = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    public TransferResponse createTransfer(TransferRequest request, Long userId, String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH)
+            throw new IllegalStateException("Idempotency-Key должен быть непустой строкой не длиннее " + MAX_KEY_LENGTH + " символов");
+
+        Key key = new Key(userId, idempotencyKey);
+        String requestHash = requestHash(request);
+
+        StoredResponse cached = completed.getIfPresent(key);
+        if (cached != null) return cached.matching(requestHash);
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) return await(running).matching(requestHash);
+
+        try {
+            StoredResponse result = load(key).orElseGet(() -> executeOnce(key, request, requestHash));
+            completed.put(key, result);
+            mine.complete(result);
+            return result.matching(requestHash);
+        } catch (RuntimeException e) {
+            //ошибки не кэшируются: повтор с тем же ключом выполнит перевод заново
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private StoredResponse executeOnce(Key key, TransferRequest request, String requestHash) {
+        Consumer<TransferResponse> remember = response -> idempotencyKeyRepository.save(IdempotencyKey.builder()
+                .userId(key.userId())
+                .idemKey(key.value())
+                .requestHash(requestHash)
+                .response(objectMapper.writeValueAsString(response))
+                .createdAt(LocalDateTime.now())
+                .build());
+        try {
+            TransferResponse response = transferProperties.getAsync().isEnabled()
+                    ? transferService.submitTransfer(request, key.userId(), remember)
+                    : transferService.createTransfer(request, key.userId(), remember);
+            return new StoredResponse(requestHash, response);
+        } catch (DataIntegrityViolationException e) {
+            //тот же ключ одновременно обработал другой экземпляр: наша транзакция с переводом откатилась
+            log.debug("Ключ идемпотентности {} уже сохранен другим запросом", key.value());
+            return load(key).orElseThrow(() -> e);
+        }
+    }
+
+    private Optional<StoredResponse> load(Key key) {
+        return idempotencyKeyRepository.findByUserIdAndIdemKey(key.userId(), key.value())
+                .map(stored -> new StoredResponse(stored.getRequestHash(),
+                        objectMapper.readValue(stored.getResponse(), TransferResponse.class)));
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    @Scheduled(cron = "${idempotency.cleanup-cron:0 15 * * * *}")
+    public void removeExpiredKeys() {
+        int removed = idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minus(properties.getTtl()));
+        if (removed > 0) log.info("Удалено {} устаревших ключей идемпотентности", removed);
+    }
+
+    static String requestHash(TransferRequest request) {
+        String canonical = request.fromCardId() + "|" + request.toCardId() + "|"
+                + request.amount().stripTrailingZeros().toPlainString() + "|"
+                + (request.description() == null ? "" : request.description());
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Key(Long userId, String value) {}
+
+    private record StoredResponse(String requestHash, TransferResponse response) {
+        TransferResponse matching(String requestHash) {
+            if (!this.requestHash.equals(requestHash))
+                throw new IllegalStateException("Idempotency-Key уже использован для другого перевода");
+            return response;
+        }
+    }
+}
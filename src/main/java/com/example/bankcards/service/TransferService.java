@@ -1,8 +1,14 @@
 package com.example.bankcards.service;
 
 
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.userFuncs.transfer.TransferBatchItemResult;
+import com.example.bankcards.dto.userFuncs.transfer.TransferBatchRequest;
+import com.example.bankcards.dto.userFuncs.transfer.TransferBatchResponse;
+import com.example.bankcards.dto.userFuncs.transfer.TransferHistorySlice;
 import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
 import com.example.bankcards.dto.userFuncs.transfer.TransferResponse;
+import com.example.bankcards.dto.userFuncs.transfer.TransferStatusResponse;
 import com.example.bankcards.dto.userFuncs.transfer.TransferSummary;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transfer;
@@ -11,21 +17,32 @@ import com.example.bankcards.exception.*;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.HistoryCursor;
+import com.example.bankcards.util.OptimisticRetryExecutor;
 import com.example.bankcards.util.mappers.CardMapper;
 import com.example.bankcards.util.mappers.TransferMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.example.bankcards.entity.Card.*;
 
 @Service
 public class TransferService {
+
+    private static final int DEBIT_ATTEMPTS = 3;
+
     @Autowired
     TransferMapper transferMapper;
     @Autowired
@@ -40,26 +57,229 @@ public class TransferService {
     @Autowired
     CardRepository cardRepository;
 
+    @Autowired
+    TransferProperties properties;
 
-    @Transactional
+    @Autowired
+    OptimisticRetryExecutor retryExecutor;
+
+    @Autowired
+    LedgerService ledgerService;
+
+    @Autowired
+    OutboxService outboxService;
+
+    //Объявлен только при transfer.sequencer.enabled, иначе переводы идут синхронным путем ниже
+    @Autowired(required = false)
+    TransferEngine transferEngine;
+
+
+    //Транзакцию открывает retryExecutor - по одной на попытку, чтобы повтор начинался с чистого контекста
     public TransferResponse createTransfer(TransferRequest request, Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException(userId));
+        return createTransfer(request, userId, response -> {});
+    }
 
-        Card fromCard = cardRepository.findByIdAndOwnerId(request.fromCardId(), userId)
-                .orElseThrow(() -> new CardNotFoundExcepion(request.fromCardId()));
-        String fromCardNumMasked = cardMapper.mapCardNumFromEntity(fromCard);
-        if (fromCard.getStatus() != CardStatus.ACTIVE)
-            throw new CardNotActiveException(fromCardNumMasked);
+    //inTransaction выполняется в той же транзакции, что и перевод (и повторяется вместе с ним):
+    //так запись ключа идемпотентности не может разойтись с самим переводом
+    public TransferResponse createTransfer(TransferRequest request, Long userId, Consumer<TransferResponse> inTransaction) {
+        if (transferEngine != null)
+            return transferEngine.transfer(request, userId, inTransaction);
+
+        return retryExecutor.execute("transfer", request.fromCardId(), () -> {
+            TransferResponse response = switch (properties.getConcurrencyMode()) {
+                case PESSIMISTIC -> createWithLockedCards(request, userId);
+                case OPTIMISTIC -> createWithVersionCheck(request, userId);
+                case CONDITIONAL_UPDATE -> createWithConditionalUpdate(request, userId);
+            };
+            inTransaction.accept(response);
+            return response;
+        });
+    }
+
+    //Асинхронный режим: проверяются только владение картами и параметры перевода,
+    //балансы меняет TransferWorker. Недостаток средств выяснится при обработке
+    @Transactional
+    public TransferResponse submitTransfer(TransferRequest request, Long userId) {
+        return submitTransfer(request, userId, response -> {});
+    }
+
+    @Transactional
+    public TransferResponse submitTransfer(TransferRequest request, Long userId, Consumer<TransferResponse> inTransaction) {
+        if (request.fromCardId().equals(request.toCardId()))
+            throw new IllegalStateException("перевод должен осуществляться на разные карты");
+
+        if (request.amount().compareTo(BigDecimal.ZERO) <= 0)
+            throw new IllegalStateException("сумма перевода должна быть положительным числом");
 
-        Card toCard = cardRepository.findByIdAndOwnerId(request.toCardId(), userId)
+        cardRepository.findByIdAndOwnerId(request.fromCardId(), userId)
+                .orElseThrow(() -> new CardNotFoundExcepion(request.fromCardId()));
+        cardRepository.findByIdAndOwnerId(request.toCardId(), userId)
                 .orElseThrow(() -> new CardNotFoundExcepion(request.toCardId()));
-        if (toCard.getStatus() != CardStatus.ACTIVE)
-            throw new CardNotActiveException(cardMapper.mapCardNumFromEntity(toCard));
 
-        if (request.fromCardId() == request.toCardId())
+        Transfer transfer = transferMapper.toPendingEntity(request, cardRepository, userRepository.getReferenceById(userId));
+        transferRepository.save(transfer);
+
+        TransferResponse response = transferMapper.toResponse(transfer);
+        inTransaction.accept(response);
+        return response;
+    }
+
+    //Вызывается воркером для перевода, который он перевел в PROCESSING.
+    //Строка перевода блокируется, поэтому повторно забранный зависший перевод не будет проведен дважды.
+    //Отказ (нет средств, карта неактивна) пробрасывается: транзакция с частичным списанием откатывается,
+    //а FAILED проставляется отдельной транзакцией в failPendingTransfer
+    @Transactional
+    public void processPendingTransfer(Long transferId) {
+        Transfer transfer = transferRepository.findByIdForUpdate(transferId)
+                .orElseThrow(() -> new TransferNotFoundException(transferId));
+        if (transfer.getStatus() != Transfer.TransferStatus.PROCESSING) return;
+
+        TransferRequest request = new TransferRequest(
+                transfer.getFromCard().getId(),
+                transfer.getToCard().getId(),
+                transfer.getAmount(),
+                transfer.getDescription());
+        debitAndCredit(request, transfer.getInitiatedBy().getId());
+
+        LocalDateTime now = LocalDateTime.now();
+        transfer.setStatus(Transfer.TransferStatus.COMPLETED);
+        transfer.setCompletedAt(now);
+        transfer.setUpdatedAt(now);
+        ledgerService.record(transfer);
+        outboxService.record(transfer);
+    }
+
+    @Transactional
+    public void failPendingTransfer(Long transferId, String reason) {
+        if (transferRepository.markFailed(transferId, reason) > 0)
+            outboxService.recordFailed(transferId);
+    }
+
+    public TransferStatusResponse getTransferStatus(Long transferId, Long userId) {
+        return transferRepository.findByIdAndInitiatedById(transferId, userId)
+                .map(transferMapper::toStatusResponse)
+                .orElseThrow(() -> new TransferNotFoundException(transferId));
+    }
+
+    //Карты не загружаются: списание и зачисление - по одному UPDATE с условиями в WHERE,
+    //плюс вставка перевода. Итого три обращения к базе и ни одного окна между чтением и записью баланса
+    private TransferResponse createWithConditionalUpdate(TransferRequest request, Long userId) {
+        if (request.fromCardId().equals(request.toCardId()))
+            throw new IllegalStateException("перевод должен осуществляться на разные карты");
+
+        if (request.amount().compareTo(BigDecimal.ZERO) <= 0)
+            throw new IllegalStateException("сумма перевода должна быть положительным числом");
+
+        CardNums cardNums = debitAndCredit(request, userId);
+
+        Transfer transfer = transferMapper.toEntity(request, cardRepository, userRepository.getReferenceById(userId));
+        transferRepository.save(transfer);
+        ledgerService.record(transfer);
+        outboxService.record(transfer);
+
+        return transferMapper.toResponse(transfer, cardNums.from(), cardNums.to());
+    }
+
+    //UPDATE берет блокировку строки, поэтому порядок тот же, что и в PESSIMISTIC - по возрастанию id
+    private CardNums debitAndCredit(TransferRequest request, Long userId) {
+        if (request.fromCardId() < request.toCardId()) {
+            String fromCardNum = debit(request, userId);
+            return new CardNums(fromCardNum, credit(request, userId));
+        }
+        String toCardNum = credit(request, userId);
+        return new CardNums(debit(request, userId), toCardNum);
+    }
+
+    private record CardNums(String from, String to) {}
+
+    //Отказ списания, за которым чтение показало достаточный баланс, значит, что карту пополнили между
+    //UPDATE и чтением: списание повторяется. Если баланс так и не удалось поймать - это недостаток средств
+    private String debit(TransferRequest request, Long userId) {
+        for (int attempt = 1; attempt <= DEBIT_ATTEMPTS; attempt++) {
+            Optional<String> cardNum = cardRepository.debitIfSufficient(request.fromCardId(), userId, request.amount());
+            if (cardNum.isPresent()) return cardNum.get();
+            RuntimeException rejection = debitRejection(request, userId);
+            if (rejection != null) throw rejection;
+        }
+        throw new InsufficientFundsException();
+    }
+
+    private String credit(TransferRequest request, Long userId) {
+        return cardRepository.creditIfActive(request.toCardId(), userId, request.amount())
+                .orElseThrow(() -> creditRejection(request, userId));
+    }
+
+    //Условный UPDATE не сообщает, какое условие не выполнилось: причину выясняем
+    //отдельным чтением только на пути отказа. null - причины нет, баланс уже достаточен
+    private RuntimeException debitRejection(TransferRequest request, Long userId) {
+        var card = cardRepository.findByIdAndOwnerId(request.fromCardId(), userId);
+        if (card.isEmpty())
+            return new CardNotFoundExcepion(request.fromCardId());
+        String masked = cardMapper.mapCardNumFromEntity(card.get());
+        if (!card.get().isActive())
+            return new CardNotActiveException(masked);
+        if (card.get().getBalance().compareTo(request.amount()) < 0)
+            return new InsufficientFundsException(masked, card.get().getBalance(), request.amount());
+        return null;
+    }
+
+    private RuntimeException creditRejection(TransferRequest request, Long userId) {
+        var card = cardRepository.findByIdAndOwnerId(request.toCardId(), userId);
+        if (card.isEmpty())
+            return new CardNotFoundExcepion(request.toCardId());
+        return new CardNotActiveException(cardMapper.mapCardNumFromEntity(card.get()));
+    }
+
+    //Ни одной блокировки строки до записи: карты читаются обычным SELECT, а UPDATE проверяет version.
+    //Если карту успел изменить кто-то другой, flush бросает ObjectOptimisticLockingFailureException
+    //и retryExecutor повторяет перевод с перечитанными балансами
+    private TransferResponse createWithVersionCheck(TransferRequest request, Long userId) {
+        if (request.fromCardId().equals(request.toCardId()))
             throw new IllegalStateException("перевод должен осуществляться на разные карты");
 
+        if (request.amount().compareTo(BigDecimal.ZERO) <= 0)
+            throw new IllegalStateException("сумма перевода должна быть положительным числом");
+
+        Card fromCard = findActiveCard(request.fromCardId(), userId);
+        Card toCard = findActiveCard(request.toCardId(), userId);
+
+        if (fromCard.getBalance().compareTo(request.amount()) < 0)
+            throw new InsufficientFundsException(cardMapper.mapCardNumFromEntity(fromCard),
+                    fromCard.getBalance(), request.amount());
+
+        fromCard.setBalance(fromCard.getBalance().subtract(request.amount()));
+        toCard.setBalance(toCard.getBalance().add(request.amount()));
+        //flush сразу, чтобы конфликт версий обнаружился до вставки перевода
+        cardRepository.saveAllAndFlush(List.of(fromCard, toCard));
+
+        Transfer transfer = transferMapper.toEntity(request, cardRepository, userRepository.getReferenceById(userId));
+        transferRepository.save(transfer);
+        ledgerService.record(transfer);
+        outboxService.record(transfer);
+
+        return transferMapper.toResponse(transfer);
+    }
+
+    private Card findActiveCard(Long cardId, Long userId) {
+        Card card = cardRepository.findByIdAndOwnerId(cardId, userId)
+                .orElseThrow(() -> new CardNotFoundExcepion(cardId));
+        if (!card.isActive())
+            throw new CardNotActiveException(cardMapper.mapCardNumFromEntity(card));
+        return card;
+    }
+
+    private TransferResponse createWithLockedCards(TransferRequest request, Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new UserNotFoundException(userId));
+
+        if (request.fromCardId().equals(request.toCardId()))
+            throw new IllegalStateException("перевод должен осуществляться на разные карты");
+
+        CardPair cards = lockCardsInIdOrder(request, userId);
+        Card fromCard = cards.from();
+        Card toCard = cards.to();
+        String fromCardNumMasked = cardMapper.mapCardNumFromEntity(fromCard);
+
         if (fromCard.getBalance().compareTo(request.amount()) < 0)
             throw new InsufficientFundsException(fromCardNumMasked, fromCard.getBalance(),request.amount());
 
@@ -72,13 +292,120 @@ public class TransferService {
 
         Transfer transfer = transferMapper.toEntity(request,cardRepository, user);
         transferRepository.save(transfer);
+        ledgerService.record(transfer);
+        outboxService.record(transfer);
 
         return transferMapper.toResponse(transfer);
 
     }
 
+    //Строки карт блокируются в порядке возрастания id, а не в порядке "откуда-куда":
+    //встречные переводы A->B и B->A ждут друг друга на одной и той же первой строке вместо взаимоблокировки
+    private CardPair lockCardsInIdOrder(TransferRequest request, Long userId) {
+        if (request.fromCardId() < request.toCardId()) {
+            Card fromCard = findActiveCardForUpdate(request.fromCardId(), userId);
+            return new CardPair(fromCard, findActiveCardForUpdate(request.toCardId(), userId));
+        }
+        Card toCard = findActiveCardForUpdate(request.toCardId(), userId);
+        return new CardPair(findActiveCardForUpdate(request.fromCardId(), userId), toCard);
+    }
+
+    private Card findActiveCardForUpdate(Long cardId, Long userId) {
+        Card card = cardRepository.findByIdAndOwnerIdForUpdate(cardId, userId)
+                .orElseThrow(() -> new CardNotFoundExcepion(cardId));
+        if (!card.isActive())
+            throw new CardNotActiveException(cardMapper.mapCardNumFromEntity(card));
+        return card;
+    }
+
+    private record CardPair(Card from, Card to) {}
+
+    //Весь пакет - одна транзакция: карты блокируются одним SELECT ... FOR UPDATE по возрастанию id,
+    //переводы применяются к балансам в памяти по порядку, а изменения карт и вставки переводов
+    //уходят в базу JDBC-пачками (hibernate.jdbc.batch_size) при flush.
+    //Отклоненный перевод не отменяет остальные - его причина попадает в результат
+    @Transactional
+    public TransferBatchResponse createTransferBatch(TransferBatchRequest request, Long userId) {
+        List<TransferRequest> items = request.transfers();
+        Set<Long> cardIds = new HashSet<>();
+        for (TransferRequest item : items) {
+            cardIds.add(item.fromCardId());
+            cardIds.add(item.toCardId());
+        }
+        Map<Long, Card> cards = cardRepository.findAllByIdInAndOwnerIdForUpdate(cardIds, userId).stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+        User user = userRepository.getReferenceById(userId);
+
+        TransferBatchItemResult[] results = new TransferBatchItemResult[items.size()];
+        Map<Integer, Transfer> transfers = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                transfers.put(i, applyBatchItem(items.get(i), cards, user));
+            } catch (CardNotFoundExcepion | CardNotActiveException | InsufficientFundsException | IllegalStateException e) {
+                results[i] = TransferBatchItemResult.rejected(i, e.getMessage());
+            }
+        }
+
+        List<Transfer> accepted = List.copyOf(transfers.values());
+        transferRepository.saveAll(accepted);
+        ledgerService.recordAll(accepted);
+        outboxService.recordAll(accepted);
+        transfers.forEach((i, transfer) ->
+                results[i] = TransferBatchItemResult.completed(i, transferMapper.toResponse(transfer)));
+
+        return new TransferBatchResponse(transfers.size(), items.size() - transfers.size(), List.of(results));
+    }
+
+    private Transfer applyBatchItem(TransferRequest item, Map<Long, Card> cards, User user) {
+        if (item.fromCardId().equals(item.toCardId()))
+            throw new IllegalStateException("перевод должен осуществляться на разные карты");
+
+        Card fromCard = activeBatchCard(item.fromCardId(), cards);
+        Card toCard = activeBatchCard(item.toCardId(), cards);
+
+        if (fromCard.getBalance().compareTo(item.amount()) < 0)
+            throw new InsufficientFundsException(cardMapper.mapCardNumFromEntity(fromCard),
+                    fromCard.getBalance(), item.amount());
+
+        fromCard.setBalance(fromCard.getBalance().subtract(item.amount()));
+        toCard.setBalance(toCard.getBalance().add(item.amount()));
+        return transferMapper.toEntity(item, cardRepository, user);
+    }
+
+    private Card activeBatchCard(Long cardId, Map<Long, Card> cards) {
+        Card card = cards.get(cardId);
+        if (card == null)
+            throw new CardNotFoundExcepion(cardId);
+        if (!card.isActive())
+            throw new CardNotActiveException(cardMapper.mapCardNumFromEntity(card));
+        return card;
+    }
+
     public Page<TransferSummary> getTransferHistory(Pageable pageable, Long userId) {
         return transferRepository.findAllByInitiatedById(pageable, userId)
                 .map(transferMapper::toSummary);
     }
+
+    //Keyset-пагинация: каждая часть продолжает индекс (initiated_by_user_id, created_at desc, id desc)
+    //с позиции курсора, поэтому глубокая страница стоит столько же, сколько первая. Пустой курсор - начало истории
+    public TransferHistorySlice getTransferHistory(String cursor, int size, Long userId) {
+        if (size < 1 || size > TransferHistorySlice.MAX_SIZE)
+            throw new IllegalStateException("размер части должен быть от 1 до " + TransferHistorySlice.MAX_SIZE);
+
+        Pageable limit = PageRequest.ofSize(size);
+        Slice<Transfer> slice;
+        if (cursor == null || cursor.isBlank()) {
+            slice = transferRepository.findHistoryFirst(userId, limit);
+        } else {
+            HistoryCursor position = HistoryCursor.decode(cursor);
+            slice = transferRepository.findHistoryAfter(userId, position.createdAt(), position.id(), limit);
+        }
+
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            Transfer last = slice.getContent().getLast();
+            nextCursor = new HistoryCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new TransferHistorySlice(slice.map(transferMapper::toSummary).getContent(), nextCursor, slice.hasNext());
+    }
 }
@@ -0,0 +1,114 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.exception.CardNotActiveException;
+import com.example.bankcards.exception.CardNotFoundExcepion;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.TransferRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Пул воркеров асинхронного режима. Каждый воркер забирает пачку PENDING-переводов
+//(claimPending переводит их в PROCESSING и фиксирует processedAt), затем проводит каждый
+//в своей транзакции. Пока очередь пуста, воркер спит pollInterval
+@Slf4j
+@Component
+public class TransferWorker {
+
+    private static final int FAILURE_REASON_MAX_LENGTH = 255;
+
+    @Autowired
+    TransferService transferService;
+
+    @Autowired
+    TransferRepository transferRepository;
+
+    @Autowired
+    TransferProperties properties;
+
+    private ExecutorService workers;
+
+    @PostConstruct
+    void start() {
+        TransferProperties.Async async = properties.getAsync();
+        if (!async.isEnabled()) return;
+
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(async.getWorkers(),
+                task -> new Thread(task, "transfer-worker-" + counter.incrementAndGet()));
+        for (int i = 0; i < async.getWorkers(); i++) {
+            workers.submit(this::run);
+        }
+        log.info("Запущено {} воркеров асинхронных переводов", async.getWorkers());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (workers == null) return;
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (pollOnce() == 0)
+                    Thread.sleep(properties.getAsync().getPollInterval().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Ошибка воркера асинхронных переводов", e);
+                try {
+                    Thread.sleep(properties.getAsync().getPollInterval().toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    int pollOnce() {
+        TransferProperties.Async async = properties.getAsync();
+        List<Long> claimed = transferRepository.claimPending(
+                LocalDateTime.now().minus(async.getStaleAfter()), async.getClaimSize());
+        for (Long transferId : claimed) {
+            try {
+                process(transferId);
+            } catch (RuntimeException e) {
+                //Сбой базы, таймаут блокировки и т.п. - не отказ: перевод остается в PROCESSING
+                //и будет забран повторно через stale-after, остальные переводы пачки обрабатываются
+                log.warn("Перевод {} не обработан, будет забран повторно", transferId, e);
+            }
+        }
+        return claimed.size();
+    }
+
+    //FAILED ставится только на бизнес-отказ. Гонка с параллельным изменением баланса возвращает
+    //перевод в очередь, прочие ошибки пробрасываются и оставляют его до повторного захвата
+    void process(Long transferId) {
+        try {
+            transferService.processPendingTransfer(transferId);
+        } catch (CardNotFoundExcepion | CardNotActiveException | InsufficientFundsException e) {
+            log.debug("Перевод {} отклонен: {}", transferId, e.getMessage());
+            transferService.failPendingTransfer(transferId, truncate(e.getMessage()));
+        } catch (IllegalStateException e) {
+            log.debug("Перевод {} возвращен в очередь: {}", transferId, e.getMessage());
+            transferRepository.releaseClaim(transferId);
+        }
+    }
+
+    private String truncate(String reason) {
+        if (reason == null || reason.length() <= FAILURE_REASON_MAX_LENGTH) return reason;
+        return reason.substring(0, FAILURE_REASON_MAX_LENGTH);
+    }
+}
@@ -10,13 +10,13 @@ import com.example.bankcards.exception.CardNotActiveException;
 import com.example.bankcards.exception.CardNotFoundExcepion;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.util.CardSpecifications;
+import com.example.bankcards.util.OptimisticRetryExecutor;
 import com.example.bankcards.util.mappers.CardMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import static com.example.bankcards.entity.Card.*;
@@ -29,6 +29,9 @@ public class UserCardService {
     @Autowired
     CardMapper cardMapper;
 
+    @Autowired
+    OptimisticRetryExecutor retryExecutor;
+
 
 
 
@@ -38,12 +41,14 @@ public class UserCardService {
                 .orElseThrow(() -> new CardNotFoundExcepion("карты с таким id не существует"));
         return cardMapper.toUserDto(card);
     }
-    @Transactional
     public void requestBlock(Long cardId) {
-        var card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new CardNotFoundExcepion(cardId));
-        if (card.getStatus() != CardStatus.ACTIVE) throw new CardNotActiveException();
-        cardRepository.updateStatusById(cardId, CardStatus.BLOCKED);
+        retryExecutor.execute("request-block", cardId, () -> {
+            var card = cardRepository.findById(cardId)
+                    .orElseThrow(() -> new CardNotFoundExcepion(cardId));
+            if (!card.isActive()) throw new CardNotActiveException();
+            card.setStatus(CardStatus.BLOCKED);
+            cardRepository.saveAndFlush(card);
+        });
     }
 
     public Page<CardDataUserResponse> getCards(Long id,
@@ -53,7 +58,7 @@ public class UserCardService {
 
         Specification<Card> spec = buildSpecification(id, filter, null);
 
-        return cardRepository.findAll(spec,pageable)
+        return cardRepository.findRows(spec, pageable)
                 .map(cardMapper::toUserDto);
 
     }
@@ -65,7 +70,7 @@ public class UserCardService {
 
         Specification<Card> spec = buildSpecification(id, convertToFilter(searchRequest), searchRequest.searchNumber());
 
-        return cardRepository.findAll(spec, pageable)
+        return cardRepository.findRows(spec, pageable)
                 .map(cardMapper::toUserDto);
     }
 
@@ -0,0 +1,4 @@
+package com.example.bankcards.service;
+
+//Публикуется при изменении или удалении пользователя; слушатели получают его после коммита
+public record UserChangedEvent(Long userId) {}
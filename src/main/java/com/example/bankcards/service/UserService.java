@@ -10,6 +10,7 @@ import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.mappers.UserMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -34,12 +35,18 @@ public class UserService {
     @Autowired
     RoleRepository roleRepository;
 
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
     public UserResponse findUserById(Long id) {
-        var user = userRepository.findById(id)
+        var user = userRepository.findWithRolesById(id)
                 .orElseThrow(() -> new UserNotFoundException("no user with id " + id));
         return mapper.toDto(user);
     }
 
+    //Роли пользователей страницы догружаются одним запросом (@BatchSize) внутри этой транзакции.
+    //Граф с коллекцией здесь не подходит: с ним Hibernate применил бы LIMIT/OFFSET в памяти
+    @Transactional(readOnly = true)
     public Page<UserResponse> findAllUsers(Pageable pageable) {
         return userRepository.findAll(pageable).map(mapper::toDto);
     }
@@ -48,6 +55,7 @@ public class UserService {
     public void deleteUser(Long id) {
         if (!userRepository.existsById(id)) throw new UserNotFoundException("no user with id " + id);
         userRepository.deleteById(id);
+        eventPublisher.publishEvent(new UserChangedEvent(id));
     }
 
     @Transactional
@@ -66,6 +74,8 @@ public class UserService {
         toUpdateUser.setName(dto.name());
         toUpdateUser.setPassword(encoder.encode(dto.password()));
         toUpdateUser.setRoles(mapper.mapRoles(dto.roles(),roleRepository));
+        //Кэш UserDetails сбрасывается после коммита: до него другие транзакции видят старые данные
+        eventPublisher.publishEvent(new UserChangedEvent(id));
         return mapper.toDto(userRepository.save(toUpdateUser));
     }
 }
@@ -14,25 +14,45 @@ import java.util.List;
 import static com.example.bankcards.entity.Card.*;
 
 public class CardSpecifications {
+
+    private static final int LAST_DIGITS_LENGTH = 4;
+    private static final int BIN_LENGTH = 6;
+
     public static Specification<Card> byUserId(Long userId) {
         return (root, query, cb) ->
                 cb.equal(root.get("owner").get("id"), userId);
     }
 
 
+    //Окончание номера ищется по card_last4 из индекса (user_id, card_last4). Если цифр больше четырех,
+    //card_num дополнительно проверяется LIKE, но уже только по строкам, найденным через индекс
     public static Specification<Card> byCardNumberEndsWith(String lastDigits) {
         return (root, query, cb) -> {
             if (!StringUtils.hasText(lastDigits)) return null;
 
-            return cb.like(root.get("cardNum"), "%" + lastDigits);
+            if (lastDigits.length() < LAST_DIGITS_LENGTH)
+                return cb.like(root.get("cardLast4"), "%" + lastDigits);
+
+            Predicate last4 = cb.equal(root.get("cardLast4"), lastDigits.substring(lastDigits.length() - LAST_DIGITS_LENGTH));
+            return lastDigits.length() == LAST_DIGITS_LENGTH
+                    ? last4
+                    : cb.and(last4, cb.like(root.get("cardNum"), "%" + lastDigits));
         };
     }
 
+    //Начало номера ищется по card_bin из индекса (user_id, card_bin varchar_pattern_ops):
+    //префикс короче BIN - диапазоном по индексу, длиннее - равенством BIN и LIKE по найденным строкам
     public static Specification<Card> byCardNumberStartsWith(String firstDigits) {
         return (root, query, cb) -> {
             if (!StringUtils.hasText(firstDigits)) return null;
 
-            return cb.like(root.get("cardNum"), firstDigits + "%");
+            if (firstDigits.length() < BIN_LENGTH)
+                return cb.like(root.get("cardBin"), firstDigits + "%");
+
+            Predicate bin = cb.equal(root.get("cardBin"), firstDigits.substring(0, BIN_LENGTH));
+            return firstDigits.length() == BIN_LENGTH
+                    ? bin
+                    : cb.and(bin, cb.like(root.get("cardNum"), firstDigits + "%"));
         };
     }
 
@@ -42,16 +62,17 @@ public class CardSpecifications {
     }
 
 
+    //Диапазон по active_till, для карт пользователя обслуживается индексом (user_id, active_till)
     public static Specification<Card> expiryDateBetween(LocalDate from, LocalDate to) {
         return (root, query, cb) -> {
             if (from == null && to == null) return null;
 
             List<Predicate> predicates = new ArrayList<>();
             if (from != null) {
-                predicates.add(cb.greaterThanOrEqualTo(root.get("expiryDate"), from));
+                predicates.add(cb.greaterThanOrEqualTo(root.get("activeTill"), from));
             }
             if (to != null) {
-                predicates.add(cb.lessThanOrEqualTo(root.get("expiryDate"), to));
+                predicates.add(cb.lessThanOrEqualTo(root.get("activeTill"), to));
             }
             return cb.and(predicates.toArray(new Predicate[0]));
         };
@@ -0,0 +1,90 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.config.RetryProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+//Выполняет операцию в отдельной транзакции на каждую попытку и повторяет ее при конфликте версий.
+//Пауза между попытками - случайная в пределах растущего окна (full jitter), чтобы конкуренты не сталкивались снова
+@Slf4j
+@Component
+public class OptimisticRetryExecutor {
+
+    public static final String RETRIES_METRIC = "card.optimistic.retries";
+    public static final String GIVE_UPS_METRIC = "card.optimistic.give-ups";
+
+    @Autowired
+    TransactionOperations transactionOperations;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    RetryProperties properties;
+
+    public void execute(String operation, Long cardId, Runnable action) {
+        execute(operation, cardId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T execute(String operation, Long cardId, Supplier<T> action) {
+        int maxAttempts = Math.max(1, properties.getMaxAttempts());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionOperations.execute(status -> action.get());
+            } catch (RuntimeException e) {
+                if (!isVersionConflict(e)) throw e;
+
+                //Счетчики только с тегом операции: тег с id карты заводил бы новые метрики на каждую карту.
+                //Конкретная карта видна в логе
+                String card = conflictingCard(e, cardId);
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter(GIVE_UPS_METRIC, "operation", operation).increment();
+                    log.warn("{}: конфликт версий карты {} не разрешился за {} попыток", operation, card, attempt);
+                    throw e;
+                }
+                meterRegistry.counter(RETRIES_METRIC, "operation", operation).increment();
+                log.debug("{}: конфликт версий карты {}, попытка {} из {}", operation, card, attempt, maxAttempts);
+                pause(attempt, e);
+            }
+        }
+    }
+
+    private boolean isVersionConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockingFailureException || cause instanceof OptimisticLockException)
+                return true;
+        }
+        return false;
+    }
+
+    //Hibernate сообщает id строки, на которой не сошлась версия - это точнее, чем карта, с которой начиналась операция
+    private String conflictingCard(RuntimeException e, Long cardId) {
+        if (e instanceof ObjectOptimisticLockingFailureException conflict && conflict.getIdentifier() != null)
+            return conflict.getIdentifier().toString();
+        return String.valueOf(cardId);
+    }
+
+    private void pause(int attempt, RuntimeException conflict) {
+        long initial = properties.getInitialBackoff().toMillis();
+        long ceiling = Math.min(properties.getMaxBackoff().toMillis(), initial << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) return;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+}
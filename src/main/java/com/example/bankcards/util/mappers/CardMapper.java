@@ -8,6 +8,7 @@ import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.projection.CardRow;
 import jdk.jfr.Name;
 import org.mapstruct.Context;
 import org.mapstruct.Mapper;
@@ -46,6 +47,15 @@ public interface CardMapper {
     @Mapping(target = "balance", source = "balance")
     CardDataUserResponse toUserDto(Card entity);
 
+    default CardDataUserResponse toUserDto(CardRow row) {
+        return new CardDataUserResponse(mapCardNum(row.cardNum()), row.activeTill(), row.status(), row.balance());
+    }
+
+    default CardDataAdminResponse toAdminDto(CardRow row) {
+        return new CardDataAdminResponse(row.id(), mapCardNum(row.cardNum()), row.activeTill(),
+                String.format("id = %d, %s", row.ownerId(), row.ownerName()), row.status());
+    }
+
 
     @Named("mapToMaskedNum")
     default String mapCardNum(String cardNum) {
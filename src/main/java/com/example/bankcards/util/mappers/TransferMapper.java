@@ -2,11 +2,11 @@ package com.example.bankcards.util.mappers;
 
 import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
 import com.example.bankcards.dto.userFuncs.transfer.TransferResponse;
+import com.example.bankcards.dto.userFuncs.transfer.TransferStatusResponse;
 import com.example.bankcards.dto.userFuncs.transfer.TransferSummary;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transfer;
 import com.example.bankcards.entity.User;
-import com.example.bankcards.exception.CardNotFoundExcepion;
 import com.example.bankcards.repository.CardRepository;
 import org.mapstruct.Context;
 import org.mapstruct.Mapper;
@@ -30,15 +30,33 @@ public interface TransferMapper {
     @Mapping(target = "fromCard", source = "request.fromCardId", qualifiedByName = "mapToCard")
     @Mapping(target = "toCard", source = "request.toCardId", qualifiedByName = "mapToCard")
     @Mapping(target = "initiatedBy", source = "initiatedBy")
+    @Mapping(target = "failureReason", ignore = true)
 
     Transfer toEntity(TransferRequest request,
                       @Context CardRepository cardRepository,
                       User initiatedBy);
 
+    //Перевод для асинхронной обработки: балансы еще не изменены, processedAt и completedAt проставит воркер
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "createdAt", expression = "java(java.time.LocalDateTime.now())")
+    @Mapping(target = "updatedAt", expression = "java(java.time.LocalDateTime.now())")
+    @Mapping(target = "processedAt", ignore = true)
+    @Mapping(target = "completedAt", ignore = true)
+    @Mapping(target = "cancelledAt", ignore = true)
+    @Mapping(target = "failureReason", ignore = true)
+    @Mapping(target = "status", constant = "PENDING")
+    @Mapping(target = "fromCard", source = "request.fromCardId", qualifiedByName = "mapToCard")
+    @Mapping(target = "toCard", source = "request.toCardId", qualifiedByName = "mapToCard")
+    @Mapping(target = "initiatedBy", source = "initiatedBy")
+    Transfer toPendingEntity(TransferRequest request,
+                             @Context CardRepository cardRepository,
+                             User initiatedBy);
+
+    //К этому моменту карты уже проверены сервисом: ссылка не обращается к базе,
+    //а для карт из текущего контекста персистентности возвращает уже загруженный экземпляр
     @Named("mapToCard")
     default Card mapToCard(Long cardId, @Context CardRepository cardRepository) {
-        return cardRepository.findById(cardId)
-                .orElseThrow(() -> new CardNotFoundExcepion("Card with ID " + cardId + " not found"));
+        return cardRepository.getReferenceById(cardId);
     }
 
 
@@ -47,10 +65,23 @@ public interface TransferMapper {
     @Mapping(target = "status", source = "status")
     TransferResponse toResponse(Transfer transfer);
 
+    @Mapping(target = "id", source = "transfer.id")
+    @Mapping(target = "fromCardMasked", source = "fromCardNum", qualifiedByName = "mapToMaskedNum")
+    @Mapping(target = "toCardMasked", source = "toCardNum", qualifiedByName = "mapToMaskedNum")
+    @Mapping(target = "amount", source = "transfer.amount")
+    @Mapping(target = "status", source = "transfer.status")
+    @Mapping(target = "description", source = "transfer.description")
+    @Mapping(target = "createdAt", source = "transfer.createdAt")
+    @Mapping(target = "processedAt", source = "transfer.processedAt")
+    TransferResponse toResponse(Transfer transfer, String fromCardNum, String toCardNum);
+
     @Mapping(target = "fromCardMasked", source = "fromCard", qualifiedByName = "mapToMaskedNumFromEntity")
     @Mapping(target = "toCardMasked", source = "toCard", qualifiedByName = "mapToMaskedNumFromEntity")
     @Mapping(target = "status", source = "status")
     TransferSummary toSummary(Transfer transfer);
 
+    @Mapping(target = "status", source = "status")
+    TransferStatusResponse toStatusResponse(Transfer transfer);
+
 
 }
\ No newline at end of file
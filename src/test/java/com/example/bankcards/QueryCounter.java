@@ -0,0 +1,30 @@
+package com.example.bankcards;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Проверка числа SQL-операторов, выполненных Hibernate за одно действие: ловит N+1 в тестах.
+//Статистика общая на всю фабрику, поэтому фоновые задачи, работающие с базой, в таком тесте должны быть выключены.
+//Требует spring.jpa.properties.hibernate.generate_statistics=true
+public class QueryCounter {
+
+    private final Statistics statistics;
+
+    public QueryCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public <T> T assertAtMost(long budget, Supplier<T> action) {
+        statistics.clear();
+        T result = action.get();
+        assertThat(statistics.getPrepareStatementCount())
+                .as("число SQL-операторов")
+                .isLessThanOrEqualTo(budget);
+        return result;
+    }
+}
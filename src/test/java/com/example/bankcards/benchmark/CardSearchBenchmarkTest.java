@@ -0,0 +1,121 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.TestcontainersConfiguration;
+import com.example.bankcards.dto.userFuncs.CardSearchRequest;
+import com.example.bankcards.service.UserCardService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Задержка поиска карты по части номера при росте таблицы cards.
+//Таблица наполняется generate_series до нескольких миллионов строк, после каждого шага
+//замеряется поиск по последним 4 цифрам и по BIN для одного пользователя.
+//С индексами (user_id, card_last4) и (user_id, card_bin) время не должно зависеть от размера таблицы.
+//Запуск: mvn test -Dtest=CardSearchBenchmarkTest -Dbenchmark=true
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CardSearchBenchmarkTest {
+
+    private static final long[] TABLE_SIZES = {250_000, 1_000_000, 3_000_000};
+    private static final int CARDS_PER_USER = 20;
+    private static final int WARMUP = 200;
+    private static final int MEASURED = 1000;
+    private static final long FIRST_CARD_NUM = 4_000_000_000_000_000L;
+
+    @Autowired
+    private UserCardService userCardService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Поиск карты по части номера не замедляется с ростом таблицы")
+    void searchLatencyStaysFlat() {
+        List<Result> results = new ArrayList<>();
+        long seeded = 0;
+        for (long size : TABLE_SIZES) {
+            seed(seeded, size);
+            seeded = size;
+            jdbcTemplate.execute("ANALYZE users");
+            jdbcTemplate.execute("ANALYZE cards");
+            results.add(measure(size));
+        }
+
+        System.out.printf("%n%-12s %16s %16s%n", "cards", "last4 us/op", "bin us/op");
+        for (Result result : results) {
+            System.out.printf("%-12d %16.1f %16.1f%n", result.tableSize(), result.last4Micros(), result.binMicros());
+        }
+
+        String plan = String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT * FROM cards WHERE user_id = ? AND (card_last4 = '0007' OR card_bin LIKE '0007%')",
+                String.class, targetUserId()));
+        assertThat(plan).doesNotContain("Seq Scan on cards");
+
+        //Таблица выросла в 12 раз; допуск покрывает шум измерения, а не рост с размером
+        Result smallest = results.getFirst();
+        Result largest = results.getLast();
+        assertThat(largest.last4Micros()).isLessThan(smallest.last4Micros() * 3);
+        assertThat(largest.binMicros()).isLessThan(smallest.binMicros() * 3);
+    }
+
+    //Карта g принадлежит пользователю search-bench-(g / CARDS_PER_USER), номер - FIRST_CARD_NUM + g
+    private void seed(long from, long to) {
+        jdbcTemplate.update("""
+                INSERT INTO users (name, password)
+                SELECT 'search-bench-' || u, 'hash'
+                FROM generate_series(?::bigint, ?::bigint) u
+                """, (from + CARDS_PER_USER - 1) / CARDS_PER_USER, (to - 1) / CARDS_PER_USER);
+        jdbcTemplate.update("""
+                INSERT INTO cards (card_num, active_till, status, balance, user_id)
+                SELECT (?::bigint + g)::text, CURRENT_DATE + 365, 'ACTIVE', 0, u.id
+                FROM generate_series(?::bigint, ?::bigint) g
+                JOIN users u ON u.name = 'search-bench-' || (g / ?)
+                """, FIRST_CARD_NUM, from, to - 1, CARDS_PER_USER);
+    }
+
+    private Result measure(long tableSize) {
+        Long userId = targetUserId();
+        CardSearchRequest byLast4 = CardSearchRequest.builder().searchNumber("0007").build();
+        CardSearchRequest byBin = CardSearchRequest.builder().searchNumber("400000").build();
+
+        assertThat(search(userId, byLast4)).isEqualTo(1);
+        assertThat(search(userId, byBin)).isEqualTo(CARDS_PER_USER);
+
+        return new Result(tableSize, averageMicros(userId, byLast4), averageMicros(userId, byBin));
+    }
+
+    private double averageMicros(Long userId, CardSearchRequest request) {
+        for (int i = 0; i < WARMUP; i++) {
+            search(userId, request);
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < MEASURED; i++) {
+            search(userId, request);
+        }
+        return (System.nanoTime() - started) / 1_000.0 / MEASURED;
+    }
+
+    private long search(Long userId, CardSearchRequest request) {
+        return userCardService.searchCardsWithNumber(userId, request, PageRequest.of(0, CARDS_PER_USER))
+                .getTotalElements();
+    }
+
+    private Long targetUserId() {
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE name = 'search-bench-0'", Long.class);
+    }
+
+    private record Result(long tableSize, double last4Micros, double binMicros) {}
+}
@@ -0,0 +1,95 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.service.JWTService;
+import com.example.bankcards.security.service.JwtClaims;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Стоимость проверки JWT на один запрос в JwtAuthenticationFilter.
+//legacyThreeParses повторяет прежний путь: extractUsername, затем isTokenValid с extractUsername
+//и extractExpiration - три проверки подписи, и каждый раз заново декодируется секрет и строится парсер.
+//parseOnce - текущий путь: один parse с заранее построенными ключом и парсером.
+//Запуск: mvn test -Dtest=JwtValidationBenchmark -Dbenchmark=true
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtValidationBenchmark {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(
+            "benchmark-secret-key-for-jwt-validation-only".getBytes());
+
+    private JWTService jwtService;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JWTService();
+        ReflectionTestUtils.setField(jwtService, "SECRET_BASE64_ENCODED", SECRET);
+        ReflectionTestUtils.setField(jwtService, "tokenLifetimeMillis", 3600000);
+        ReflectionTestUtils.setField(jwtService, "iss", "benchmark");
+        jwtService.init();
+
+        user = User.builder()
+                .id(1L)
+                .name("benchmark-user")
+                .password("password")
+                .roles(new ArrayList<>())
+                .build();
+        token = jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean legacyThreeParses() {
+        String username = legacyClaims(token).getSubject();
+        String subject = legacyClaims(token).getSubject();
+        Date expiration = legacyClaims(token).getExpiration();
+        return username.equals(user.getUsername()) && subject.equals(user.getUsername())
+                && new Date().before(expiration);
+    }
+
+    @Benchmark
+    public boolean parseOnce() {
+        JwtClaims claims = jwtService.parse(token);
+        return jwtService.isTokenValid(claims, user);
+    }
+
+    private static Claims legacyClaims(String token) {
+        var key = Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET));
+        return Jwts.parser().clockSkewSeconds(1).verifyWith(key).build()
+                .parseSignedClaims(token).getPayload();
+    }
+
+    //forks(0): форк JMH под surefire не видит тестовый classpath
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("Сравнение стоимости проверки JWT до и после однократного разбора")
+    void run() throws RunnerException {
+        var results = new Runner(new OptionsBuilder()
+                .include(JwtValidationBenchmark.class.getSimpleName())
+                .forks(0)
+                .build())
+                .run();
+
+        assertThat(results).hasSize(2);
+    }
+}
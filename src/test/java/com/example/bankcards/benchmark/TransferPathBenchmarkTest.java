@@ -0,0 +1,164 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.TestcontainersConfiguration;
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.config.TransferProperties.ConcurrencyMode;
+import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.TransferService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static com.example.bankcards.entity.Card.CardStatus.ACTIVE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Запуск: mvn test -Dtest=TransferPathBenchmarkTest -Dbenchmark=true
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(TestcontainersConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TransferPathBenchmarkTest {
+
+    private static final int WARMUP = 300;
+    private static final int SEQUENTIAL = 3000;
+    private static final int THREADS = 16;
+    private static final int PER_THREAD = 200;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransferProperties properties;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final ConcurrencyMode defaultMode = ConcurrencyMode.CONDITIONAL_UPDATE;
+
+    @AfterEach
+    void restoreMode() {
+        properties.setConcurrencyMode(defaultMode);
+    }
+
+    @Test
+    @DisplayName("Сравнение read-modify-write под блокировкой и условного UPDATE")
+    void compareBalanceUpdatePaths() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        List<Result> results = new ArrayList<>();
+        for (ConcurrencyMode mode : List.of(ConcurrencyMode.PESSIMISTIC, ConcurrencyMode.CONDITIONAL_UPDATE)) {
+            results.add(measure(mode, statistics));
+        }
+
+        System.out.printf("%n%-20s %14s %16s %18s%n", "mode", "statements/op", "sequential us/op", "hot card ops/sec");
+        for (Result result : results) {
+            System.out.printf("%-20s %14.2f %16.1f %18.0f%n",
+                    result.mode(), result.statementsPerTransfer(), result.microsPerTransfer(), result.hotCardThroughput());
+        }
+
+        assertThat(results.get(1).statementsPerTransfer()).isLessThan(results.get(0).statementsPerTransfer());
+    }
+
+    private Result measure(ConcurrencyMode mode, Statistics statistics) throws Exception {
+        properties.setConcurrencyMode(mode);
+        User owner = createUser();
+        Card first = createCard(owner);
+        Card second = createCard(owner);
+
+        runSequential(owner, first, second, WARMUP);
+
+        statistics.clear();
+        long started = System.nanoTime();
+        runSequential(owner, first, second, SEQUENTIAL);
+        long elapsed = System.nanoTime() - started;
+        double statementsPerTransfer = (double) statistics.getPrepareStatementCount() / SEQUENTIAL;
+
+        double throughput = runHotCard(owner, first, second);
+
+        return new Result(mode, statementsPerTransfer, elapsed / 1_000.0 / SEQUENTIAL, throughput);
+    }
+
+    private void runSequential(User owner, Card first, Card second, int count) {
+        for (int i = 0; i < count; i++) {
+            transferService.createTransfer(request(i % 2 == 0, first, second), owner.getId());
+        }
+    }
+
+    private double runHotCard(User owner, Card first, Card second) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        transferService.createTransfer(request((thread + i) % 2 == 0, first, second), owner.getId());
+                    }
+                    return null;
+                }));
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+            double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+            return THREADS * PER_THREAD / seconds;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private TransferRequest request(boolean forward, Card first, Card second) {
+        return forward
+                ? new TransferRequest(first.getId(), second.getId(), AMOUNT, "benchmark")
+                : new TransferRequest(second.getId(), first.getId(), AMOUNT, "benchmark");
+    }
+
+    private User createUser() {
+        return userRepository.save(new User(
+                new ArrayList<>(),
+                new ArrayList<>(),
+                "bench-" + UUID.randomUUID().toString().substring(0, 8),
+                "hash"));
+    }
+
+    private Card createCard(User owner) {
+        String cardNum = String.valueOf(ThreadLocalRandom.current()
+                .nextLong(1_000_000_000_000_000L, 10_000_000_000_000_000L));
+        return cardRepository.save(new Card(cardNum, owner, LocalDate.now().plusYears(1), ACTIVE, new BigDecimal("1000000.00")));
+    }
+
+    private record Result(ConcurrencyMode mode,
+                          double statementsPerTransfer,
+                          double microsPerTransfer,
+                          double hotCardThroughput) {}
+}
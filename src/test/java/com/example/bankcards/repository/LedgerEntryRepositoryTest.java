@@ -0,0 +1,73 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.TestcontainersConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Сверка и пересчет балансов по журналу на настоящей базе: оба запроса должны одинаково видеть
+//карты без проводок. Диапазон сужен до одной карты теста, чтобы не трогать данные других тестов
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class LedgerEntryRepositoryTest {
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private TransactionOperations transactionOperations;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long cardId;
+
+    //Карта вставляется мимо сервиса, поэтому OPENING-проводки у нее нет
+    @BeforeEach
+    void setUp() {
+        String name = "ledger-" + UUID.randomUUID().toString().substring(0, 8);
+        jdbcTemplate.update("INSERT INTO users (name, password) VALUES (?, 'hash')", name);
+        String cardNum = String.valueOf(ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 9_000_000_000_000_000L));
+        cardId = jdbcTemplate.queryForObject("""
+                INSERT INTO cards (card_num, active_till, status, balance, user_id)
+                SELECT ?, CURRENT_DATE + 365, 'ACTIVE', 50, id FROM users WHERE name = ?
+                RETURNING id""", Long.class, cardNum, name);
+    }
+
+    @Test
+    @DisplayName("Когда у карты с ненулевым балансом нет проводок, тогда сверка находит расхождение, а пересчет его исправляет")
+    void rebuildRange_cardWithoutEntries_repairsWhatVerifyReports() {
+
+        assertThat(ledgerEntryRepository.findMismatches(cardId, cardId))
+                .singleElement()
+                .satisfies(mismatch -> {
+                    assertThat(mismatch.getBalance()).isEqualByComparingTo("50");
+                    assertThat(mismatch.getLedgerBalance()).isEqualByComparingTo("0");
+                });
+
+
+        Integer rebuilt = transactionOperations.execute(status -> {
+            ledgerEntryRepository.lockCardRange(cardId, cardId);
+            return ledgerEntryRepository.rebuildRange(cardId, cardId);
+        });
+
+
+        assertThat(rebuilt).isEqualTo(1);
+        assertThat(ledgerEntryRepository.findMismatches(cardId, cardId)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT balance FROM cards WHERE id = ?", BigDecimal.class, cardId))
+                .isEqualByComparingTo("0");
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.QueryCounter;
+import com.example.bankcards.TestcontainersConfiguration;
+import com.example.bankcards.dto.adminFuncs.CardDataAdminResponse;
+import com.example.bankcards.dto.adminFuncs.UserResponse;
+import com.example.bankcards.dto.userFuncs.CardDataUserResponse;
+import com.example.bankcards.dto.userFuncs.CardFilter;
+import com.example.bankcards.dto.userFuncs.CardSearchRequest;
+import com.example.bankcards.dto.userFuncs.transfer.TransferHistorySlice;
+import com.example.bankcards.dto.userFuncs.transfer.TransferSummary;
+import com.example.bankcards.security.service.UsrDetailsService;
+import com.example.bankcards.service.AdminCardService;
+import com.example.bankcards.service.TransferService;
+import com.example.bankcards.service.UserCardService;
+import com.example.bankcards.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Бюджет SQL-операторов для методов репозиториев, через которые сервисы отдают данные.
+//Данные сеются так, чтобы N+1 проявился: у пользователя много карт и переводов, у каждого пользователя две роли.
+//Сервисы вызываются без открытой транзакции, поэтому незагруженная ленивая связь здесь тоже падает
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "outbox.relay.enabled=false",
+        "card.expiry.enabled=false",
+        "security.token-revocation.refresh-interval=1h"
+})
+@Import(TestcontainersConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class QueryBudgetTest {
+
+    private static final int USERS = 30;
+    private static final int CARDS = 15;
+    private static final int TRANSFERS = 12;
+
+    @Autowired
+    private UserCardService userCardService;
+
+    @Autowired
+    private AdminCardService adminCardService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private UsrDetailsService usrDetailsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private QueryCounter queries;
+
+    private String prefix;
+    private Long userId;
+    private Long cardId;
+
+    @BeforeEach
+    void setUp() {
+        queries = new QueryCounter(entityManagerFactory);
+        prefix = "budget-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+        seedUsersAndCards();
+        userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE name = ?", Long.class, prefix + 0);
+        cardId = jdbcTemplate.queryForObject("SELECT min(id) FROM cards WHERE user_id = ?", Long.class, userId);
+        seedTransfers();
+    }
+
+    @Test
+    @DisplayName("Когда пользователь листает свои карты, тогда выполняется не больше 2 запросов")
+    void getCards_userCards_withinBudget() {
+
+        Page<CardDataUserResponse> page = queries.assertAtMost(2, () ->
+                userCardService.getCards(userId, CardFilter.builder().build(), PageRequest.of(0, 10)));
+
+
+        assertThat(page.getContent()).hasSize(10);
+        assertThat(page.getTotalElements()).isEqualTo(CARDS);
+    }
+
+    @Test
+    @DisplayName("Когда пользователь ищет карту по последним цифрам, тогда выполняется не больше 2 запросов")
+    void searchCardsWithNumber_last4_withinBudget() {
+        String last4 = jdbcTemplate.queryForObject("SELECT card_last4 FROM cards WHERE id = ?", String.class, cardId);
+
+
+        Page<CardDataUserResponse> page = queries.assertAtMost(2, () ->
+                userCardService.searchCardsWithNumber(userId,
+                        CardSearchRequest.builder().searchNumber(last4).build(), PageRequest.of(0, 10)));
+
+
+        assertThat(page.getContent()).isNotEmpty();
+    }
+
+    @Test
+    @DisplayName("Когда администратор листает карты, тогда владельцы не догружаются отдельными запросами")
+    void getCards_adminListing_withinBudget() {
+
+        Page<CardDataAdminResponse> page = queries.assertAtMost(2, () ->
+                adminCardService.getCards(PageRequest.of(0, 100)));
+
+
+        assertThat(page.getContent()).isNotEmpty();
+        assertThat(page.getContent()).allSatisfy(card -> assertThat(card.owner()).isNotBlank());
+    }
+
+    @Test
+    @DisplayName("Когда администратор открывает карту, тогда карта и владелец читаются одним запросом")
+    void getCardById_withOwner_singleQuery() {
+
+        CardDataAdminResponse card = queries.assertAtMost(1, () -> adminCardService.getCardById(cardId));
+
+
+        assertThat(card.owner()).isEqualTo("id = %d, %s".formatted(userId, prefix + 0));
+    }
+
+    @Test
+    @DisplayName("Когда пользователь запрашивает баланс карты, тогда выполняется один запрос без владельца")
+    void getBalance_singleQuery() {
+
+        CardDataUserResponse card = queries.assertAtMost(1, () -> userCardService.getBalance(cardId));
+
+
+        assertThat(card.maskedCardNum()).isNotBlank();
+    }
+
+    @Test
+    @DisplayName("Когда администратор листает пользователей, тогда роли всей страницы читаются одним запросом")
+    void findAllUsers_rolesBatched_withinBudget() {
+
+        PageRequest newestFirst = PageRequest.of(0, 100, Sort.by(Sort.Direction.DESC, "id"));
+
+
+        Page<UserResponse> page = queries.assertAtMost(3, () -> userService.findAllUsers(newestFirst));
+
+
+        List<UserResponse> seeded = page.getContent().stream()
+                .filter(user -> user.name().startsWith(prefix))
+                .toList();
+        assertThat(seeded).isNotEmpty();
+        assertThat(seeded).allSatisfy(user ->
+                assertThat(user.roles()).containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN"));
+    }
+
+    @Test
+    @DisplayName("Когда администратор открывает пользователя, тогда пользователь и роли читаются одним запросом")
+    void findUserById_withRoles_singleQuery() {
+
+        UserResponse user = queries.assertAtMost(1, () -> userService.findUserById(userId));
+
+
+        assertThat(user.roles()).containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+    }
+
+    @Test
+    @DisplayName("Когда пользователь аутентифицируется, тогда пользователь и роли читаются одним запросом")
+    void loadUserByUsername_withRoles_singleQuery() {
+
+        UserDetails user = queries.assertAtMost(1, () -> usrDetailsService.loadUserByUsername(prefix + 0));
+
+
+        assertThat(user.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+    }
+
+    @Test
+    @DisplayName("Когда пользователь читает историю по курсору, тогда переводы и карты читаются одним запросом")
+    void getTransferHistory_cursor_singleQuery() {
+
+        TransferHistorySlice slice = queries.assertAtMost(1, () ->
+                transferService.getTransferHistory(null, 10, userId));
+
+
+        assertThat(slice.content()).hasSize(10);
+        assertThat(slice.content()).allSatisfy(this::assertCardsMasked);
+    }
+
+    @Test
+    @DisplayName("Когда пользователь листает историю страницами, тогда выполняется не больше 2 запросов")
+    void getTransferHistory_page_withinBudget() {
+
+        Page<TransferSummary> page = queries.assertAtMost(2, () ->
+                transferService.getTransferHistory(PageRequest.of(0, 5), userId));
+
+
+        assertThat(page.getTotalElements()).isEqualTo(TRANSFERS);
+        assertThat(page.getContent()).allSatisfy(this::assertCardsMasked);
+    }
+
+    private void assertCardsMasked(TransferSummary summary) {
+        assertThat(summary.fromCardMasked()).isNotBlank();
+        assertThat(summary.toCardMasked()).isNotBlank();
+    }
+
+    //Пользователь prefix0 владеет всеми картами, у всех пользователей обе роли
+    private void seedUsersAndCards() {
+        jdbcTemplate.update("""
+                INSERT INTO users (name, password)
+                SELECT ? || u, 'hash' FROM generate_series(0, ?) u
+                """, prefix, USERS - 1);
+        jdbcTemplate.update("""
+                INSERT INTO users_roles (user_id, role_id)
+                SELECT u.id, r.id FROM users u CROSS JOIN roles r
+                WHERE u.name LIKE ? || '%'
+                """, prefix);
+        long firstCardNum = ThreadLocalRandom.current().nextLong(1_000_000_000_000_000L, 9_000_000_000_000_000L);
+        jdbcTemplate.update("""
+                INSERT INTO cards (card_num, active_till, status, balance, user_id)
+                SELECT (?::bigint + g)::text, CURRENT_DATE + 365, 'ACTIVE', 100, u.id
+                FROM generate_series(0, ?) g JOIN users u ON u.name = ? || 0
+                """, firstCardNum, CARDS - 1, prefix);
+    }
+
+    //Переводы с первой карты по очереди на остальные: в истории встречаются разные карты-получатели
+    private void seedTransfers() {
+        jdbcTemplate.update("""
+                INSERT INTO transfers (id, amount, from_card_id, to_card_id, status, initiated_by_user_id, created_at)
+                SELECT nextval('transfers_id_seq'), 1, ?, t.id, 'COMPLETED', ?, now() - g * interval '1 minute'
+                FROM generate_series(0, ?) g
+                CROSS JOIN LATERAL (
+                    SELECT id FROM cards WHERE user_id = ? AND id <> ?
+                    ORDER BY id OFFSET g % ? LIMIT 1) t
+                """, cardId, userId, TRANSFERS - 1, userId, cardId, CARDS - 1);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.bankcards.security.BoundedPasswordEncoder.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        if (encoder != null) encoder.close();
+    }
+
+    @Test
+    @DisplayName("Когда пул свободен, тогда хеширование выполняется делегатом и попадает в метрики")
+    void encodeAndMatches_freePool_delegatesAndRecordsMetrics() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 4, meterRegistry);
+
+
+        String hash = encoder.encode("password123");
+        boolean matches = encoder.matches("password123", hash);
+
+
+        assertThat(matches).isTrue();
+        assertThat(encoder.matches("wrong", hash)).isFalse();
+        assertThat(meterRegistry.get(DURATION_METRIC).tag("operation", "encode").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(DURATION_METRIC).tag("operation", "matches").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get(WAIT_METRIC).tag("operation", "matches").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Когда пул и очередь заняты, тогда запрос сразу отклоняется")
+    void encode_saturatedPool_rejectsImmediately() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash";
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return true;
+            }
+        };
+        encoder = new BoundedPasswordEncoder(blocking, 1, 1, meterRegistry);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+        started.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+        while (meterRegistry.get("password.hash.queue.size").gauge().value() < 1) Thread.onSpinWait();
+
+
+        assertThatThrownBy(() -> encoder.encode("third"))
+                .isInstanceOf(PasswordHashingBusyException.class);
+
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("hash");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("hash");
+        assertThat(meterRegistry.get(REJECTED_METRIC).counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.service.JWTService;
+import com.example.bankcards.security.service.JwtClaims;
+import com.example.bankcards.security.service.TokenRevocationService;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class JwtAuthenticationFilterTest {
+
+    @Mock
+    private JWTService jwtService;
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    @Mock
+    private TokenRevocationService revocationService;
+
+    @Mock
+    private FilterChain filterChain;
+
+    @InjectMocks
+    private JwtAuthenticationFilter filter;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletRequest requestWithToken() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer token");
+        return request;
+    }
+
+    private JwtClaims claims(Long userId) {
+        return new JwtClaims("testuser", "test-issuer", Instant.now(), Instant.now().plusSeconds(3600),
+                userId, List.of("ROLE_USER"), "3f0c9a5e-8d1b-4c4e-9a57-1f2e3d4c5b6a");
+    }
+
+    @Test
+    @DisplayName("Когда в токене есть id пользователя, тогда principal собирается без обращения к базе")
+    void doFilter_tokenWithUserId_buildsPrincipalFromClaims() throws Exception {
+        MockHttpServletRequest request = requestWithToken();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        when(jwtService.parse("token"))
+                .thenReturn(claims(100L));
+
+
+        filter.doFilterInternal(request, response, filterChain);
+
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication.getPrincipal())
+                .isEqualTo(new AuthenticatedUser(100L, "testuser", List.of("ROLE_USER")));
+        assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER");
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    @DisplayName("Когда токен выдан до появления id в claims, тогда пользователь читается из базы")
+    void doFilter_legacyToken_loadsUser() throws Exception {
+        MockHttpServletRequest request = requestWithToken();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        JwtClaims legacy = claims(null);
+        User user = User.builder()
+                .id(100L)
+                .name("testuser")
+                .roles(List.of(Role.builder().name(Role.RoleName.ROLE_USER).build()))
+                .build();
+
+        when(jwtService.parse("token"))
+                .thenReturn(legacy);
+        when(userDetailsService.loadUserByUsername("testuser"))
+                .thenReturn(user);
+        when(jwtService.isTokenValid(legacy, user))
+                .thenReturn(true);
+
+
+        filter.doFilterInternal(request, response, filterChain);
+
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal())
+                .isEqualTo(new AuthenticatedUser(100L, "testuser", List.of("ROLE_USER")));
+    }
+
+    @Test
+    @DisplayName("Когда токен отозван, тогда запрос проходит без аутентификации")
+    void doFilter_revokedToken_leavesContextEmpty() throws Exception {
+        MockHttpServletRequest request = requestWithToken();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        JwtClaims revoked = claims(100L);
+
+        when(jwtService.parse("token"))
+                .thenReturn(revoked);
+        when(revocationService.isRevoked(revoked))
+                .thenReturn(true);
+
+
+        filter.doFilterInternal(request, response, filterChain);
+
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    @DisplayName("Когда подпись токена неверна, тогда запрос проходит без аутентификации")
+    void doFilter_invalidToken_leavesContextEmpty() throws Exception {
+        MockHttpServletRequest request = requestWithToken();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        when(jwtService.parse("token"))
+                .thenThrow(new JwtException("signature does not match"));
+
+
+        filter.doFilterInternal(request, response, filterChain);
+
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verify(filterChain).doFilter(request, response);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.bankcards.security;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.example.bankcards.security.RateLimiter.Scope.IP;
+import static com.example.bankcards.security.RateLimiter.Scope.USER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class RateLimitFilterTest {
+
+    @Mock
+    private RateLimiter rateLimiter;
+
+    @Mock
+    private FilterChain filterChain;
+
+    private RateLimitProperties properties;
+
+    private SecurityErrorWriter errorWriter;
+
+    @BeforeEach
+    void setUp() {
+        errorWriter = new SecurityErrorWriter();
+        errorWriter.objectMapper = new ObjectMapper();
+
+        RateLimitProperties.Family transfers = new RateLimitProperties.Family();
+        transfers.setPatterns(List.of("/api/transfers", "/api/transfers/**"));
+        transfers.setPerIp(600);
+        transfers.setPerUser(120);
+        transfers.setWindow(Duration.ofMinutes(1));
+
+        properties = new RateLimitProperties();
+        properties.getFamilies().put("transfers", transfers);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletRequest request(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setRemoteAddr("10.0.0.1");
+        return request;
+    }
+
+    @Test
+    @DisplayName("Когда лимит по IP исчерпан, тогда запрос отклоняется с 429 и не доходит до цепочки")
+    void doFilter_ipLimitExhausted_returnsTooManyRequests() throws Exception {
+        MockHttpServletRequest request = request("/api/transfers");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        when(rateLimiter.tryAcquire("transfers", IP, "10.0.0.1", 600, 60_000))
+                .thenReturn(new RateLimiter.Decision(false, 12));
+
+
+        new RateLimitFilter(rateLimiter, properties, errorWriter, IP).doFilter(request, response, filterChain);
+
+
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("12");
+        assertThat(response.getContentAsString()).contains("Слишком много запросов");
+        verifyNoInteractions(filterChain);
+    }
+
+    @Test
+    @DisplayName("Когда пользователь аутентифицирован, тогда лимит считается по его id")
+    void doFilter_authenticatedUser_limitsByUserId() throws Exception {
+        MockHttpServletRequest request = request("/api/transfers/42");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AuthenticatedUser user = new AuthenticatedUser(7L, "testuser", List.of("ROLE_USER"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.authorities()));
+
+        when(rateLimiter.tryAcquire("transfers", USER, 7L, 120, 60_000))
+                .thenReturn(RateLimiter.Decision.ALLOWED);
+
+
+        new RateLimitFilter(rateLimiter, properties, errorWriter, USER).doFilter(request, response, filterChain);
+
+
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    @DisplayName("Когда маршрут не входит ни в одну группу, тогда лимит не применяется")
+    void doFilter_unlistedRoute_passesThrough() throws Exception {
+        MockHttpServletRequest request = request("/api/cards");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+
+        new RateLimitFilter(rateLimiter, properties, errorWriter, IP).doFilter(request, response, filterChain);
+
+
+        verify(filterChain).doFilter(request, response);
+        verifyNoInteractions(rateLimiter);
+    }
+}
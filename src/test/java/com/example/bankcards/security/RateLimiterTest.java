@@ -0,0 +1,89 @@
+package com.example.bankcards.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.example.bankcards.security.RateLimiter.Scope.IP;
+import static com.example.bankcards.security.RateLimiter.Scope.USER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class RateLimiterTest {
+
+    private static final long WINDOW = 60_000;
+    private static final long START = 1_700_000_040_000L - 1_700_000_040_000L % WINDOW;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private RateLimiter rateLimiter;
+
+    @Test
+    @DisplayName("Когда лимит окна исчерпан, тогда следующий запрос отклоняется с временем до повтора")
+    void tryAcquire_limitExhausted_rejects() {
+        IntStream.range(0, 5).forEach(i ->
+                assertThat(rateLimiter.tryAcquire("auth", IP, "10.0.0.1", 5, WINDOW, START + 1_000).allowed()).isTrue());
+
+
+        RateLimiter.Decision decision = rateLimiter.tryAcquire("auth", IP, "10.0.0.1", 5, WINDOW, START + 1_000);
+
+
+        assertThat(decision.allowed()).isFalse();
+        assertThat(decision.retryAfterSeconds()).isEqualTo(59);
+        assertThat(meterRegistry.get(RateLimiter.REJECTED_METRIC).tag("family", "auth").tag("scope", "IP")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Когда начинается новое окно, тогда запросы прошлого окна учитываются с убывающим весом")
+    void tryAcquire_nextWindow_weighsPreviousWindow() {
+        IntStream.range(0, 10).forEach(i -> rateLimiter.tryAcquire("transfers", USER, 1L, 10, WINDOW, START + 59_000));
+
+
+        //Четверть нового окна прошла: 10 * 0.75 = 7.5 от прошлого окна, свободно еще 2 запроса
+        AtomicInteger allowed = new AtomicInteger();
+        IntStream.range(0, 5).forEach(i -> {
+            if (rateLimiter.tryAcquire("transfers", USER, 1L, 10, WINDOW, START + WINDOW + 15_000).allowed())
+                allowed.incrementAndGet();
+        });
+
+
+        assertThat(allowed.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Когда ключи разные, тогда лимиты считаются независимо")
+    void tryAcquire_differentKeys_independentLimits() {
+        rateLimiter.tryAcquire("auth", IP, "10.0.0.1", 1, WINDOW, START);
+
+
+        assertThat(rateLimiter.tryAcquire("auth", IP, "10.0.0.1", 1, WINDOW, START).allowed()).isFalse();
+        assertThat(rateLimiter.tryAcquire("auth", IP, "10.0.0.2", 1, WINDOW, START).allowed()).isTrue();
+        assertThat(rateLimiter.tryAcquire("card-search", IP, "10.0.0.1", 1, WINDOW, START).allowed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Когда ключ простаивает два окна, тогда его счетчик удаляется при очистке")
+    void removeIdle_idleKey_removesCounter() {
+        rateLimiter.tryAcquire("auth", IP, "10.0.0.1", 5, 1, System.currentTimeMillis() - 10);
+        rateLimiter.tryAcquire("auth", IP, "10.0.0.2", 5, WINDOW, System.currentTimeMillis());
+
+
+        rateLimiter.removeIdle();
+
+
+        assertThat(rateLimiter.size()).isEqualTo(1);
+    }
+}
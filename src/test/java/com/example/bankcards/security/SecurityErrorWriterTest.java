@@ -0,0 +1,78 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class SecurityErrorWriterTest {
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private SecurityErrorWriter errorWriter;
+
+    @Test
+    @DisplayName("Когда пишется ошибка, тогда тело разбирается как ErrorResponse")
+    void write_message_writesErrorResponseJson() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+
+        errorWriter.write(response, HttpStatus.UNAUTHORIZED, "Неверный \"токен\"");
+
+
+        JsonNode body = new ObjectMapper().readTree(response.getContentAsByteArray());
+        assertThat(response.getStatus()).isEqualTo(401);
+        assertThat(response.getContentType()).startsWith("application/json");
+        assertThat(response.getContentLength()).isEqualTo(response.getContentAsByteArray().length);
+        assertThat(body.get("message").asString()).isEqualTo("Неверный \"токен\"");
+        assertThat(body.get("errors").isNull()).isTrue();
+        assertThat(LocalDateTime.parse(body.get("timestamp").asString())).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Когда сообщение повторяется, тогда JSON сериализуется только один раз")
+    void write_sameMessage_serializesOnce() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+
+        errorWriter.write(first, HttpStatus.FORBIDDEN, "Access Denied");
+        errorWriter.write(second, HttpStatus.FORBIDDEN, "Access Denied");
+
+
+        verify(objectMapper, times(1)).writeValueAsString(anyString());
+        assertThat(second.getContentAsString(StandardCharsets.UTF_8)).startsWith("{\"message\":\"Access Denied\"");
+    }
+
+    @Test
+    @DisplayName("Когда у исключения нет сообщения, тогда message в ответе равен null")
+    void write_nullMessage_writesNullMessage() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+
+        errorWriter.write(response, HttpStatus.UNAUTHORIZED, null);
+
+
+        JsonNode body = new ObjectMapper().readTree(response.getContentAsByteArray());
+        assertThat(body.get("message").isNull()).isTrue();
+        verifyNoInteractions(objectMapper);
+    }
+}
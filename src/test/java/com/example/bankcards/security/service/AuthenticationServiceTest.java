@@ -35,6 +35,9 @@ class AuthenticationServiceTest {
     @Mock
     private Authentication authentication;
 
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
     @InjectMocks
     private AuthenticationService authenticationService;
 
@@ -81,6 +84,26 @@ class AuthenticationServiceTest {
         verify(jwtService).generateToken(testUser);
     }
 
+    @Test
+    @DisplayName("Когда пользователь входит, тогда вместе с JWT выдается refresh токен")
+    void getUser_withValidCredentials_issuesRefreshToken() {
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(authentication);
+        when(authentication.getPrincipal())
+                .thenReturn(testUser);
+        when(jwtService.generateToken(testUser))
+                .thenReturn(expectedToken);
+        when(refreshTokenService.issue(testUser))
+                .thenReturn("refresh-token");
+
+
+        AuthenticationResponse result = authenticationService.getUser(validRequest);
+
+
+        assertThat(result.token()).isEqualTo(expectedToken);
+        assertThat(result.refreshToken()).isEqualTo("refresh-token");
+    }
+
     @Test
     @DisplayName("Когда аутентифицируем пользователя, создается правильный UsernamePasswordAuthenticationToken")
     void getUser_createsCorrectAuthenticationToken() {
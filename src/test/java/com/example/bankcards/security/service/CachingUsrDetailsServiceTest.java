@@ -0,0 +1,129 @@
+package com.example.bankcards.security.service;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.UserCacheProperties;
+import com.example.bankcards.service.UserChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class CachingUsrDetailsServiceTest {
+
+    @Mock
+    private UsrDetailsService usrDetailsService;
+
+    @Spy
+    private UserCacheProperties properties = new UserCacheProperties();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private CachingUsrDetailsService cachingUsrDetailsService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        cachingUsrDetailsService.init();
+
+        testUser = User.builder()
+                .id(100L)
+                .name("testuser")
+                .password("encodedPassword123")
+                .roles(new ArrayList<>(List.of(Role.builder().id(1L).name(Role.RoleName.ROLE_USER).build())))
+                .cards(new ArrayList<>())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Когда пользователь загружается повторно, тогда он берется из кэша без обращения к базе")
+    void loadUserByUsername_secondCall_hitsCache() {
+        when(usrDetailsService.loadUserByUsername("testuser"))
+                .thenReturn(testUser);
+
+
+        UserDetails first = cachingUsrDetailsService.loadUserByUsername("testuser");
+        UserDetails second = cachingUsrDetailsService.loadUserByUsername("testuser");
+
+
+        assertThat(second).isSameAs(first);
+        assertThat(second).isInstanceOf(User.class);
+        assertThat(((User) second).getId()).isEqualTo(100L);
+        assertThat(second.getPassword()).isEqualTo("encodedPassword123");
+        assertThat(second.getAuthorities()).hasSize(1);
+
+        verify(usrDetailsService, times(1)).loadUserByUsername("testuser");
+    }
+
+    @Test
+    @DisplayName("Когда пользователь изменен, тогда запись кэша удаляется и следующая загрузка идет в базу")
+    void onUserChanged_cachedUser_evictsEntry() {
+        when(usrDetailsService.loadUserByUsername("testuser"))
+                .thenReturn(testUser);
+        cachingUsrDetailsService.loadUserByUsername("testuser");
+
+
+        cachingUsrDetailsService.onUserChanged(new UserChangedEvent(100L));
+        cachingUsrDetailsService.loadUserByUsername("testuser");
+
+
+        verify(usrDetailsService, times(2)).loadUserByUsername("testuser");
+    }
+
+    @Test
+    @DisplayName("Когда пользователь не найден, тогда ошибка не кэшируется")
+    void loadUserByUsername_notFound_notCached() {
+        when(usrDetailsService.loadUserByUsername("unknown"))
+                .thenThrow(new UsernameNotFoundException("unknown"));
+
+
+        assertThatThrownBy(() -> cachingUsrDetailsService.loadUserByUsername("unknown"))
+                .isInstanceOf(UsernameNotFoundException.class);
+        assertThatThrownBy(() -> cachingUsrDetailsService.loadUserByUsername("unknown"))
+                .isInstanceOf(UsernameNotFoundException.class);
+
+
+        verify(usrDetailsService, times(2)).loadUserByUsername("unknown");
+    }
+
+    @Test
+    @DisplayName("Когда кэш используется, тогда попадания и промахи видны в метриках")
+    void loadUserByUsername_hitsAndMisses_exportedAsMetrics() {
+        when(usrDetailsService.loadUserByUsername("testuser"))
+                .thenReturn(testUser);
+
+
+        cachingUsrDetailsService.loadUserByUsername("testuser");
+        cachingUsrDetailsService.loadUserByUsername("testuser");
+        cachingUsrDetailsService.loadUserByUsername("testuser");
+
+
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CachingUsrDetailsService.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CachingUsrDetailsService.CACHE_NAME)
+                .tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.find("cache.evictions").tag("cache", CachingUsrDetailsService.CACHE_NAME)
+                .functionCounter()).isNotNull();
+    }
+}
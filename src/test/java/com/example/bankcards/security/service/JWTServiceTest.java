@@ -1,10 +1,15 @@
 package com.example.bankcards.security.service;
 
+import com.example.bankcards.entity.JwtSigningKey;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.JwtSigningKeyRepository;
+import com.example.bankcards.security.JwtSigningProperties;
 import io.jsonwebtoken.Claims;
 
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.ProtectedHeader;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.WeakKeyException;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +20,7 @@ import org.mockito.InjectMocks;
 
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.test.util.ReflectionTestUtils;
 
@@ -24,6 +30,7 @@ import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 @SpringBootTest
@@ -48,6 +55,7 @@ class JWTServiceTest {
         ReflectionTestUtils.setField(jwtService, "SECRET_BASE64_ENCODED", validSecretBase64);
         ReflectionTestUtils.setField(jwtService, "tokenLifetimeMillis", 3600000); // 1 час
         ReflectionTestUtils.setField(jwtService, "iss", "test-issuer");
+        jwtService.init();
 
         // Создаем секретный ключ
         secretKey = Keys.hmacShaKeyFor(Base64.getDecoder().decode(validSecretBase64));
@@ -131,6 +139,154 @@ class JWTServiceTest {
         assertThat(isValid).isTrue();
     }
 
+    @Test
+    @DisplayName("Когда разбираем валидный токен, тогда claims возвращаются одним разбором")
+    void parse_validToken_returnsClaims() {
+        // Arrange
+        String token = jwtService.generateToken(testUserDetails);
+
+        // Act
+        JwtClaims claims = jwtService.parse(token);
+
+        // Assert
+        assertThat(claims.subject()).isEqualTo("testuser");
+        assertThat(claims.issuer()).isEqualTo("test-issuer");
+        assertThat(claims.isExpired()).isFalse();
+        assertThat(jwtService.isTokenValid(claims, testUserDetails)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Когда генерируем токен, тогда в него попадают id пользователя и роли")
+    void generateToken_withUser_embedsIdAndRoles() {
+        // Arrange
+        String token = jwtService.generateToken(testUserDetails);
+
+        // Act
+        JwtClaims claims = jwtService.parse(token);
+
+        // Assert
+        assertThat(claims.userId()).isEqualTo(100L);
+        assertThat(claims.roles()).containsExactly("ROLE_USER", "ROLE_ADMIN");
+    }
+
+    @Test
+    @DisplayName("Когда генерируем токены, тогда у каждого свой идентификатор jti")
+    void generateToken_eachToken_hasUniqueTokenId() {
+        // Arrange
+        String first = jwtService.generateToken(testUserDetails);
+        String second = jwtService.generateToken(testUserDetails);
+
+        // Act
+        JwtClaims firstClaims = jwtService.parse(first);
+        JwtClaims secondClaims = jwtService.parse(second);
+
+        // Assert
+        assertThat(firstClaims.tokenId()).isNotBlank();
+        assertThat(secondClaims.tokenId()).isNotEqualTo(firstClaims.tokenId());
+    }
+
+    @Test
+    @DisplayName("Когда включена асимметричная подпись, тогда токен подписывается ключом кольца и проверяется по kid")
+    void generateToken_withKeyRing_signsWithKidAndVerifies() {
+        // Arrange
+        List<JwtSigningKey> stored = new ArrayList<>();
+        JwtSigningKeyRepository repository = mock(JwtSigningKeyRepository.class);
+        when(repository.findAllByOrderByCreatedAtDesc(any(Limit.class)))
+                .thenAnswer(invocation -> List.copyOf(stored));
+        when(repository.save(any(JwtSigningKey.class)))
+                .thenAnswer(invocation -> {
+                    stored.addFirst(invocation.getArgument(0));
+                    return invocation.getArgument(0);
+                });
+        JwtKeyRing keyRing = keyRing(repository, 3600000);
+        ReflectionTestUtils.setField(jwtService, "keyRing", keyRing);
+        String legacyToken = Jwts.builder().subject("testuser")
+                .issuedAt(new Date(System.currentTimeMillis() - 60_000)).signWith(secretKey).compact();
+
+        // Act
+        String token = jwtService.generateToken(testUserDetails);
+        String kid = Jwts.parser().keyLocator(header -> keyRing.verificationKey(((ProtectedHeader) header).getKeyId()))
+                .build().parseSignedClaims(token).getHeader().getKeyId();
+
+        // Assert
+        assertThat(kid).isEqualTo(stored.getFirst().getKid());
+        assertThat(jwtService.parse(token).subject()).isEqualTo("testuser");
+        assertThat(jwtService.extractUsername(legacyToken)).isEqualTo("testuser");
+
+        stored.clear();
+        keyRing.refresh();
+        assertThatThrownBy(() -> jwtService.parse(token))
+                .isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    @DisplayName("Когда токен без kid выпущен после включения кольца, тогда он отклоняется, хотя подпись секретом верна")
+    void parse_keyRingEnabled_rejectsLegacyTokenIssuedAfterActivation() {
+        // Arrange
+        ReflectionTestUtils.setField(jwtService, "keyRing", keyRing(storedKeysRepository(), 3600000));
+        String forged = Jwts.builder().subject("testuser")
+                .issuedAt(new Date(System.currentTimeMillis() + 5_000)).signWith(secretKey).compact();
+        String withoutIssuedAt = Jwts.builder().subject("testuser").signWith(secretKey).compact();
+
+        // Act & Assert
+        assertThatThrownBy(() -> jwtService.parse(forged))
+                .isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> jwtService.parse(withoutIssuedAt))
+                .isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    @DisplayName("Когда с включения кольца прошел срок жизни токена, тогда токены без kid отклоняются, хотя подпись секретом верна")
+    void parse_legacyWindowClosed_rejectsTokenWithoutKid() {
+        // Arrange
+        ReflectionTestUtils.setField(jwtService, "keyRing", keyRing(storedKeysRepository(), 0));
+        String legacyToken = Jwts.builder().subject("testuser")
+                .issuedAt(new Date(System.currentTimeMillis() - 60_000)).signWith(secretKey).compact();
+
+        // Act & Assert
+        assertThatThrownBy(() -> jwtService.parse(legacyToken))
+                .isInstanceOf(JwtException.class)
+                .hasMessageContaining("kid");
+    }
+
+    private static JwtSigningKeyRepository storedKeysRepository() {
+        List<JwtSigningKey> stored = new ArrayList<>();
+        JwtSigningKeyRepository repository = mock(JwtSigningKeyRepository.class);
+        when(repository.findAllByOrderByCreatedAtDesc(any(Limit.class)))
+                .thenAnswer(invocation -> List.copyOf(stored));
+        when(repository.save(any(JwtSigningKey.class)))
+                .thenAnswer(invocation -> {
+                    stored.addFirst(invocation.getArgument(0));
+                    return invocation.getArgument(0);
+                });
+        return repository;
+    }
+
+    private static JwtKeyRing keyRing(JwtSigningKeyRepository repository, long tokenLifetimeMillis) {
+        JwtKeyRing keyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(keyRing, "signingKeyRepository", repository);
+        JwtSigningProperties properties = new JwtSigningProperties();
+        properties.setKeyEncryptionKey(JwtKeyRingTest.KEY_ENCRYPTION_KEY);
+        ReflectionTestUtils.setField(keyRing, "properties", properties);
+        ReflectionTestUtils.setField(keyRing, "tokenLifetimeMillis", tokenLifetimeMillis);
+        keyRing.init();
+        return keyRing;
+    }
+
+    @Test
+    @DisplayName("Когда секрет сменился, тогда токены со старой подписью отклоняются")
+    void parse_secretRotated_rejectsOldToken() {
+        // Arrange
+        String token = jwtService.generateToken(testUserDetails);
+        ReflectionTestUtils.setField(jwtService, "SECRET_BASE64_ENCODED", Base64.getEncoder().encodeToString(
+                "another-secret-key-for-jwt-testing-purposes".getBytes()));
+        jwtService.init();
+
+        // Act & Assert
+        assertThatThrownBy(() -> jwtService.parse(token))
+                .isInstanceOf(JwtException.class);
+    }
+
     @Test
     @DisplayName("Когда проверяем токен для другого пользователя, тогда возвращается false")
     void isTokenValid_tokenForDifferentUser_returnsFalse() {
@@ -279,7 +435,7 @@ class JWTServiceTest {
         ReflectionTestUtils.setField(jwtService, "SECRET_BASE64_ENCODED", invalidBase64);
 
         // Act & Assert
-        assertThatThrownBy(() -> jwtService.generateToken(testUserDetails))
+        assertThatThrownBy(() -> jwtService.init())
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("base64");
     }
@@ -355,7 +511,7 @@ class JWTServiceTest {
         ReflectionTestUtils.setField(jwtService, "SECRET_BASE64_ENCODED", shortSecretBase64);
 
         // Act & Assert
-        assertThatThrownBy(() -> jwtService.generateToken(testUserDetails))
+        assertThatThrownBy(() -> jwtService.init())
                 .isInstanceOf(WeakKeyException.class);
     }
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+package com.example.bankcards.security.service;
+
+import com.example.bankcards.entity.JwtSigningKey;
+import com.example.bankcards.repository.JwtSigningKeyRepository;
+import com.example.bankcards.security.JwtSigningProperties;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class JwtKeyRingTest {
+
+    @Mock
+    private JwtSigningKeyRepository signingKeyRepository;
+
+    @Spy
+    private JwtSigningProperties properties = new JwtSigningProperties();
+
+    @InjectMocks
+    private JwtKeyRing keyRing;
+
+    //Хранилище ключей: новые в начале списка, как в findAllByOrderByCreatedAtDesc
+    private final List<JwtSigningKey> stored = new ArrayList<>();
+
+    static final String KEY_ENCRYPTION_KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+
+    @BeforeEach
+    void setUp() {
+        properties.setKeyEncryptionKey(KEY_ENCRYPTION_KEY);
+        //lenient: без ключа шифрования кольцо не доходит до хранилища
+        lenient().when(signingKeyRepository.findAllByOrderByCreatedAtDesc(any(Limit.class)))
+                .thenAnswer(invocation -> List.copyOf(stored));
+        lenient().when(signingKeyRepository.save(any(JwtSigningKey.class)))
+                .thenAnswer(invocation -> {
+                    stored.addFirst(invocation.getArgument(0));
+                    return invocation.getArgument(0);
+                });
+    }
+
+    @Test
+    @DisplayName("Когда ключей в хранилище нет, тогда создается ключ, который сразу подписывает")
+    void init_emptyStore_createsActiveKey() {
+        keyRing.init();
+
+
+        assertThat(stored).hasSize(1);
+        JwtSigningKey key = stored.getFirst();
+        assertThat(key.getAlgorithm()).isEqualTo(JwtSigningKey.Algorithm.ES256);
+        assertThat(keyRing.signingKey().kid()).isEqualTo(key.getKid());
+        assertThat(keyRing.verificationKey(key.getKid())).isNotNull();
+        assertThat(keyRing.jwks()).extracting(jwk -> jwk.get("kid")).containsExactly(key.getKid());
+        assertThat(keyRing.jwks().getFirst()).containsEntry("kty", "EC").containsEntry("use", "sig")
+                .doesNotContainKey("d");
+    }
+
+    @Test
+    @DisplayName("Когда пора ротировать, тогда новый ключ публикуется, а подписывает прежний до активации")
+    void refresh_rotationDue_publishesNewKeyBeforeActivation() {
+        keyRing.init();
+        String previousKid = stored.getFirst().getKid();
+        stored.getFirst().setCreatedAt(LocalDateTime.now().minus(properties.getRotationInterval()).minusMinutes(1));
+
+
+        keyRing.refresh();
+
+
+        assertThat(stored).hasSize(2);
+        String nextKid = stored.getFirst().getKid();
+        assertThat(keyRing.signingKey().kid()).isEqualTo(previousKid);
+        assertThat(keyRing.verificationKey(nextKid)).isNotNull();
+        assertThat(keyRing.jwks()).extracting(jwk -> jwk.get("kid")).containsExactly(nextKid, previousKid);
+        verify(signingKeyRepository, times(2)).deleteAllButNewest(properties.getRetainedKeys());
+    }
+
+    @Test
+    @DisplayName("Когда задержка активации прошла, тогда подписывает новый ключ, а старый продолжает проверять")
+    void refresh_activationPassed_switchesSigningKey() {
+        properties.setActivationDelay(Duration.ZERO);
+        keyRing.init();
+        String previousKid = stored.getFirst().getKid();
+        stored.getFirst().setCreatedAt(LocalDateTime.now().minus(properties.getRotationInterval()).minusMinutes(1));
+
+
+        keyRing.refresh();
+
+
+        String nextKid = stored.getFirst().getKid();
+        assertThat(keyRing.signingKey().kid()).isEqualTo(nextKid);
+        assertThat(keyRing.verificationKey(previousKid)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Когда выбран EdDSA, тогда ключи создаются на Ed25519")
+    void init_edDsa_createsOctetKey() {
+        properties.setAlgorithm(JwtSigningKey.Algorithm.EdDSA);
+
+
+        keyRing.init();
+
+
+        Map<String, Object> jwk = keyRing.jwks().getFirst();
+        assertThat(jwk).containsEntry("kty", "OKP").containsEntry("crv", "Ed25519");
+    }
+
+    @Test
+    @DisplayName("Когда создается ключ, тогда закрытый ключ сохраняется зашифрованным и без ключа шифрования не читается")
+    void init_newKey_storesPrivateKeyEncrypted() {
+        keyRing.init();
+        JwtSigningKey key = stored.getFirst();
+        JwtKeyRing otherRing = new JwtKeyRing();
+        JwtSigningProperties otherProperties = new JwtSigningProperties();
+        otherProperties.setKeyEncryptionKey(Base64.getEncoder().encodeToString(new byte[32]));
+        ReflectionTestUtils.setField(otherRing, "signingKeyRepository", signingKeyRepository);
+        ReflectionTestUtils.setField(otherRing, "properties", otherProperties);
+
+
+        assertThat(key.getPrivateKey()).startsWith("v1:");
+        assertThatThrownBy(otherRing::init)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(key.getKid());
+    }
+
+    @Test
+    @DisplayName("Когда в хранилище только незашифрованный ключ, тогда он не используется и создается новый")
+    void init_plaintextKeyInStore_ignoredAndReplaced() {
+        KeyPair pair = Jwts.SIG.ES256.keyPair().build();
+        stored.add(JwtSigningKey.builder()
+                .kid("plaintext")
+                .algorithm(JwtSigningKey.Algorithm.ES256)
+                .publicKey(Base64.getEncoder().encodeToString(pair.getPublic().getEncoded()))
+                .privateKey(Base64.getEncoder().encodeToString(pair.getPrivate().getEncoded()))
+                .createdAt(LocalDateTime.now().minusHours(1))
+                .activatesAt(LocalDateTime.now().minusHours(1))
+                .build());
+
+
+        keyRing.init();
+
+
+        assertThat(stored).hasSize(2);
+        assertThat(keyRing.signingKey().kid()).isNotEqualTo("plaintext");
+        assertThat(keyRing.verificationKey("plaintext")).isNull();
+        assertThat(keyRing.jwks()).extracting(jwk -> jwk.get("kid")).doesNotContain("plaintext");
+    }
+
+    @Test
+    @DisplayName("Когда ключ шифрования не задан, тогда кольцо не запускается")
+    void init_missingKeyEncryptionKey_throwsException() {
+        properties.setKeyEncryptionKey("");
+
+
+        assertThatThrownBy(keyRing::init)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("key-encryption-key");
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.bankcards.security.service;
+
+import com.example.bankcards.dto.auth.AuthenticationResponse;
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.RefreshTokenProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private JWTService jwtService;
+
+    @Mock
+    private TokenRevocationService revocationService;
+
+    @Spy
+    private RefreshTokenProperties properties = new RefreshTokenProperties();
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        testUser = User.builder()
+                .id(1L)
+                .name("testuser")
+                .password("encodedPassword")
+                .roles(new ArrayList<>())
+                .build();
+    }
+
+    private RefreshToken stored(String token, LocalDateTime usedAt, LocalDateTime expiresAt) {
+        return RefreshToken.builder()
+                .id(10L)
+                .userId(1L)
+                .tokenHash(RefreshTokenService.hash(token))
+                .familyId("family-1")
+                .createdAt(LocalDateTime.now().minusDays(1))
+                .expiresAt(expiresAt)
+                .usedAt(usedAt)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Когда выдается refresh токен, тогда в базе хранится только его хеш")
+    void issue_newLogin_storesHashOnly() {
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+
+
+        String token = refreshTokenService.issue(testUser);
+
+
+        verify(refreshTokenRepository).save(saved.capture());
+        assertThat(saved.getValue().getTokenHash())
+                .isEqualTo(RefreshTokenService.hash(token))
+                .isNotEqualTo(token);
+        assertThat(saved.getValue().getUserId()).isEqualTo(1L);
+        assertThat(saved.getValue().getExpiresAt()).isAfter(LocalDateTime.now().plusDays(13));
+    }
+
+    @Test
+    @DisplayName("Когда refresh токен обменивается, тогда он помечается использованным и выдается следующий в цепочке")
+    void refresh_validToken_rotatesWithinFamily() {
+        RefreshToken current = stored("current", null, LocalDateTime.now().plusDays(1));
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+
+        when(refreshTokenRepository.findByTokenHashForUpdate(RefreshTokenService.hash("current")))
+                .thenReturn(Optional.of(current));
+        when(userRepository.findWithRolesById(1L))
+                .thenReturn(Optional.of(testUser));
+        when(jwtService.generateToken(testUser))
+                .thenReturn("access-token");
+
+
+        AuthenticationResponse result = refreshTokenService.refresh("current");
+
+
+        assertThat(result.token()).isEqualTo("access-token");
+        assertThat(result.refreshToken()).isNotEqualTo("current");
+        assertThat(current.getUsedAt()).isNotNull();
+        verify(refreshTokenRepository).save(saved.capture());
+        assertThat(saved.getValue().getFamilyId()).isEqualTo("family-1");
+        assertThat(saved.getValue().getTokenHash()).isEqualTo(RefreshTokenService.hash(result.refreshToken()));
+    }
+
+    @Test
+    @DisplayName("Когда использованный refresh токен предъявлен повторно, тогда отзывается вся цепочка")
+    void refresh_reusedToken_revokesFamily() {
+        when(refreshTokenRepository.findByTokenHashForUpdate(RefreshTokenService.hash("stolen")))
+                .thenReturn(Optional.of(stored("stolen", LocalDateTime.now().minusMinutes(5), LocalDateTime.now().plusDays(1))));
+
+
+        assertThatThrownBy(() -> refreshTokenService.refresh("stolen"))
+                .isInstanceOf(BadCredentialsException.class);
+
+
+        verify(refreshTokenRepository).deleteByFamilyId("family-1");
+        verifyNoInteractions(jwtService);
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Когда refresh токен истек, тогда новая пара не выдается")
+    void refresh_expiredToken_throwsException() {
+        when(refreshTokenRepository.findByTokenHashForUpdate(RefreshTokenService.hash("expired")))
+                .thenReturn(Optional.of(stored("expired", null, LocalDateTime.now().minusMinutes(1))));
+
+
+        assertThatThrownBy(() -> refreshTokenService.refresh("expired"))
+                .isInstanceOf(BadCredentialsException.class);
+
+
+        verifyNoInteractions(jwtService);
+    }
+
+    @Test
+    @DisplayName("Когда refresh токен неизвестен, тогда выбрасывается исключение")
+    void refresh_unknownToken_throwsException() {
+        when(refreshTokenRepository.findByTokenHashForUpdate(any()))
+                .thenReturn(Optional.empty());
+
+
+        assertThatThrownBy(() -> refreshTokenService.refresh("unknown"))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    @DisplayName("Когда все токены пользователя отозваны после выдачи refresh токена, тогда новая пара не выдается")
+    void refresh_afterRevokeAllForUser_throwsException() {
+        RefreshToken current = stored("survivor", null, LocalDateTime.now().plusDays(1));
+
+        when(refreshTokenRepository.findByTokenHashForUpdate(RefreshTokenService.hash("survivor")))
+                .thenReturn(Optional.of(current));
+        when(revocationService.isRevokedForUser(1L, current.getCreatedAt()))
+                .thenReturn(true);
+
+
+        assertThatThrownBy(() -> refreshTokenService.refresh("survivor"))
+                .isInstanceOf(BadCredentialsException.class);
+
+
+        verifyNoInteractions(jwtService);
+        verify(refreshTokenRepository, never()).save(any());
+    }
+}
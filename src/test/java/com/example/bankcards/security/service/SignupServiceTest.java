@@ -0,0 +1,133 @@
+package com.example.bankcards.security.service;
+
+import com.example.bankcards.dto.signup.SignupRequest;
+import com.example.bankcards.dto.signup.SignupResponse;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.UserAlreadyExistsException;
+import com.example.bankcards.repository.RoleRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.mappers.SignupMapper;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+import static com.example.bankcards.entity.Role.RoleName.ROLE_USER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class SignupServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private JWTService jwtService;
+
+    @Mock
+    private PasswordEncoder encoder;
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @Mock
+    private SignupMapper mapper;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @InjectMocks
+    private SignupService signupService;
+
+    private SignupRequest request;
+    private Role userRole;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        request = new SignupRequest("newuser", "password123");
+        userRole = new Role(1L, ROLE_USER);
+        user = User.builder()
+                .name("newuser")
+                .password("encodedPassword")
+                .build();
+    }
+
+    private DataIntegrityViolationException violation(String constraintName) {
+        return new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", new SQLException("23505"), constraintName));
+    }
+
+    @Test
+    @DisplayName("Когда регистрируются два пользователя, тогда роль читается из базы один раз и проверки имени запросом нет")
+    void createUser_twice_loadsRoleOnceWithoutNameLookup() {
+        when(roleRepository.findByName(ROLE_USER))
+                .thenReturn(Optional.of(userRole));
+        when(mapper.toEntityCustom(request, encoder, userRole))
+                .thenReturn(user);
+        when(userRepository.saveAndFlush(user))
+                .thenReturn(user);
+        when(jwtService.generateToken(user))
+                .thenReturn("jwt");
+        when(refreshTokenService.issue(user))
+                .thenReturn("refresh");
+
+
+        signupService.createUser(request);
+        SignupResponse response = signupService.createUser(request);
+
+
+        assertThat(response.token()).isEqualTo("jwt");
+        assertThat(response.refreshToken()).isEqualTo("refresh");
+        verify(roleRepository, times(1)).findByName(ROLE_USER);
+        verify(userRepository, never()).findByName(any());
+    }
+
+    @Test
+    @DisplayName("Когда имя уже занято, тогда нарушение uk_users_name превращается в UserAlreadyExistsException")
+    void createUser_nameTaken_throwsUserAlreadyExists() {
+        when(roleRepository.findByName(ROLE_USER))
+                .thenReturn(Optional.of(userRole));
+        when(mapper.toEntityCustom(request, encoder, userRole))
+                .thenReturn(user);
+        when(userRepository.saveAndFlush(user))
+                .thenThrow(violation("uk_users_name"));
+
+
+        assertThatThrownBy(() -> signupService.createUser(request))
+                .isInstanceOf(UserAlreadyExistsException.class)
+                .hasMessageContaining("newuser");
+
+
+        verifyNoInteractions(jwtService, refreshTokenService);
+    }
+
+    @Test
+    @DisplayName("Когда нарушено другое ограничение, тогда исключение пробрасывается как есть")
+    void createUser_otherConstraint_rethrows() {
+        when(roleRepository.findByName(ROLE_USER))
+                .thenReturn(Optional.of(userRole));
+        when(mapper.toEntityCustom(request, encoder, userRole))
+                .thenReturn(user);
+        when(userRepository.saveAndFlush(user))
+                .thenThrow(violation("fk_users_something"));
+
+
+        assertThatThrownBy(() -> signupService.createUser(request))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.bankcards.security.service;
+
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.entity.UserTokenRevocation;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.repository.UserTokenRevocationRepository;
+import com.example.bankcards.security.RefreshTokenProperties;
+import com.example.bankcards.security.TokenRevocationProperties;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Mock
+    private UserTokenRevocationRepository userRevocationRepository;
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private JWTService jwtService;
+
+    @Spy
+    private TokenRevocationProperties properties = new TokenRevocationProperties();
+
+    @Spy
+    private RefreshTokenProperties refreshTokenProperties = new RefreshTokenProperties();
+
+    @InjectMocks
+    private TokenRevocationService revocationService;
+
+    @BeforeEach
+    void setUp() {
+        revocationService.tokenLifetimeMillis = 3600000;
+    }
+
+    private JwtClaims claims(String tokenId) {
+        return claims(tokenId, Instant.now());
+    }
+
+    private JwtClaims claims(String tokenId, Instant issuedAt) {
+        return new JwtClaims("testuser", "test-issuer", issuedAt, issuedAt.plusSeconds(3600),
+                100L, List.of("ROLE_USER"), tokenId);
+    }
+
+    private RevokedToken revoked(String jti) {
+        return RevokedToken.builder()
+                .jti(jti)
+                .userId(100L)
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .revokedAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Когда токен не отозван, тогда ответ дается фильтром без обращения к базе")
+    void isRevoked_unknownToken_answersWithoutStore() {
+        when(revokedTokenRepository.findRevokedAfter(any(), anyString(), any(), any(Limit.class)))
+                .thenReturn(List.of());
+        revocationService.init();
+
+
+        boolean revoked = revocationService.isRevoked(claims("not-revoked"));
+
+
+        assertThat(revoked).isFalse();
+        verify(revokedTokenRepository, never()).existsById(any());
+    }
+
+    @Test
+    @DisplayName("Когда отзыв загружен из хранилища при старте, тогда совпадение подтверждается базой")
+    void isRevoked_loadedOnStartup_confirmedByStore() {
+        when(revokedTokenRepository.findRevokedAfter(any(), anyString(), any(), any(Limit.class)))
+                .thenReturn(List.of(revoked("revoked-jti")));
+        when(revokedTokenRepository.existsById("revoked-jti"))
+                .thenReturn(true);
+        revocationService.init();
+
+
+        boolean revoked = revocationService.isRevoked(claims("revoked-jti"));
+
+
+        assertThat(revoked).isTrue();
+    }
+
+    @Test
+    @DisplayName("Когда токен отзывается, тогда он записывается в хранилище и сразу попадает в фильтр")
+    void revoke_validToken_storesAndUpdatesFilter() {
+        JwtClaims current = claims("fresh-jti");
+
+        when(revokedTokenRepository.findRevokedAfter(any(), anyString(), any(), any(Limit.class)))
+                .thenReturn(List.of());
+        when(jwtService.parse("token"))
+                .thenReturn(current);
+        when(revokedTokenRepository.existsById("fresh-jti"))
+                .thenReturn(true);
+        revocationService.init();
+
+
+        revocationService.revoke("token");
+
+
+        assertThat(revocationService.isRevoked(current)).isTrue();
+        verify(revokedTokenRepository).revoke(eq("fresh-jti"), eq(100L), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Когда отзыв сделан на другом экземпляре, тогда он подхватывается при обновлении фильтра")
+    void refresh_newRevocationInStore_addedToFilter() {
+        when(revokedTokenRepository.findRevokedAfter(any(), anyString(), any(), any(Limit.class)))
+                .thenReturn(List.of())
+                .thenReturn(List.of(revoked("remote-jti")));
+        when(revokedTokenRepository.existsById("remote-jti"))
+                .thenReturn(true);
+        revocationService.init();
+
+
+        revocationService.refresh();
+
+
+        assertThat(revocationService.isRevoked(claims("remote-jti"))).isTrue();
+    }
+
+    @Test
+    @DisplayName("Когда токен выдан без jti, тогда отзыв отклоняется, а проверка его пропускает")
+    void revoke_legacyToken_throwsException() {
+        when(revokedTokenRepository.findRevokedAfter(any(), anyString(), any(), any(Limit.class)))
+                .thenReturn(List.of());
+        revocationService.init();
+
+
+        assertThatThrownBy(() -> revocationService.revoke(claims(null)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(revocationService.isRevoked(claims(null))).isFalse();
+        verify(revokedTokenRepository, never()).revoke(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Когда отзываемый токен недействителен, тогда выбрасывается исключение")
+    void revoke_invalidToken_throwsException() {
+        when(jwtService.parse("broken"))
+                .thenThrow(new JwtException("signature does not match"));
+
+
+        assertThatThrownBy(() -> revocationService.revoke("broken"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Когда токен отзывается по jti, тогда он хранится не дольше срока жизни токена и сразу попадает в фильтр")
+    void revokeById_storesWithLifetimeBoundAndUpdatesFilter() {
+        when(revokedTokenRepository.findRevokedAfter(any(), anyString(), any(), any(Limit.class)))
+                .thenReturn(List.of());
+        when(revokedTokenRepository.existsById("admin-jti"))
+                .thenReturn(true);
+        revocationService.init();
+
+
+        revocationService.revokeById("admin-jti");
+
+
+        assertThat(revocationService.isRevoked(claims("admin-jti"))).isTrue();
+        verify(revokedTokenRepository).revoke(eq("admin-jti"), isNull(),
+                argThat(expiresAt -> !expiresAt.isAfter(LocalDateTime.now().plusHours(1))
+                        && expiresAt.isAfter(LocalDateTime.now().plusMinutes(59))));
+    }
+
+    @Test
+    @DisplayName("Когда отозваны все токены пользователя, тогда выданные раньше отклоняются, а выданные позже принимаются")
+    void revokeAllForUser_rejectsTokensIssuedBefore() {
+        when(revokedTokenRepository.findRevokedAfter(any(), anyString(), any(), any(Limit.class)))
+                .thenReturn(List.of());
+        revocationService.init();
+
+
+        revocationService.revokeAllForUser(100L);
+
+
+        assertThat(revocationService.isRevoked(claims("old-jti", Instant.now().minusSeconds(60)))).isTrue();
+        assertThat(revocationService.isRevoked(claims("new-jti", Instant.now().plusSeconds(2)))).isFalse();
+        assertThat(revocationService.isRevoked(new JwtClaims("other", "test-issuer", Instant.now().minusSeconds(60),
+                Instant.now().plusSeconds(3600), 200L, List.of("ROLE_USER"), "other-jti"))).isFalse();
+        verify(refreshTokenRepository).deleteByUserId(100L);
+        verify(userRevocationRepository).revokeAll(eq(100L), any(LocalDateTime.class),
+                argThat(expiresAt -> expiresAt.isAfter(LocalDateTime.now().plusDays(13))));
+    }
+
+    @Test
+    @DisplayName("Когда все токены пользователя отозваны, тогда выданный до отзыва refresh токен считается отозванным")
+    void isRevokedForUser_refreshTokenIssuedBefore_revoked() {
+        LocalDateTime revokedBefore = LocalDateTime.now();
+
+        when(userRevocationRepository.findById(100L))
+                .thenReturn(Optional.of(UserTokenRevocation.builder()
+                        .userId(100L)
+                        .revokedBefore(revokedBefore)
+                        .expiresAt(revokedBefore.plusDays(14))
+                        .build()));
+
+
+        boolean before = revocationService.isRevokedForUser(100L, revokedBefore.minusSeconds(1));
+        boolean after = revocationService.isRevokedForUser(100L, revokedBefore.plusSeconds(1));
+
+
+        assertThat(before).isTrue();
+        assertThat(after).isFalse();
+    }
+
+    @Test
+    @DisplayName("Когда пользователь выходит, тогда отзывается его токен и удаляются его refresh токены")
+    void logout_revokesTokenAndRefreshTokens() {
+        when(revokedTokenRepository.findRevokedAfter(any(), anyString(), any(), any(Limit.class)))
+                .thenReturn(List.of());
+        when(jwtService.parse("token"))
+                .thenReturn(claims("logout-jti"));
+        revocationService.init();
+
+
+        revocationService.logout("token");
+
+
+        verify(revokedTokenRepository).revoke(eq("logout-jti"), eq(100L), any(LocalDateTime.class));
+        verify(refreshTokenRepository).deleteByUserId(100L);
+    }
+
+    @Test
+    @DisplayName("Когда все токены пользователя отозваны на другом экземпляре, тогда отзыв подхватывается при обновлении")
+    void refresh_userRevocationInStore_applied() {
+        when(revokedTokenRepository.findRevokedAfter(any(), anyString(), any(), any(Limit.class)))
+                .thenReturn(List.of());
+        when(userRevocationRepository.findByExpiresAtAfter(any()))
+                .thenReturn(List.of())
+                .thenReturn(List.of(UserTokenRevocation.builder()
+                        .userId(100L)
+                        .revokedBefore(LocalDateTime.now())
+                        .expiresAt(LocalDateTime.now().plusHours(1))
+                        .build()));
+        revocationService.init();
+
+
+        revocationService.refresh();
+
+
+        assertThat(revocationService.isRevoked(claims(null, Instant.now().minusSeconds(60)))).isTrue();
+    }
+}
@@ -9,23 +9,36 @@ import com.example.bankcards.exception.CardNotFoundExcepion;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.projection.CardRow;
+import com.example.bankcards.config.RetryProperties;
+import com.example.bankcards.util.OptimisticRetryExecutor;
 import com.example.bankcards.util.mappers.CardMapper;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.data.domain.*;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static com.example.bankcards.entity.Card.CardStatus.*;
 import static org.assertj.core.api.Assertions.*;
@@ -47,6 +60,15 @@ class AdminCardServiceTest {
     private CardMapper cardMapper;
 
 
+    @Spy
+    private OptimisticRetryExecutor retryExecutor = new OptimisticRetryExecutor();
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private AdminCardService adminCardService;
 
@@ -59,6 +81,9 @@ class AdminCardServiceTest {
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(retryExecutor, "transactionOperations", TransactionOperations.withoutTransaction());
+        ReflectionTestUtils.setField(retryExecutor, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(retryExecutor, "properties", new RetryProperties());
 
         testUser = User.builder()
                 .id(1L)
@@ -139,6 +164,7 @@ class AdminCardServiceTest {
         verify(userRepository).findById(1L);
         verify(cardMapper).toEntity(validRequest, userRepository);
         verify(cardRepository).saveAndFlush(newCard);
+        verify(ledgerService).recordOpening(999L);
     }
     @Test
     @DisplayName("Когда добавляем карту несуществующему пользователю, тогда выбрасывается UserNotFoundException")
@@ -172,7 +198,27 @@ class AdminCardServiceTest {
         adminCardService.blockCard(100L);
 
 
-        verify(cardRepository).updateStatusById(100L, BLOCKED);
+        assertThat(activeCard.getStatus()).isEqualTo(BLOCKED);
+        verify(cardRepository).saveAndFlush(activeCard);
+    }
+
+    @Test
+    @DisplayName("Когда карту параллельно изменил перевод, тогда блокировка повторяется с перечитанной картой")
+    void blockCard_versionConflict_retriesWithFreshCard() {
+
+        when(cardRepository.findById(100L))
+                .thenReturn(Optional.of(activeCard));
+        when(cardRepository.saveAndFlush(activeCard))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 100L))
+                .thenReturn(activeCard);
+
+
+        adminCardService.blockCard(100L);
+
+
+        verify(cardRepository, times(2)).findById(100L);
+        verify(cardRepository, times(2)).saveAndFlush(activeCard);
+        assertThat(activeCard.getStatus()).isEqualTo(BLOCKED);
     }
 
     @Test
@@ -186,7 +232,7 @@ class AdminCardServiceTest {
         assertThatThrownBy(() -> adminCardService.blockCard(300L))
                 .isInstanceOf(CardHasExpiredException.class);
 
-        verify(cardRepository, never()).updateStatusById(any(), any());
+        verify(cardRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -211,7 +257,8 @@ class AdminCardServiceTest {
         adminCardService.activateCard(200L);
 
 
-        verify(cardRepository).updateStatusById(200L, ACTIVE);
+        assertThat(blockedCard.getStatus()).isEqualTo(ACTIVE);
+        verify(cardRepository).saveAndFlush(blockedCard);
     }
 
     @Test
@@ -223,7 +270,7 @@ class AdminCardServiceTest {
 
         adminCardService.activateCard(100L);
 
-        verify(cardRepository, never()).updateStatusById(any(), any());
+        verify(cardRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -237,7 +284,7 @@ class AdminCardServiceTest {
         assertThatThrownBy(() -> adminCardService.activateCard(300L))
                 .isInstanceOf(CardHasExpiredException.class);
 
-        verify(cardRepository, never()).updateStatusById(any(), any());
+        verify(cardRepository, never()).saveAndFlush(any());
     }
     @Test
     @DisplayName("Когда удаляем существующую карту, тогда она удаляется")
@@ -271,18 +318,22 @@ class AdminCardServiceTest {
     void getCards_withPageable_returnsPage() {
 
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> cardPage = new PageImpl<>(List.of(activeCard, blockedCard), pageable, 2);
+        CardRow activeRow = new CardRow(100L, "1234567890123456", LocalDate.now().plusDays(30), ACTIVE,
+                BigDecimal.valueOf(1000), 1L, "admin");
+        CardRow blockedRow = new CardRow(200L, "9876543210985678", LocalDate.now().plusDays(30), BLOCKED,
+                BigDecimal.ZERO, null, null);
+        Page<CardRow> cardPage = new PageImpl<>(List.of(activeRow, blockedRow), pageable, 2);
 
         CardDataAdminResponse response1 = new CardDataAdminResponse(100L, "************1234", LocalDate.now().plusDays(30), "id = 1, admin", ACTIVE);
         CardDataAdminResponse response2 = new CardDataAdminResponse(200L, "************5678", LocalDate.now().plusDays(30), "null", BLOCKED);
 
-        when(cardRepository.findAll(pageable))
+        when(cardRepository.findRows(null, pageable))
                 .thenReturn(cardPage);
 
-        when(cardMapper.toAdminDto(activeCard))
+        when(cardMapper.toAdminDto(activeRow))
                 .thenReturn(response1);
 
-        when(cardMapper.toAdminDto(blockedCard))
+        when(cardMapper.toAdminDto(blockedRow))
                 .thenReturn(response2);
 
 
@@ -293,12 +344,13 @@ class AdminCardServiceTest {
         assertThat(result.getContent()).hasSize(2);
         assertThat(result.getContent().get(0).id()).isEqualTo(100L);
         assertThat(result.getContent().get(1).id()).isEqualTo(200L);
+        verify(cardRepository, never()).findAll(any(Pageable.class));
     }
     @Test
     @DisplayName("Когда получаем карту по существующему ID, тогда возвращается карта")
     void getCardById_existingId_returnsCard() {
 
-        when(cardRepository.findById(100L))
+        when(cardRepository.findWithOwnerById(100L))
                 .thenReturn(Optional.of(activeCard));
 
         CardDataAdminResponse expectedResponse = new CardDataAdminResponse(
@@ -322,11 +374,51 @@ class AdminCardServiceTest {
     @DisplayName("Когда получаем карту по несуществующему ID, тогда выбрасывается CardNotFoundException")
     void getCardById_nonExistentId_throwsException() {
 
-        when(cardRepository.findById(999L))
+        when(cardRepository.findWithOwnerById(999L))
                 .thenReturn(Optional.empty());
 
 
         assertThatThrownBy(() -> adminCardService.getCardById(999L))
                 .isInstanceOf(CardNotFoundExcepion.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Когда выгружаем истекающие карты, тогда каждая карта пишется отдельной строкой JSON и поток закрывается")
+    void exportExpiring_rows_writesNdjsonAndClosesStream() throws Exception {
+        LocalDate from = LocalDate.now();
+        LocalDate to = LocalDate.now().plusDays(30);
+        CardRow first = new CardRow(100L, "1234567890123456", to, ACTIVE, BigDecimal.TEN, 1L, "testuser");
+        CardRow second = new CardRow(200L, "1111222233334444", to, BLOCKED, BigDecimal.ONE, 1L, "testuser");
+        AtomicBoolean closed = new AtomicBoolean();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        when(cardRepository.streamByActiveTillBetween(from, to))
+                .thenReturn(Stream.of(first, second).onClose(() -> closed.set(true)));
+        when(cardMapper.toAdminDto(any(CardRow.class)))
+                .thenAnswer(invocation -> new CardDataAdminResponse(invocation.<CardRow>getArgument(0).id(),
+                        "**** **** **** 3456", to, "id = 1, testuser", ACTIVE));
+
+
+        adminCardService.exportExpiring(from, to, out);
+
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines.get(0)).get("id").asLong()).isEqualTo(100L);
+        assertThat(objectMapper.readTree(lines.get(1)).get("id").asLong()).isEqualTo(200L);
+        assertThat(closed).isTrue();
+    }
+
+    @Test
+    @DisplayName("Когда начало периода позже конца, тогда выгрузка не запускается")
+    void exportExpiring_invertedRange_throwsException() {
+        LocalDate from = LocalDate.now().plusDays(30);
+
+
+        assertThatThrownBy(() -> adminCardService.exportExpiring(from, LocalDate.now(), new ByteArrayOutputStream()))
+                .isInstanceOf(IllegalStateException.class);
+
+
+        verifyNoInteractions(cardRepository);
+    }
+}
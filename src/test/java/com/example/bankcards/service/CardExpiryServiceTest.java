@@ -0,0 +1,148 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.CardExpiryProperties;
+import com.example.bankcards.entity.CardExpiryRun;
+import com.example.bankcards.repository.CardExpiryRunRepository;
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class CardExpiryServiceTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardExpiryRunRepository runRepository;
+
+    @Spy
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private CardExpiryProperties properties = new CardExpiryProperties();
+
+    @InjectMocks
+    private CardExpiryService cardExpiryService;
+
+    @BeforeEach
+    void setUp() {
+        properties.setChunkSize(2);
+        properties.setLockedRetryDelay(Duration.ZERO);
+
+        when(runRepository.save(any(CardExpiryRun.class)))
+                .thenAnswer(invocation -> {
+                    CardExpiryRun run = invocation.getArgument(0);
+                    if (run.getId() == null) run.setId(7L);
+                    return run;
+                });
+    }
+
+    @Test
+    @DisplayName("Когда истекших карт больше пачки, тогда они обновляются пачками до пустой")
+    void expireCards_severalChunks_expiresInChunks() {
+        when(cardRepository.expireChunk(2))
+                .thenReturn(List.of(1L, 2L), List.of(3L, 4L), List.of(5L), List.of());
+        when(cardRepository.countExpiryCandidates()).thenReturn(0L);
+
+
+        CardExpiryRun run = cardExpiryService.expireCards();
+
+
+        assertThat(run.getExpiredCount()).isEqualTo(5);
+        assertThat(run.getChunks()).isEqualTo(3);
+        assertThat(run.getFinishedAt()).isNotNull();
+        assertThat(meterRegistry.counter(CardExpiryService.EXPIRED_METRIC).count()).isEqualTo(5);
+
+        verify(transactionOperations, times(4)).execute(any());
+        verify(runRepository).recordChunk(7L, 2);
+        verify(runRepository).recordChunk(7L, 1);
+    }
+
+    @Test
+    @DisplayName("Когда пачка заполнена ровно и кандидатов не осталось, тогда следующий пустой запрос завершает запуск")
+    void expireCards_exactChunk_stopsOnEmptyChunk() {
+        when(cardRepository.expireChunk(2))
+                .thenReturn(List.of(1L, 2L), List.of());
+        when(cardRepository.countExpiryCandidates()).thenReturn(0L);
+
+
+        CardExpiryRun run = cardExpiryService.expireCards();
+
+
+        assertThat(run.getExpiredCount()).isEqualTo(2);
+        assertThat(run.getChunks()).isEqualTo(1);
+        verify(runRepository, times(1)).recordChunk(any(), anyInt());
+        verify(cardRepository, times(2)).expireChunk(2);
+    }
+
+    @Test
+    @DisplayName("Когда пачка неполная из-за строк, занятых другим экземпляром, тогда запуск продолжается до пустой пачки")
+    void expireCards_shortChunkWithRowsLeft_continuesUntilEmpty() {
+        when(cardRepository.expireChunk(2))
+                .thenReturn(List.of(1L), List.of(2L, 3L), List.of());
+        when(cardRepository.countExpiryCandidates()).thenReturn(0L);
+
+
+        CardExpiryRun run = cardExpiryService.expireCards();
+
+
+        assertThat(run.getExpiredCount()).isEqualTo(3);
+        assertThat(run.getChunks()).isEqualTo(2);
+        verify(cardRepository, times(3)).expireChunk(2);
+    }
+
+    @Test
+    @DisplayName("Когда пачка пустая, а оставшиеся кандидаты заняты, тогда после паузы делается один повторный проход")
+    void expireCards_emptyChunkWithLockedRows_retriesOnce() {
+        when(cardRepository.expireChunk(2))
+                .thenReturn(List.of(1L, 2L), List.of(), List.of(3L), List.of());
+        when(cardRepository.countExpiryCandidates()).thenReturn(1L, 0L);
+
+
+        CardExpiryRun run = cardExpiryService.expireCards();
+
+
+        assertThat(run.getExpiredCount()).isEqualTo(3);
+        assertThat(run.getChunks()).isEqualTo(2);
+        verify(cardRepository, times(4)).expireChunk(2);
+        verify(cardRepository, times(2)).countExpiryCandidates();
+    }
+
+    @Test
+    @DisplayName("Когда кандидаты заняты и после повторного прохода, тогда запуск завершается, не дожидаясь их")
+    void expireCards_rowsStillLockedAfterRetry_stopsAfterSingleRetry() {
+        when(cardRepository.expireChunk(2)).thenReturn(List.of());
+        when(cardRepository.countExpiryCandidates()).thenReturn(4L);
+
+
+        CardExpiryRun run = cardExpiryService.expireCards();
+
+
+        assertThat(run.getExpiredCount()).isZero();
+        assertThat(run.getChunks()).isZero();
+        assertThat(run.getFinishedAt()).isNotNull();
+        verify(cardRepository, times(2)).expireChunk(2);
+        verify(runRepository, never()).recordChunk(any(), anyInt());
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.LedgerProperties;
+import com.example.bankcards.dto.adminFuncs.LedgerReconciliationResponse;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class LedgerServiceTest {
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Spy
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
+    @Spy
+    private LedgerProperties properties = new LedgerProperties();
+
+    @InjectMocks
+    private LedgerService ledgerService;
+
+    @BeforeEach
+    void setUp() {
+        properties.setRebuildChunkSize(100);
+    }
+
+    @Test
+    @DisplayName("Когда проводим пакет переводов, тогда журнал пишется одним запросом")
+    void recordAll_transfers_writesEntriesInOneStatement() {
+        Transfer first = Transfer.builder().id(1L).build();
+        Transfer second = Transfer.builder().id(2L).build();
+
+        ledgerService.recordAll(List.of(first, second));
+
+        verify(ledgerEntryRepository, times(1)).recordTransfers(List.of(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("Когда сверяем журнал, тогда карты обходятся диапазонами, а расхождения попадают в отчет")
+    void verify_mismatches_reportedPerChunk() {
+        LedgerEntryRepository.BalanceMismatch mismatch = mock(LedgerEntryRepository.BalanceMismatch.class);
+        when(mismatch.getCardId()).thenReturn(150L);
+        when(mismatch.getBalance()).thenReturn(BigDecimal.valueOf(100));
+        when(mismatch.getLedgerBalance()).thenReturn(BigDecimal.valueOf(90));
+        when(ledgerEntryRepository.maxCardId()).thenReturn(250L);
+        when(ledgerEntryRepository.findMismatches(anyLong(), anyLong())).thenReturn(List.of());
+        when(ledgerEntryRepository.findMismatches(101L, 200L)).thenReturn(List.of(mismatch));
+
+        LedgerReconciliationResponse report = ledgerService.verify();
+
+        assertThat(report.chunks()).isEqualTo(3);
+        assertThat(report.affectedCards()).isEqualTo(1);
+        assertThat(report.mismatches()).containsExactly(
+                new LedgerReconciliationResponse.Mismatch(150L, BigDecimal.valueOf(100), BigDecimal.valueOf(90)));
+        verify(ledgerEntryRepository, never()).rebuildRange(anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Когда пересчитываем балансы, тогда каждый диапазон сначала блокируется, затем обновляется")
+    void rebuild_eachChunk_locksThenUpdates() {
+        when(ledgerEntryRepository.maxCardId()).thenReturn(150L);
+        when(ledgerEntryRepository.rebuildRange(1L, 100L)).thenReturn(2);
+        when(ledgerEntryRepository.rebuildRange(101L, 200L)).thenReturn(1);
+
+        LedgerReconciliationResponse report = ledgerService.rebuild();
+
+        assertThat(report.chunks()).isEqualTo(2);
+        assertThat(report.affectedCards()).isEqualTo(3);
+        InOrder order = inOrder(ledgerEntryRepository);
+        order.verify(ledgerEntryRepository).lockCardRange(1L, 100L);
+        order.verify(ledgerEntryRepository).rebuildRange(1L, 100L);
+        order.verify(ledgerEntryRepository).lockCardRange(101L, 200L);
+        order.verify(ledgerEntryRepository).rebuildRange(101L, 200L);
+        verify(transactionOperations, times(2)).execute(any());
+    }
+}
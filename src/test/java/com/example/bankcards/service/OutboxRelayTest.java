@@ -0,0 +1,58 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.OutboxProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Spy
+    private OutboxProperties properties = new OutboxProperties();
+
+    @InjectMocks
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        properties.getRelay().setBatchSize(2);
+        properties.getRelay().setMaxBatchesPerTick(3);
+    }
+
+    @Test
+    @DisplayName("Когда пачка пришла неполной, тогда релей заканчивает запуск")
+    void relay_shortBatch_stops() {
+        when(outboxService.publishBatch()).thenReturn(2, 1);
+
+
+        outboxRelay.relay();
+
+
+        verify(outboxService, times(2)).publishBatch();
+    }
+
+    @Test
+    @DisplayName("Когда пачки идут полными, тогда за запуск отправляется не больше max-batches-per-tick")
+    void relay_fullBatches_cappedPerTick() {
+        when(outboxService.publishBatch()).thenReturn(2);
+
+
+        outboxRelay.relay();
+
+
+        verify(outboxService, times(3)).publishBatch();
+    }
+}
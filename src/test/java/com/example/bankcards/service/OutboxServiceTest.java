@@ -0,0 +1,149 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.OutboxProperties;
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+
+import static com.example.bankcards.entity.OutboxEvent.EventType.TRANSFER_COMPLETED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class OutboxServiceTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private OutboxSink sink;
+
+    @Spy
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
+    @Spy
+    private OutboxProperties properties = new OutboxProperties();
+
+    @InjectMocks
+    private OutboxService outboxService;
+
+    private OutboxEvent first;
+    private OutboxEvent second;
+
+    @BeforeEach
+    void setUp() {
+        properties.getRelay().setBatchSize(2);
+
+        first = OutboxEvent.builder().id(12L).sequenceNumber(7L).transferId(1L).eventType(TRANSFER_COMPLETED).payload("{}").build();
+        second = OutboxEvent.builder().id(11L).sequenceNumber(8L).transferId(2L).eventType(TRANSFER_COMPLETED).payload("{}").build();
+    }
+
+    @Test
+    @DisplayName("Когда проводим пакет переводов, тогда события пишутся одной вставкой")
+    void recordAll_transfers_writesEventsInOneStatement() {
+        Transfer firstTransfer = Transfer.builder().id(1L).build();
+        Transfer secondTransfer = Transfer.builder().id(2L).build();
+
+        outboxService.recordAll(List.of(firstTransfer, secondTransfer));
+
+        verify(outboxEventRepository, times(1)).recordTransfers(List.of(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("Когда в outbox есть события, тогда они отправляются в sink и помечаются отправленными")
+    void publishBatch_unpublishedEvents_sendsThenMarks() {
+
+        when(outboxEventRepository.findSequencedUnpublished(2))
+                .thenReturn(List.of(first, second));
+
+
+        int sent = outboxService.publishBatch();
+
+
+        assertThat(sent).isEqualTo(2);
+        InOrder order = inOrder(sink, outboxEventRepository);
+        order.verify(sink).send(List.of(first, second));
+        order.verify(outboxEventRepository).markPublished(List.of(12L, 11L));
+    }
+
+    @Test
+    @DisplayName("Когда появились новые события, тогда номера присваиваются после последнего выданного до отправки")
+    void publishBatch_newEvents_assignsSequenceBeforeSending() {
+
+        when(outboxEventRepository.lockSequence())
+                .thenReturn(6L);
+        when(outboxEventRepository.assignSequence(6L, 2))
+                .thenReturn(2);
+        when(outboxEventRepository.findSequencedUnpublished(2))
+                .thenReturn(List.of(first, second));
+
+
+        outboxService.publishBatch();
+
+
+        InOrder order = inOrder(sink, outboxEventRepository);
+        order.verify(outboxEventRepository).lockSequence();
+        order.verify(outboxEventRepository).assignSequence(6L, 2);
+        order.verify(outboxEventRepository).advanceSequence(2);
+        order.verify(outboxEventRepository).lockSequence();
+        order.verify(sink).send(List.of(first, second));
+    }
+
+    @Test
+    @DisplayName("Когда новых событий нет, тогда счетчик номеров не сдвигается")
+    void publishBatch_nothingToNumber_keepsSequence() {
+
+        when(outboxEventRepository.findSequencedUnpublished(2))
+                .thenReturn(List.of());
+
+
+        outboxService.publishBatch();
+
+
+        verify(outboxEventRepository, never()).advanceSequence(anyInt());
+    }
+
+    @Test
+    @DisplayName("Когда sink не принял пачку, тогда события не помечаются и будут отправлены повторно")
+    void publishBatch_sinkFailure_leavesEventsUnpublished() {
+
+        when(outboxEventRepository.findSequencedUnpublished(2))
+                .thenReturn(List.of(first, second));
+        doThrow(new IllegalStateException("broker unavailable"))
+                .when(sink).send(any());
+
+
+        assertThatThrownBy(() -> outboxService.publishBatch())
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(outboxEventRepository, never()).markPublished(any());
+    }
+
+    @Test
+    @DisplayName("Когда outbox пуст, тогда sink не вызывается")
+    void publishBatch_noEvents_returnsZero() {
+
+        when(outboxEventRepository.findSequencedUnpublished(2))
+                .thenReturn(List.of());
+
+
+        assertThat(outboxService.publishBatch()).isZero();
+
+        verifyNoInteractions(sink);
+    }
+}
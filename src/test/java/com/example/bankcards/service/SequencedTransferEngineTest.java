@@ -0,0 +1,318 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
+import com.example.bankcards.dto.userFuncs.transfer.TransferResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.CardNotFoundExcepion;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.TransferResultTimeoutException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.mappers.CardMapper;
+import com.example.bankcards.util.mappers.TransferMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static com.example.bankcards.entity.Card.CardStatus.ACTIVE;
+import static com.example.bankcards.entity.Transfer.TransferStatus.COMPLETED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class SequencedTransferEngineTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TransferMapper transferMapper;
+
+    @Mock
+    private CardMapper cardMapper;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Spy
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
+    @Spy
+    private TransferProperties properties = new TransferProperties();
+
+    @InjectMocks
+    private SequencedTransferEngine engine;
+
+    private User testUser;
+    private Card hotCard;
+    private Card toCard;
+    private TransferRequest first;
+    private TransferRequest second;
+    private Transfer firstTransfer;
+    private Transfer secondTransfer;
+
+    @BeforeEach
+    void setUp() {
+        testUser = User.builder()
+                .id(1L)
+                .name("merchant")
+                .cards(new ArrayList<>())
+                .build();
+
+        hotCard = Card.builder()
+                .id(100L)
+                .cardNum("1234567890123456")
+                .owner(testUser)
+                .balance(BigDecimal.valueOf(1000))
+                .status(ACTIVE)
+                .activeTill(LocalDate.now().plusDays(30))
+                .build();
+
+        toCard = Card.builder()
+                .id(200L)
+                .cardNum("9876543210987654")
+                .owner(testUser)
+                .balance(BigDecimal.ZERO)
+                .status(ACTIVE)
+                .activeTill(LocalDate.now().plusDays(30))
+                .build();
+
+        first = new TransferRequest(100L, 200L, BigDecimal.valueOf(600), "Первый");
+        second = new TransferRequest(100L, 200L, BigDecimal.valueOf(300), "Второй");
+        firstTransfer = Transfer.builder().id(1L).amount(first.amount()).build();
+        secondTransfer = Transfer.builder().id(2L).amount(second.amount()).build();
+    }
+
+    //Откат транзакции в моках не возвращает балансы, поэтому каждая попытка читает "из базы" свежую копию
+    private Card storedCopy(Card card) {
+        return Card.builder()
+                .id(card.getId())
+                .cardNum(card.getCardNum())
+                .owner(card.getOwner())
+                .balance(card.getBalance())
+                .status(card.getStatus())
+                .activeTill(card.getActiveTill())
+                .build();
+    }
+
+    private TransferResponse responseOf(Transfer transfer) {
+        return new TransferResponse(transfer.getId(), null, null, transfer.getAmount(),
+                COMPLETED.toString(), null, null, null);
+    }
+
+    @Test
+    @DisplayName("Когда в пачке несколько переводов с одной карты, тогда карта блокируется и пишется один раз")
+    void process_sameCardBatch_locksOnceAndSavesAllTransfers() {
+        List<TransferResponse> recorded = new ArrayList<>();
+        var firstSubmission = new SequencedTransferEngine.Submission(first, 1L, recorded::add);
+        var secondSubmission = new SequencedTransferEngine.Submission(second, 1L, recorded::add);
+
+        when(cardRepository.findAllByIdInForUpdate(Set.of(100L, 200L)))
+                .thenReturn(List.of(hotCard, toCard));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(transferMapper.toEntity(first, cardRepository, testUser))
+                .thenReturn(firstTransfer);
+        when(transferMapper.toEntity(second, cardRepository, testUser))
+                .thenReturn(secondTransfer);
+        when(transferMapper.toResponse(firstTransfer))
+                .thenReturn(responseOf(firstTransfer));
+        when(transferMapper.toResponse(secondTransfer))
+                .thenReturn(responseOf(secondTransfer));
+
+
+        engine.process(List.of(firstSubmission, secondSubmission));
+
+
+        assertThat(firstSubmission.result().join().id()).isEqualTo(1L);
+        assertThat(secondSubmission.result().join().id()).isEqualTo(2L);
+        assertThat(recorded).extracting(TransferResponse::id).containsExactly(1L, 2L);
+        assertThat(hotCard.getBalance()).isEqualTo(BigDecimal.valueOf(100));
+        assertThat(toCard.getBalance()).isEqualTo(BigDecimal.valueOf(900));
+
+        verify(cardRepository, times(1)).findAllByIdInForUpdate(any());
+        verify(transferRepository).saveAll(List.of(firstTransfer, secondTransfer));
+        verify(ledgerService).recordAll(List.of(firstTransfer, secondTransfer));
+        verify(outboxService).recordAll(List.of(firstTransfer, secondTransfer));
+        verify(transactionOperations, times(1)).execute(any());
+    }
+
+    @Test
+    @DisplayName("Когда перевод пачки не проходит проверки, тогда отклоняется только он")
+    void process_insufficientFunds_rejectsOnlyThatTransfer() {
+        TransferRequest tooLarge = new TransferRequest(100L, 200L, BigDecimal.valueOf(500), "Слишком много");
+        var firstSubmission = new SequencedTransferEngine.Submission(first, 1L, response -> {});
+        var rejectedSubmission = new SequencedTransferEngine.Submission(tooLarge, 1L, response -> {});
+        var foreignSubmission = new SequencedTransferEngine.Submission(second, 2L, response -> {});
+
+        when(cardRepository.findAllByIdInForUpdate(Set.of(100L, 200L)))
+                .thenReturn(List.of(hotCard, toCard));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(cardMapper.mapCardNumFromEntity(hotCard))
+                .thenReturn("**** **** **** 3456");
+        when(transferMapper.toEntity(first, cardRepository, testUser))
+                .thenReturn(firstTransfer);
+        when(transferMapper.toResponse(firstTransfer))
+                .thenReturn(responseOf(firstTransfer));
+
+
+        engine.process(List.of(firstSubmission, rejectedSubmission, foreignSubmission));
+
+
+        assertThat(firstSubmission.result().join().id()).isEqualTo(1L);
+        assertThatThrownBy(() -> rejectedSubmission.result().join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(InsufficientFundsException.class);
+        assertThatThrownBy(() -> foreignSubmission.result().join())
+                .hasCauseInstanceOf(CardNotFoundExcepion.class);
+        assertThat(hotCard.getBalance()).isEqualTo(BigDecimal.valueOf(400));
+
+        verify(transferRepository).saveAll(List.of(firstTransfer));
+    }
+
+    @Test
+    @DisplayName("Когда пачка откатывается целиком, тогда переводы проводятся по одному")
+    void process_batchRollback_retriesEachTransferAlone() {
+        var firstSubmission = new SequencedTransferEngine.Submission(first, 1L, response -> {});
+        var duplicateSubmission = new SequencedTransferEngine.Submission(second, 1L, response -> {
+            throw new DataIntegrityViolationException("uk_idempotency_keys_user_key");
+        });
+
+        when(cardRepository.findAllByIdInForUpdate(Set.of(100L, 200L)))
+                .thenAnswer(invocation -> List.of(storedCopy(hotCard), storedCopy(toCard)));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(transferMapper.toEntity(first, cardRepository, testUser))
+                .thenReturn(firstTransfer);
+        when(transferMapper.toEntity(second, cardRepository, testUser))
+                .thenReturn(secondTransfer);
+        when(transferMapper.toResponse(firstTransfer))
+                .thenReturn(responseOf(firstTransfer));
+        when(transferMapper.toResponse(secondTransfer))
+                .thenReturn(responseOf(secondTransfer));
+
+
+        engine.process(List.of(firstSubmission, duplicateSubmission));
+
+
+        assertThat(firstSubmission.result().join().id()).isEqualTo(1L);
+        assertThatThrownBy(() -> duplicateSubmission.result().join())
+                .hasCauseInstanceOf(DataIntegrityViolationException.class);
+        verify(transactionOperations, times(3)).execute(any());
+        verify(transferRepository).saveAll(List.of(firstTransfer));
+    }
+
+    @Test
+    @DisplayName("Когда пачка с переводом не зафиксирована за result-timeout, тогда вызывающий получает исключение о неизвестном исходе")
+    void transfer_batchNotCommittedInTime_throwsResultTimeout() {
+        properties.getSequencer().setResultTimeout(Duration.ofMillis(50));
+        //Очередь без писателя: перевод принят, но пачка не обрабатывается
+        ReflectionTestUtils.setField(engine, "queues", List.of(new ArrayBlockingQueue<>(1)));
+
+
+        assertThatThrownBy(() -> engine.transfer(first, 1L, response -> {}))
+                .isInstanceOf(TransferResultTimeoutException.class);
+    }
+
+    @Test
+    @DisplayName("Когда многие карты платят на горячую карту мерчанта, тогда все переводы попадают в один шард")
+    void shardOf_manySendersToHotCard_sameShard() {
+        properties.getSequencer().setHotCards(Set.of(200L));
+        ReflectionTestUtils.setField(engine, "queues",
+                IntStream.range(0, 8).mapToObj(i -> new ArrayBlockingQueue<>(1)).toList());
+
+
+        Set<BlockingQueue<?>> shards = new HashSet<>();
+        for (long sender = 1; sender <= 40; sender++)
+            shards.add(engine.shardOf(new TransferRequest(sender, 200L, BigDecimal.ONE, "Оплата")));
+
+
+        assertThat(shards).hasSize(1);
+        assertThat(engine.routingCardId(new TransferRequest(100L, 300L, BigDecimal.ONE, "Обычный")))
+                .isEqualTo(100L);
+    }
+
+    @Test
+    @DisplayName("Когда в пачке платежи с разных карт на одну карту, тогда она блокируется и пишется один раз")
+    void process_manySendersToOneCard_locksOnce() {
+        List<Card> senders = LongStream.rangeClosed(101, 105)
+                .mapToObj(id -> Card.builder()
+                        .id(id)
+                        .cardNum("40000000000000" + id)
+                        .owner(testUser)
+                        .balance(BigDecimal.valueOf(100))
+                        .status(ACTIVE)
+                        .activeTill(LocalDate.now().plusDays(30))
+                        .build())
+                .toList();
+        Map<TransferRequest, Transfer> transfers = new LinkedHashMap<>();
+        for (Card sender : senders)
+            transfers.put(new TransferRequest(sender.getId(), 200L, BigDecimal.TEN, "Оплата"),
+                    Transfer.builder().id(sender.getId()).amount(BigDecimal.TEN).build());
+        List<SequencedTransferEngine.Submission> batch = transfers.keySet().stream()
+                .map(request -> new SequencedTransferEngine.Submission(request, 1L, response -> {}))
+                .toList();
+        List<Card> locked = new ArrayList<>(senders);
+        locked.add(toCard);
+
+        when(cardRepository.findAllByIdInForUpdate(any()))
+                .thenReturn(locked);
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        transfers.forEach((request, transfer) -> {
+            when(transferMapper.toEntity(request, cardRepository, testUser)).thenReturn(transfer);
+            when(transferMapper.toResponse(transfer)).thenReturn(responseOf(transfer));
+        });
+
+
+        engine.process(batch);
+
+
+        assertThat(batch).allSatisfy(submission -> assertThat(submission.result().join()).isNotNull());
+        assertThat(toCard.getBalance()).isEqualTo(BigDecimal.valueOf(50));
+        assertThat(senders).allSatisfy(sender -> assertThat(sender.getBalance()).isEqualTo(BigDecimal.valueOf(90)));
+        verify(cardRepository, times(1)).findAllByIdInForUpdate(any());
+        verify(transferRepository).saveAll(List.copyOf(transfers.values()));
+    }
+}
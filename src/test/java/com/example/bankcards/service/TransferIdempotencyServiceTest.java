@@ -0,0 +1,182 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.IdempotencyProperties;
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
+import com.example.bankcards.dto.userFuncs.transfer.TransferResponse;
+import com.example.bankcards.entity.IdempotencyKey;
+import com.example.bankcards.repository.IdempotencyKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class TransferIdempotencyServiceTest {
+
+    @Mock
+    private TransferService transferService;
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Spy
+    private TransferProperties transferProperties = new TransferProperties();
+
+    @Spy
+    private IdempotencyProperties properties = new IdempotencyProperties();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private TransferIdempotencyService idempotencyService;
+
+    private TransferRequest request;
+    private TransferResponse response;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService.init();
+
+        request = new TransferRequest(100L, 200L, BigDecimal.valueOf(1000), "Test transfer");
+        response = new TransferResponse(1L, "**** **** **** 3456", "**** **** **** 7654",
+                BigDecimal.valueOf(1000), "COMPLETED", "Test transfer",
+                LocalDateTime.of(2025, 1, 15, 14, 30), null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void transferSucceeds() {
+        when(transferService.createTransfer(eq(request), eq(1L), any(Consumer.class)))
+                .thenAnswer(invocation -> {
+                    invocation.<Consumer<TransferResponse>>getArgument(2).accept(response);
+                    return response;
+                });
+    }
+
+    @Test
+    @DisplayName("Когда ключ встречается впервые, тогда перевод выполняется и ключ сохраняется в его транзакции")
+    void createTransfer_newKey_executesTransferAndStoresKey() {
+        transferSucceeds();
+
+        TransferResponse result = idempotencyService.createTransfer(request, 1L, "key-1");
+
+        assertThat(result).isEqualTo(response);
+        verify(idempotencyKeyRepository).save(argThat(stored ->
+                stored.getUserId().equals(1L) && stored.getIdemKey().equals("key-1")));
+    }
+
+    @Test
+    @DisplayName("Когда запрос с тем же ключом повторяется, тогда ответ берется из кэша без перевода и обращения к базе")
+    void createTransfer_replayedKey_returnsCachedResponse() {
+        transferSucceeds();
+        idempotencyService.createTransfer(request, 1L, "key-1");
+        clearInvocations(transferService, idempotencyKeyRepository);
+
+        TransferResponse result = idempotencyService.createTransfer(request, 1L, "key-1");
+
+        assertThat(result).isEqualTo(response);
+        verifyNoInteractions(transferService, idempotencyKeyRepository);
+    }
+
+    @Test
+    @DisplayName("Когда ключа нет в кэше, но он есть в таблице, тогда возвращается сохраненный ответ")
+    void createTransfer_keyStoredInDatabase_returnsStoredResponse() {
+        IdempotencyKey stored = IdempotencyKey.builder()
+                .userId(1L)
+                .idemKey("key-1")
+                .requestHash(TransferIdempotencyService.requestHash(request))
+                .response(objectMapper.writeValueAsString(response))
+                .build();
+        when(idempotencyKeyRepository.findByUserIdAndIdemKey(1L, "key-1"))
+                .thenReturn(Optional.of(stored));
+
+        TransferResponse result = idempotencyService.createTransfer(request, 1L, "key-1");
+
+        assertThat(result).isEqualTo(response);
+        verifyNoInteractions(transferService);
+    }
+
+    @Test
+    @DisplayName("Когда ключ повторяется с другим переводом, тогда выбрасывается IllegalStateException")
+    void createTransfer_sameKeyDifferentRequest_throwsException() {
+        transferSucceeds();
+        idempotencyService.createTransfer(request, 1L, "key-1");
+
+        TransferRequest other = new TransferRequest(100L, 200L, BigDecimal.valueOf(5), "Другой перевод");
+
+        assertThatThrownBy(() -> idempotencyService.createTransfer(other, 1L, "key-1"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Idempotency-Key");
+    }
+
+    @Test
+    @DisplayName("Когда дубль приходит во время выполнения исходного запроса, тогда он ждет его результат")
+    @SuppressWarnings("unchecked")
+    void createTransfer_concurrentDuplicate_waitsForInFlightResult() throws Exception {
+        CountDownLatch transferStarted = new CountDownLatch(1);
+        CountDownLatch releaseTransfer = new CountDownLatch(1);
+        when(transferService.createTransfer(eq(request), eq(1L), any(Consumer.class)))
+                .thenAnswer(invocation -> {
+                    transferStarted.countDown();
+                    releaseTransfer.await();
+                    return response;
+                });
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<TransferResponse> first = pool.submit(() -> idempotencyService.createTransfer(request, 1L, "key-1"));
+            transferStarted.await(5, TimeUnit.SECONDS);
+            Future<TransferResponse> duplicate = pool.submit(() -> idempotencyService.createTransfer(request, 1L, "key-1"));
+            releaseTransfer.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(response);
+            assertThat(duplicate.get(5, TimeUnit.SECONDS)).isEqualTo(response);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        verify(transferService, times(1)).createTransfer(eq(request), eq(1L), any(Consumer.class));
+    }
+
+    @Test
+    @DisplayName("Когда другой экземпляр успел сохранить ключ первым, тогда возвращается его ответ")
+    @SuppressWarnings("unchecked")
+    void createTransfer_keyInsertedConcurrently_returnsWinnerResponse() {
+        IdempotencyKey winner = IdempotencyKey.builder()
+                .userId(1L)
+                .idemKey("key-1")
+                .requestHash(TransferIdempotencyService.requestHash(request))
+                .response(objectMapper.writeValueAsString(response))
+                .build();
+        when(idempotencyKeyRepository.findByUserIdAndIdemKey(1L, "key-1"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(winner));
+        when(transferService.createTransfer(eq(request), eq(1L), any(Consumer.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_idempotency_keys_user_key"));
+
+        TransferResponse result = idempotencyService.createTransfer(request, 1L, "key-1");
+
+        assertThat(result).isEqualTo(response);
+    }
+}
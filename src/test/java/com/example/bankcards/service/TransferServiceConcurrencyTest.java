@@ -0,0 +1,188 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.TestcontainersConfiguration;
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.config.TransferProperties.ConcurrencyMode;
+import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+import static com.example.bankcards.entity.Card.CardStatus.ACTIVE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class TransferServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 50;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransferProperties properties;
+
+    private ConcurrencyMode defaultMode;
+
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        defaultMode = properties.getConcurrencyMode();
+        owner = userRepository.save(new User(
+                new ArrayList<>(),
+                new ArrayList<>(),
+                "load-" + UUID.randomUUID().toString().substring(0, 8),
+                "hash"));
+    }
+
+    @AfterEach
+    void restoreMode() {
+        properties.setConcurrencyMode(defaultMode);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConcurrencyMode.class)
+    @DisplayName("Когда сотни переводов одновременно идут через одну карту, тогда итоговые балансы сходятся")
+    void createTransfer_hotCardUnderConcurrentLoad_balancesAddUp(ConcurrencyMode mode) throws Exception {
+        properties.setConcurrencyMode(mode);
+        Card hotCard = createCard(BigDecimal.ZERO);
+        List<Card> sources = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            sources.add(createCard(new BigDecimal("1000.00")));
+        }
+
+        // каждый четвертый перевод идет в обратную сторону, чтобы карта одновременно списывалась и пополнялась
+        RunResult result = hammer((thread, iteration) -> {
+            Card source = sources.get((thread + iteration) % sources.size());
+            return iteration % 4 == 3
+                    ? new TransferRequest(hotCard.getId(), source.getId(), AMOUNT, "hot card out")
+                    : new TransferRequest(source.getId(), hotCard.getId(), AMOUNT, "hot card in");
+        });
+
+        assertThat(result.unexpectedErrors()).isEmpty();
+        assertThat(result.succeeded()).isNotEmpty();
+
+        List<Card> allCards = new ArrayList<>(sources);
+        allCards.add(hotCard);
+        assertBalancesMatch(allCards, result.succeeded());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConcurrencyMode.class)
+    @DisplayName("Когда встречные переводы между двумя картами идут одновременно, тогда нет взаимоблокировок и потерянных обновлений")
+    void createTransfer_oppositeDirections_noDeadlocksOrLostUpdates(ConcurrencyMode mode) throws Exception {
+        properties.setConcurrencyMode(mode);
+        Card first = createCard(new BigDecimal("10000.00"));
+        Card second = createCard(new BigDecimal("10000.00"));
+
+        RunResult result = hammer((thread, iteration) -> thread % 2 == 0
+                ? new TransferRequest(first.getId(), second.getId(), AMOUNT, "forward")
+                : new TransferRequest(second.getId(), first.getId(), AMOUNT, "backward"));
+
+        assertThat(result.unexpectedErrors()).isEmpty();
+        // в OPTIMISTIC перевод может исчерпать попытки и откатиться целиком; в остальных режимах отказов быть не должно
+        if (mode != ConcurrencyMode.OPTIMISTIC) assertThat(result.versionConflicts()).isZero();
+        assertThat(result.succeeded().size() + result.versionConflicts()).isEqualTo(THREADS * TRANSFERS_PER_THREAD);
+        assertBalancesMatch(List.of(first, second), result.succeeded());
+    }
+
+    private RunResult hammer(BiFunction<Integer, Integer, TransferRequest> requestFactory) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<TransferRequest> succeeded = new ConcurrentLinkedQueue<>();
+        Queue<Throwable> unexpectedErrors = new ConcurrentLinkedQueue<>();
+        LongAdder versionConflicts = new LongAdder();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        TransferRequest request = requestFactory.apply(thread, i);
+                        try {
+                            transferService.createTransfer(request, owner.getId());
+                            succeeded.add(request);
+                        } catch (InsufficientFundsException ignored) {
+                            // штатный отказ: на горячей карте еще нет средств
+                        } catch (OptimisticLockingFailureException e) {
+                            versionConflicts.increment();
+                        } catch (Throwable e) {
+                            unexpectedErrors.add(e);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new RunResult(List.copyOf(succeeded), List.copyOf(unexpectedErrors), versionConflicts.intValue());
+    }
+
+    private void assertBalancesMatch(List<Card> cards, List<TransferRequest> succeeded) {
+        Map<Long, BigDecimal> expected = new HashMap<>();
+        BigDecimal initialTotal = BigDecimal.ZERO;
+        for (Card card : cards) {
+            expected.put(card.getId(), card.getBalance());
+            initialTotal = initialTotal.add(card.getBalance());
+        }
+        for (TransferRequest request : succeeded) {
+            expected.merge(request.fromCardId(), request.amount().negate(), BigDecimal::add);
+            expected.merge(request.toCardId(), request.amount(), BigDecimal::add);
+        }
+
+        BigDecimal actualTotal = BigDecimal.ZERO;
+        for (Card card : cards) {
+            BigDecimal actual = cardRepository.findById(card.getId()).orElseThrow().getBalance();
+            assertThat(actual)
+                    .withFailMessage("баланс карты %d: ожидалось %s, фактически %s",
+                            card.getId(), expected.get(card.getId()), actual)
+                    .isEqualByComparingTo(expected.get(card.getId()));
+            actualTotal = actualTotal.add(actual);
+        }
+        assertThat(actualTotal).isEqualByComparingTo(initialTotal);
+    }
+
+    private Card createCard(BigDecimal balance) {
+        String cardNum = String.valueOf(ThreadLocalRandom.current()
+                .nextLong(1_000_000_000_000_000L, 10_000_000_000_000_000L));
+        return cardRepository.save(new Card(cardNum, owner, LocalDate.now().plusYears(1), ACTIVE, balance));
+    }
+
+    private record RunResult(List<TransferRequest> succeeded, List<Throwable> unexpectedErrors, int versionConflicts) {}
+}
@@ -1,5 +1,11 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.RetryProperties;
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.dto.userFuncs.transfer.TransferBatchItemResult;
+import com.example.bankcards.dto.userFuncs.transfer.TransferBatchRequest;
+import com.example.bankcards.dto.userFuncs.transfer.TransferBatchResponse;
+import com.example.bankcards.dto.userFuncs.transfer.TransferHistorySlice;
 import com.example.bankcards.dto.userFuncs.transfer.TransferRequest;
 import com.example.bankcards.dto.userFuncs.transfer.TransferResponse;
 import com.example.bankcards.dto.userFuncs.transfer.TransferSummary;
@@ -9,36 +15,53 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.CardNotActiveException;
 import com.example.bankcards.exception.CardNotFoundExcepion;
 import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.TransferNotFoundException;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.HistoryCursor;
+import com.example.bankcards.util.OptimisticRetryExecutor;
 import com.example.bankcards.util.mappers.CardMapper;
 import com.example.bankcards.util.mappers.TransferMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
+import static com.example.bankcards.config.TransferProperties.ConcurrencyMode.CONDITIONAL_UPDATE;
+import static com.example.bankcards.config.TransferProperties.ConcurrencyMode.OPTIMISTIC;
+import static com.example.bankcards.config.TransferProperties.ConcurrencyMode.PESSIMISTIC;
 import static com.example.bankcards.entity.Card.CardStatus.ACTIVE;
 import static com.example.bankcards.entity.Card.CardStatus.BLOCKED;
 import static com.example.bankcards.entity.Transfer.TransferStatus.COMPLETED;
 import static com.example.bankcards.entity.Transfer.TransferStatus.PENDING;
+import static com.example.bankcards.entity.Transfer.TransferStatus.PROCESSING;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
@@ -65,6 +88,20 @@ class TransferServiceTest {
     @Mock
     private CardRepository cardRepository;
 
+    @Spy
+    private TransferProperties properties = new TransferProperties();
+
+    @Spy
+    private OptimisticRetryExecutor retryExecutor = new OptimisticRetryExecutor();
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    private SimpleMeterRegistry meterRegistry;
+
     @InjectMocks
     private TransferService transferService;
 
@@ -77,6 +114,15 @@ class TransferServiceTest {
 
     @BeforeEach
     void setUp() {
+        properties.setConcurrencyMode(PESSIMISTIC);
+
+        meterRegistry = new SimpleMeterRegistry();
+        RetryProperties retryProperties = new RetryProperties();
+        retryProperties.setInitialBackoff(Duration.ofMillis(1));
+        ReflectionTestUtils.setField(retryExecutor, "transactionOperations", TransactionOperations.withoutTransaction());
+        ReflectionTestUtils.setField(retryExecutor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(retryExecutor, "properties", retryProperties);
+
         testUser = User.builder()
                 .id(1L)
                 .name("testuser")
@@ -137,9 +183,9 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(200L, 1L))
                 .thenReturn(Optional.of(toCard));
         when(cardMapper.mapCardNumFromEntity(fromCard))
                 .thenReturn("************3456");
@@ -164,14 +210,31 @@ class TransferServiceTest {
         assertThat(toCard.getBalance()).isEqualTo(BigDecimal.valueOf(2000));   // 1000 + 1000
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(200L, 1L);
         verify(cardRepository).saveAll(List.of(fromCard, toCard));
         verify(transferMapper).toEntity(validTransferRequest, cardRepository, testUser);
         verify(transferRepository).save(savedTransfer);
         verify(transferMapper).toResponse(savedTransfer);
     }
 
+    @Test
+    @DisplayName("Когда включен секвенсор, тогда перевод передается ему, минуя синхронный путь")
+    void createTransfer_withEngine_delegatesToEngine() {
+        TransferEngine engine = mock(TransferEngine.class);
+        ReflectionTestUtils.setField(transferService, "transferEngine", engine);
+        when(engine.transfer(eq(validTransferRequest), eq(1L), any()))
+                .thenReturn(expectedResponse);
+
+
+        TransferResponse result = transferService.createTransfer(validTransferRequest, 1L);
+
+
+        assertThat(result).isEqualTo(expectedResponse);
+        verify(retryExecutor, never()).execute(any(), any(), any(Supplier.class));
+        verifyNoInteractions(cardRepository, transferRepository, ledgerService);
+    }
+
     @Test
     @DisplayName("Когда создаем перевод с несуществующим пользователем, тогда выбрасывается UserNotFoundException")
     void createTransfer_withNonExistentUser_throwsException() {
@@ -194,7 +257,7 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.empty());
 
 
@@ -203,8 +266,8 @@ class TransferServiceTest {
                 .hasMessageContaining("100");
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository, never()).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository, never()).findByIdAndOwnerIdForUpdate(200L, 1L);
         verifyNoInteractions(transferMapper, transferRepository);
     }
 
@@ -214,12 +277,10 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(200L, 1L))
                 .thenReturn(Optional.empty());
-        when(cardMapper.mapCardNumFromEntity(fromCard))
-                .thenReturn("************3456");
 
 
         assertThatThrownBy(() -> transferService.createTransfer(validTransferRequest, 1L))
@@ -227,8 +288,8 @@ class TransferServiceTest {
                 .hasMessageContaining("200");
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(200L, 1L);
         verifyNoInteractions(transferMapper, transferRepository);
     }
 
@@ -247,7 +308,7 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.of(blockedCard));
         when(cardMapper.mapCardNumFromEntity(blockedCard))
                 .thenReturn("************3456");
@@ -258,8 +319,8 @@ class TransferServiceTest {
                 .hasMessageContaining("3456");
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository, never()).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository, never()).findByIdAndOwnerIdForUpdate(200L, 1L);
         verifyNoInteractions(transferMapper, transferRepository);
     }
 
@@ -278,12 +339,10 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(200L, 1L))
                 .thenReturn(Optional.of(blockedCard));
-        when(cardMapper.mapCardNumFromEntity(fromCard))
-                .thenReturn("************3456");
         when(cardMapper.mapCardNumFromEntity(blockedCard))
                 .thenReturn("************7654");
 
@@ -293,8 +352,8 @@ class TransferServiceTest {
                 .hasMessageContaining("7654");
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(200L, 1L);
         verifyNoInteractions(transferMapper, transferRepository);
     }
 
@@ -311,10 +370,6 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
-                .thenReturn(Optional.of(fromCard));
-        when(cardMapper.mapCardNumFromEntity(fromCard))
-                .thenReturn("************3456");
 
 
         assertThatThrownBy(() -> transferService.createTransfer(sameCardRequest, 1L))
@@ -322,8 +377,7 @@ class TransferServiceTest {
                 .hasMessageContaining("перевод должен осуществляться на разные карты");
 
         verify(userRepository).findById(1L);
-        verify(cardRepository, times(2)).findByIdAndOwnerId(100L, 1L);
-        verifyNoInteractions(transferMapper, transferRepository);
+        verifyNoInteractions(cardRepository, transferMapper, transferRepository);
     }
 
     @Test
@@ -339,9 +393,9 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(200L, 1L))
                 .thenReturn(Optional.of(toCard));
         when(cardMapper.mapCardNumFromEntity(fromCard))
                 .thenReturn("************3456");
@@ -353,8 +407,8 @@ class TransferServiceTest {
                 .hasMessageContaining("3456");
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(200L, 1L);
         verifyNoInteractions(transferMapper, transferRepository);
     }
 
@@ -372,9 +426,9 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(200L, 1L))
                 .thenReturn(Optional.of(toCard));
 
 
@@ -383,8 +437,8 @@ class TransferServiceTest {
                 .hasMessageContaining("сумма перевода должна быть положительным числом");
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(200L, 1L);
         verify(cardRepository, never()).saveAll(any()); // Не должен вызываться
         verifyNoInteractions(transferMapper, transferRepository);
     }
@@ -426,10 +480,10 @@ class TransferServiceTest {
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
 
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.of(fromCard));
 
-        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(200L, 1L))
                 .thenReturn(Optional.of(toCard));
 
         when(cardMapper.mapCardNumFromEntity(any(Card.class)))
@@ -467,14 +521,481 @@ class TransferServiceTest {
 
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(200L, 1L);
         verify(cardRepository).saveAll(List.of(fromCard, toCard));
         verify(transferMapper).toEntity(any(TransferRequest.class), any(), any());
         verify(transferRepository).save(any(Transfer.class));
         verify(transferMapper).toResponse(any(Transfer.class));
     }
 
+    @Test
+    @DisplayName("Когда перевод идет с карты с большим id на карту с меньшим, тогда карты блокируются по возрастанию id")
+    void createTransfer_fromHigherToLowerId_locksCardsInAscendingIdOrder() {
+
+        TransferRequest reverseRequest = new TransferRequest(
+                200L,
+                100L,
+                BigDecimal.valueOf(500),
+                "Обратный перевод"
+        );
+
+        when(userRepository.findById(1L))
+                .thenReturn(Optional.of(testUser));
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
+                .thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndOwnerIdForUpdate(200L, 1L))
+                .thenReturn(Optional.of(toCard));
+        when(transferMapper.toEntity(eq(reverseRequest), eq(cardRepository), eq(testUser)))
+                .thenReturn(savedTransfer);
+        when(transferMapper.toResponse(savedTransfer))
+                .thenReturn(expectedResponse);
+
+
+        transferService.createTransfer(reverseRequest, 1L);
+
+
+        InOrder lockOrder = inOrder(cardRepository);
+        lockOrder.verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        lockOrder.verify(cardRepository).findByIdAndOwnerIdForUpdate(200L, 1L);
+
+        assertThat(toCard.getBalance()).isEqualTo(BigDecimal.valueOf(500));
+        assertThat(fromCard.getBalance()).isEqualTo(BigDecimal.valueOf(5500));
+    }
+
+    @Test
+    @DisplayName("Когда перевод выполняется условным UPDATE, тогда карты не загружаются, а списание идет раньше зачисления")
+    void createTransfer_conditionalUpdate_debitsAndCreditsWithoutLoadingCards() {
+        properties.setConcurrencyMode(CONDITIONAL_UPDATE);
+
+        when(cardRepository.debitIfSufficient(100L, 1L, BigDecimal.valueOf(1000)))
+                .thenReturn(Optional.of("1234567890123456"));
+        when(cardRepository.creditIfActive(200L, 1L, BigDecimal.valueOf(1000)))
+                .thenReturn(Optional.of("9876543210987654"));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(transferMapper.toEntity(eq(validTransferRequest), eq(cardRepository), eq(testUser)))
+                .thenReturn(savedTransfer);
+        when(transferMapper.toResponse(savedTransfer, "1234567890123456", "9876543210987654"))
+                .thenReturn(expectedResponse);
+
+
+        TransferResponse result = transferService.createTransfer(validTransferRequest, 1L);
+
+
+        assertThat(result).isEqualTo(expectedResponse);
+
+        InOrder updateOrder = inOrder(cardRepository);
+        updateOrder.verify(cardRepository).debitIfSufficient(100L, 1L, BigDecimal.valueOf(1000));
+        updateOrder.verify(cardRepository).creditIfActive(200L, 1L, BigDecimal.valueOf(1000));
+        verify(cardRepository, never()).findByIdAndOwnerId(any(), any());
+        verify(cardRepository, never()).saveAll(any());
+        verify(userRepository, never()).findById(any());
+        verify(transferRepository).save(savedTransfer);
+        verify(ledgerService).record(savedTransfer);
+        verify(outboxService).record(savedTransfer);
+    }
+
+    @Test
+    @DisplayName("Когда условный перевод идет на карту с меньшим id, тогда зачисление выполняется раньше списания")
+    void createTransfer_conditionalUpdateToLowerId_creditsFirst() {
+        properties.setConcurrencyMode(CONDITIONAL_UPDATE);
+
+        TransferRequest reverseRequest = new TransferRequest(
+                200L,
+                100L,
+                BigDecimal.valueOf(500),
+                "Обратный перевод"
+        );
+
+        when(cardRepository.creditIfActive(100L, 1L, BigDecimal.valueOf(500)))
+                .thenReturn(Optional.of("1234567890123456"));
+        when(cardRepository.debitIfSufficient(200L, 1L, BigDecimal.valueOf(500)))
+                .thenReturn(Optional.of("9876543210987654"));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(transferMapper.toEntity(eq(reverseRequest), eq(cardRepository), eq(testUser)))
+                .thenReturn(savedTransfer);
+
+
+        transferService.createTransfer(reverseRequest, 1L);
+
+
+        InOrder updateOrder = inOrder(cardRepository);
+        updateOrder.verify(cardRepository).creditIfActive(100L, 1L, BigDecimal.valueOf(500));
+        updateOrder.verify(cardRepository).debitIfSufficient(200L, 1L, BigDecimal.valueOf(500));
+        verify(transferMapper).toResponse(savedTransfer, "9876543210987654", "1234567890123456");
+    }
+
+    @Test
+    @DisplayName("Когда условное списание не затронуло строк из-за баланса, тогда выбрасывается InsufficientFundsException")
+    void createTransfer_conditionalUpdateInsufficientFunds_throwsException() {
+        properties.setConcurrencyMode(CONDITIONAL_UPDATE);
+
+        TransferRequest largeAmountRequest = new TransferRequest(
+                100L,
+                200L,
+                BigDecimal.valueOf(10000),
+                "Large transfer"
+        );
+
+        when(cardRepository.debitIfSufficient(100L, 1L, BigDecimal.valueOf(10000)))
+                .thenReturn(Optional.empty());
+        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+                .thenReturn(Optional.of(fromCard));
+        when(cardMapper.mapCardNumFromEntity(fromCard))
+                .thenReturn("************3456");
+
+
+        assertThatThrownBy(() -> transferService.createTransfer(largeAmountRequest, 1L))
+                .isInstanceOf(InsufficientFundsException.class)
+                .hasMessageContaining("3456");
+
+        verify(cardRepository, never()).creditIfActive(any(), any(), any());
+        verifyNoInteractions(transferMapper, transferRepository, ledgerService);
+    }
+
+    @Test
+    @DisplayName("Когда списание отклонено, а карту тут же пополнили, тогда списание повторяется и перевод проходит")
+    void createTransfer_conditionalUpdateCreditedAfterRejection_retriesDebit() {
+        properties.setConcurrencyMode(CONDITIONAL_UPDATE);
+
+        when(cardRepository.debitIfSufficient(100L, 1L, BigDecimal.valueOf(1000)))
+                .thenReturn(Optional.empty(), Optional.of("1234567890123456"));
+        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+                .thenReturn(Optional.of(fromCard));
+        when(cardRepository.creditIfActive(200L, 1L, BigDecimal.valueOf(1000)))
+                .thenReturn(Optional.of("9876543210987654"));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(transferMapper.toEntity(eq(validTransferRequest), eq(cardRepository), eq(testUser)))
+                .thenReturn(savedTransfer);
+        when(transferMapper.toResponse(savedTransfer, "1234567890123456", "9876543210987654"))
+                .thenReturn(expectedResponse);
+
+
+        TransferResponse result = transferService.createTransfer(validTransferRequest, 1L);
+
+
+        assertThat(result).isEqualTo(expectedResponse);
+        verify(cardRepository, times(2)).debitIfSufficient(100L, 1L, BigDecimal.valueOf(1000));
+        verify(transferRepository).save(savedTransfer);
+    }
+
+    @Test
+    @DisplayName("Когда списание раз за разом отклоняется при достаточном балансе, тогда выбрасывается InsufficientFundsException, а не 400")
+    void createTransfer_conditionalUpdateBalanceKeepsChanging_throwsInsufficientFunds() {
+        properties.setConcurrencyMode(CONDITIONAL_UPDATE);
+
+        when(cardRepository.debitIfSufficient(100L, 1L, BigDecimal.valueOf(1000)))
+                .thenReturn(Optional.empty());
+        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+                .thenReturn(Optional.of(fromCard));
+        when(cardMapper.mapCardNumFromEntity(fromCard))
+                .thenReturn("************3456");
+
+
+        assertThatThrownBy(() -> transferService.createTransfer(validTransferRequest, 1L))
+                .isInstanceOf(InsufficientFundsException.class);
+
+        verify(cardRepository, times(3)).debitIfSufficient(100L, 1L, BigDecimal.valueOf(1000));
+        verify(cardRepository, never()).creditIfActive(any(), any(), any());
+        verifyNoInteractions(transferRepository, ledgerService);
+    }
+
+    @Test
+    @DisplayName("Когда условное зачисление не затронуло строк из-за блокировки карты, тогда выбрасывается CardNotActiveException")
+    void createTransfer_conditionalUpdateInactiveToCard_throwsException() {
+        properties.setConcurrencyMode(CONDITIONAL_UPDATE);
+
+        Card blockedCard = Card.builder()
+                .id(200L)
+                .cardNum("9876543210987654")
+                .owner(testUser)
+                .balance(BigDecimal.valueOf(1000))
+                .status(BLOCKED)
+                .activeTill(LocalDate.now().plusDays(30))
+                .build();
+
+        when(cardRepository.debitIfSufficient(100L, 1L, BigDecimal.valueOf(1000)))
+                .thenReturn(Optional.of("1234567890123456"));
+        when(cardRepository.creditIfActive(200L, 1L, BigDecimal.valueOf(1000)))
+                .thenReturn(Optional.empty());
+        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+                .thenReturn(Optional.of(blockedCard));
+        when(cardMapper.mapCardNumFromEntity(blockedCard))
+                .thenReturn("************7654");
+
+
+        assertThatThrownBy(() -> transferService.createTransfer(validTransferRequest, 1L))
+                .isInstanceOf(CardNotActiveException.class)
+                .hasMessageContaining("7654");
+
+        verifyNoInteractions(transferMapper, transferRepository);
+    }
+
+    @Test
+    @DisplayName("Когда перевод идет с проверкой версии, тогда карты читаются без блокировки и сразу сбрасываются в базу")
+    void createTransfer_optimistic_readsCardsWithoutLocks() {
+        properties.setConcurrencyMode(OPTIMISTIC);
+
+        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+                .thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+                .thenReturn(Optional.of(toCard));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(transferMapper.toEntity(eq(validTransferRequest), eq(cardRepository), eq(testUser)))
+                .thenReturn(savedTransfer);
+        when(transferMapper.toResponse(savedTransfer))
+                .thenReturn(expectedResponse);
+
+
+        TransferResponse result = transferService.createTransfer(validTransferRequest, 1L);
+
+
+        assertThat(result).isEqualTo(expectedResponse);
+        assertThat(fromCard.getBalance()).isEqualTo(BigDecimal.valueOf(4000));
+        assertThat(toCard.getBalance()).isEqualTo(BigDecimal.valueOf(2000));
+
+        verify(cardRepository).saveAllAndFlush(List.of(fromCard, toCard));
+        verify(cardRepository, never()).findByIdAndOwnerIdForUpdate(any(), any());
+        verify(transferRepository).save(savedTransfer);
+    }
+
+    @Test
+    @DisplayName("Когда версия карты изменилась во время перевода, тогда перевод повторяется и повтор учитывается в метриках")
+    void createTransfer_optimisticVersionConflict_retriesTransfer() {
+        properties.setConcurrencyMode(OPTIMISTIC);
+
+        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+                .thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+                .thenReturn(Optional.of(toCard));
+        when(cardRepository.<Card>saveAllAndFlush(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 200L))
+                .thenReturn(List.of(fromCard, toCard));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(transferMapper.toEntity(eq(validTransferRequest), eq(cardRepository), eq(testUser)))
+                .thenReturn(savedTransfer);
+        when(transferMapper.toResponse(savedTransfer))
+                .thenReturn(expectedResponse);
+
+
+        TransferResponse result = transferService.createTransfer(validTransferRequest, 1L);
+
+
+        assertThat(result).isEqualTo(expectedResponse);
+        verify(cardRepository, times(2)).findByIdAndOwnerId(100L, 1L);
+        verify(transferRepository, times(1)).save(savedTransfer);
+        assertThat(meterRegistry.get(OptimisticRetryExecutor.RETRIES_METRIC)
+                .tags("operation", "transfer", "card", "200")
+                .counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Когда выполняем пакет переводов, тогда карты блокируются одним запросом, а переводы сохраняются вместе")
+    void createTransferBatch_validItems_locksCardsOnceAndSavesAllTransfers() {
+        TransferRequest back = new TransferRequest(200L, 100L, BigDecimal.valueOf(300), "Обратно");
+        TransferBatchRequest batch = new TransferBatchRequest(List.of(validTransferRequest, back));
+        Transfer backTransfer = Transfer.builder().id(2L).build();
+        TransferResponse backResponse = new TransferResponse(2L, null, null, BigDecimal.valueOf(300),
+                COMPLETED.toString(), "Обратно", null, null);
+
+        when(cardRepository.findAllByIdInAndOwnerIdForUpdate(Set.of(100L, 200L), 1L))
+                .thenReturn(List.of(fromCard, toCard));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(transferMapper.toEntity(validTransferRequest, cardRepository, testUser))
+                .thenReturn(savedTransfer);
+        when(transferMapper.toEntity(back, cardRepository, testUser))
+                .thenReturn(backTransfer);
+        when(transferMapper.toResponse(savedTransfer))
+                .thenReturn(expectedResponse);
+        when(transferMapper.toResponse(backTransfer))
+                .thenReturn(backResponse);
+
+
+        TransferBatchResponse result = transferService.createTransferBatch(batch, 1L);
+
+
+        assertThat(result.completed()).isEqualTo(2);
+        assertThat(result.rejected()).isZero();
+        assertThat(result.results()).extracting(TransferBatchItemResult::transfer)
+                .containsExactly(expectedResponse, backResponse);
+        assertThat(fromCard.getBalance()).isEqualTo(BigDecimal.valueOf(4300));
+        assertThat(toCard.getBalance()).isEqualTo(BigDecimal.valueOf(1700));
+
+        verify(cardRepository, times(1)).findAllByIdInAndOwnerIdForUpdate(any(), eq(1L));
+        verify(transferRepository).saveAll(List.of(savedTransfer, backTransfer));
+        verify(ledgerService).recordAll(List.of(savedTransfer, backTransfer));
+        verify(outboxService).recordAll(List.of(savedTransfer, backTransfer));
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Когда часть переводов пакета не проходит проверки, тогда отклоняются только они")
+    void createTransferBatch_invalidItems_rejectsOnlyThem() {
+        TransferRequest tooLarge = new TransferRequest(100L, 200L, BigDecimal.valueOf(4500), "Слишком много");
+        TransferRequest unknownCard = new TransferRequest(100L, 999L, BigDecimal.valueOf(10), "Чужая карта");
+        TransferBatchRequest batch = new TransferBatchRequest(List.of(validTransferRequest, tooLarge, unknownCard));
+
+        when(cardRepository.findAllByIdInAndOwnerIdForUpdate(Set.of(100L, 200L, 999L), 1L))
+                .thenReturn(List.of(fromCard, toCard));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(cardMapper.mapCardNumFromEntity(fromCard))
+                .thenReturn("**** **** **** 3456");
+        when(transferMapper.toEntity(validTransferRequest, cardRepository, testUser))
+                .thenReturn(savedTransfer);
+        when(transferMapper.toResponse(savedTransfer))
+                .thenReturn(expectedResponse);
+
+
+        TransferBatchResponse result = transferService.createTransferBatch(batch, 1L);
+
+
+        assertThat(result.completed()).isEqualTo(1);
+        assertThat(result.rejected()).isEqualTo(2);
+        assertThat(result.results()).extracting(TransferBatchItemResult::status)
+                .containsExactly("COMPLETED", "REJECTED", "REJECTED");
+        // второй перевод проверяется по балансу, уже уменьшенному первым
+        assertThat(result.results().get(1).error()).contains("3456", "4000");
+        assertThat(result.results().get(2).error()).contains("999");
+        assertThat(fromCard.getBalance()).isEqualTo(BigDecimal.valueOf(4000));
+
+        verify(transferRepository).saveAll(List.of(savedTransfer));
+    }
+
+    @Test
+    @DisplayName("Когда перевод принимается асинхронно, тогда сохраняется PENDING-перевод без изменения балансов")
+    void submitTransfer_validRequest_savesPendingTransfer() {
+        Transfer pending = Transfer.builder().id(5L).status(PENDING).build();
+
+        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+                .thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+                .thenReturn(Optional.of(toCard));
+        when(userRepository.getReferenceById(1L))
+                .thenReturn(testUser);
+        when(transferMapper.toPendingEntity(validTransferRequest, cardRepository, testUser))
+                .thenReturn(pending);
+
+
+        transferService.submitTransfer(validTransferRequest, 1L);
+
+
+        verify(transferRepository).save(pending);
+        verify(transferMapper).toResponse(pending);
+        verify(cardRepository, never()).debitIfSufficient(any(), any(), any());
+        verify(cardRepository, never()).creditIfActive(any(), any(), any());
+        assertThat(fromCard.getBalance()).isEqualTo(BigDecimal.valueOf(5000));
+    }
+
+    @Test
+    @DisplayName("Когда асинхронный перевод ссылается на чужую карту, тогда он не ставится в очередь")
+    void submitTransfer_foreignCard_throwsException() {
+
+        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+                .thenReturn(Optional.of(fromCard));
+        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+                .thenReturn(Optional.empty());
+
+
+        assertThatThrownBy(() -> transferService.submitTransfer(validTransferRequest, 1L))
+                .isInstanceOf(CardNotFoundExcepion.class)
+                .hasMessageContaining("200");
+
+        verifyNoInteractions(transferRepository);
+    }
+
+    @Test
+    @DisplayName("Когда воркер обрабатывает перевод в PROCESSING, тогда балансы меняются и перевод завершается")
+    void processPendingTransfer_processingTransfer_completesIt() {
+        Transfer processing = Transfer.builder()
+                .id(5L)
+                .fromCard(fromCard)
+                .toCard(toCard)
+                .amount(BigDecimal.valueOf(1000))
+                .initiatedBy(testUser)
+                .status(PROCESSING)
+                .processedAt(LocalDateTime.now())
+                .build();
+
+        when(transferRepository.findByIdForUpdate(5L))
+                .thenReturn(Optional.of(processing));
+        when(cardRepository.debitIfSufficient(100L, 1L, BigDecimal.valueOf(1000)))
+                .thenReturn(Optional.of("1234567890123456"));
+        when(cardRepository.creditIfActive(200L, 1L, BigDecimal.valueOf(1000)))
+                .thenReturn(Optional.of("9876543210987654"));
+
+
+        transferService.processPendingTransfer(5L);
+
+
+        assertThat(processing.getStatus()).isEqualTo(COMPLETED);
+        assertThat(processing.getCompletedAt()).isNotNull();
+        verify(ledgerService).record(processing);
+        verify(outboxService).record(processing);
+    }
+
+    @Test
+    @DisplayName("Когда перевод уже обработан другим воркером, тогда повторной обработки нет")
+    void processPendingTransfer_alreadyCompleted_doesNothing() {
+        Transfer completed = Transfer.builder().id(5L).status(COMPLETED).build();
+
+        when(transferRepository.findByIdForUpdate(5L))
+                .thenReturn(Optional.of(completed));
+
+
+        transferService.processPendingTransfer(5L);
+
+
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    @DisplayName("Когда асинхронный перевод отклонен, тогда вместе с FAILED пишется событие outbox")
+    void failPendingTransfer_processingTransfer_recordsFailedEvent() {
+
+        when(transferRepository.markFailed(5L, "недостаточно средств"))
+                .thenReturn(1);
+
+
+        transferService.failPendingTransfer(5L, "недостаточно средств");
+
+
+        verify(outboxService).recordFailed(5L);
+    }
+
+    @Test
+    @DisplayName("Когда перевод уже не в PROCESSING, тогда событие об отказе не пишется")
+    void failPendingTransfer_alreadyFinished_recordsNothing() {
+
+        when(transferRepository.markFailed(5L, "недостаточно средств"))
+                .thenReturn(0);
+
+
+        transferService.failPendingTransfer(5L, "недостаточно средств");
+
+
+        verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    @DisplayName("Когда запрашиваем состояние чужого перевода, тогда выбрасывается TransferNotFoundException")
+    void getTransferStatus_foreignTransfer_throwsException() {
+
+        when(transferRepository.findByIdAndInitiatedById(5L, 1L))
+                .thenReturn(Optional.empty());
+
+
+        assertThatThrownBy(() -> transferService.getTransferStatus(5L, 1L))
+                .isInstanceOf(TransferNotFoundException.class)
+                .hasMessageContaining("5");
+    }
+
     @Test
     @DisplayName("Когда получаем историю переводов с пагинацией, тогда возвращается страница")
     void getTransferHistory_withPageable_returnsPage() {
@@ -529,6 +1050,58 @@ class TransferServiceTest {
         verifyNoInteractions(transferMapper);
     }
 
+    @Test
+    @DisplayName("Когда запрашиваем историю с пустым курсором, тогда возвращается начало истории и курсор продолжения")
+    void getTransferHistory_emptyCursor_returnsFirstSliceWithNextCursor() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 15, 14, 30, 0, 123_456_000);
+        Transfer last = Transfer.builder().id(456L).createdAt(createdAt).build();
+        TransferSummary summary = new TransferSummary("************3456", "************7654",
+                BigDecimal.valueOf(1000), COMPLETED.toString(), createdAt, "какой-то перевод");
+
+        when(transferRepository.findHistoryFirst(1L, PageRequest.ofSize(1)))
+                .thenReturn(new SliceImpl<>(List.of(last), PageRequest.ofSize(1), true));
+        when(transferMapper.toSummary(last))
+                .thenReturn(summary);
+
+
+        TransferHistorySlice result = transferService.getTransferHistory("", 1, 1L);
+
+
+        assertThat(result.content()).containsExactly(summary);
+        assertThat(result.hasNext()).isTrue();
+        assertThat(HistoryCursor.decode(result.nextCursor())).isEqualTo(new HistoryCursor(createdAt, 456L));
+        verify(transferRepository, never()).findAllByInitiatedById(any(), any());
+    }
+
+    @Test
+    @DisplayName("Когда передаем курсор, тогда история продолжается с его позиции без курсора в последней части")
+    void getTransferHistory_withCursor_continuesAfterPosition() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 15, 14, 30);
+        String cursor = new HistoryCursor(createdAt, 456L).encode();
+
+        when(transferRepository.findHistoryAfter(1L, createdAt, 456L, PageRequest.ofSize(20)))
+                .thenReturn(new SliceImpl<>(List.of(), PageRequest.ofSize(20), false));
+
+
+        TransferHistorySlice result = transferService.getTransferHistory(cursor, 20, 1L);
+
+
+        assertThat(result.content()).isEmpty();
+        assertThat(result.hasNext()).isFalse();
+        assertThat(result.nextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Когда курсор поврежден, тогда выбрасывается IllegalStateException")
+    void getTransferHistory_malformedCursor_throwsException() {
+
+        assertThatThrownBy(() -> transferService.getTransferHistory("не-курсор", 20, 1L))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("курсор");
+
+        verifyNoInteractions(transferRepository);
+    }
+
     @Test
     @DisplayName("Когда карта отправителя не принадлежит пользователю, тогда выбрасывается CardNotFoundException")
     void createTransfer_fromCardNotOwnedByUser_throwsException() {
@@ -542,7 +1115,7 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.empty());
 
 
@@ -551,8 +1124,8 @@ class TransferServiceTest {
                 .hasMessageContaining("100");
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository, never()).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository, never()).findByIdAndOwnerIdForUpdate(200L, 1L);
         verifyNoInteractions(transferMapper, transferRepository);
     }
 
@@ -562,20 +1135,18 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(200L, 1L))
                 .thenReturn(Optional.empty());
-        when(cardMapper.mapCardNumFromEntity(fromCard))
-                .thenReturn("************3456");
 
         assertThatThrownBy(() -> transferService.createTransfer(validTransferRequest, 1L))
                 .isInstanceOf(CardNotFoundExcepion.class)
                 .hasMessageContaining("200");
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(200L, 1L);
         verifyNoInteractions(transferMapper, transferRepository);
     }
 
@@ -592,9 +1163,9 @@ class TransferServiceTest {
 
         when(userRepository.findById(1L))
                 .thenReturn(Optional.of(testUser));
-        when(cardRepository.findByIdAndOwnerId(100L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(100L, 1L))
                 .thenReturn(Optional.of(fromCard));
-        when(cardRepository.findByIdAndOwnerId(200L, 1L))
+        when(cardRepository.findByIdAndOwnerIdForUpdate(200L, 1L))
                 .thenReturn(Optional.of(toCard));
 
 
@@ -603,8 +1174,8 @@ class TransferServiceTest {
                 .hasMessageContaining("сумма перевода должна быть положительным числом");
 
         verify(userRepository).findById(1L);
-        verify(cardRepository).findByIdAndOwnerId(100L, 1L);
-        verify(cardRepository).findByIdAndOwnerId(200L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(100L, 1L);
+        verify(cardRepository).findByIdAndOwnerIdForUpdate(200L, 1L);
         verifyNoInteractions(transferMapper, transferRepository);
     }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.TransferProperties;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.repository.TransferRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class TransferWorkerTest {
+
+    @Mock
+    private TransferService transferService;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Spy
+    private TransferProperties properties = new TransferProperties();
+
+    @InjectMocks
+    private TransferWorker transferWorker;
+
+    @Test
+    @DisplayName("Когда воркер забрал переводы, тогда каждый обрабатывается отдельно")
+    void pollOnce_claimedTransfers_processesEach() {
+
+        when(transferRepository.claimPending(any(LocalDateTime.class), eq(50)))
+                .thenReturn(List.of(1L, 2L));
+
+
+        int processed = transferWorker.pollOnce();
+
+
+        assertThat(processed).isEqualTo(2);
+        verify(transferService).processPendingTransfer(1L);
+        verify(transferService).processPendingTransfer(2L);
+    }
+
+    @Test
+    @DisplayName("Когда перевод отклонен при обработке, тогда он помечается FAILED с причиной")
+    void process_rejectedTransfer_marksFailed() {
+
+        doThrow(new InsufficientFundsException())
+                .when(transferService).processPendingTransfer(7L);
+
+
+        transferWorker.process(7L);
+
+
+        verify(transferService).failPendingTransfer(7L, "недостаточно средств для перевода");
+    }
+
+    @Test
+    @DisplayName("Когда баланс изменился во время обработки, тогда перевод возвращается в очередь, а не помечается FAILED")
+    void process_balanceRace_releasesClaim() {
+
+        doThrow(new IllegalStateException("баланс карты изменился во время перевода, повторите попытку"))
+                .when(transferService).processPendingTransfer(7L);
+
+
+        transferWorker.process(7L);
+
+
+        verify(transferRepository).releaseClaim(7L);
+        verify(transferService, never()).failPendingTransfer(any(), anyString());
+    }
+
+    @Test
+    @DisplayName("Когда один перевод пачки падает из-за инфраструктуры, тогда остальные все равно обрабатываются")
+    void pollOnce_infrastructureFailure_continuesWithBatch() {
+
+        when(transferRepository.claimPending(any(LocalDateTime.class), eq(50)))
+                .thenReturn(List.of(1L, 2L, 3L));
+        doThrow(new QueryTimeoutException("lock timeout"))
+                .when(transferService).processPendingTransfer(2L);
+
+
+        int processed = transferWorker.pollOnce();
+
+
+        assertThat(processed).isEqualTo(3);
+        verify(transferService).processPendingTransfer(3L);
+        verify(transferService, never()).failPendingTransfer(any(), anyString());
+        verify(transferRepository, never()).releaseClaim(any());
+    }
+
+    @Test
+    @DisplayName("Когда обработка падает из-за инфраструктуры, тогда перевод не помечается FAILED и будет забран повторно")
+    void process_infrastructureFailure_leavesTransferProcessing() {
+
+        doThrow(new RuntimeException("connection reset"))
+                .when(transferService).processPendingTransfer(7L);
+
+
+        assertThatThrownBy(() -> transferWorker.process(7L))
+                .isInstanceOf(RuntimeException.class);
+
+        verify(transferService, never()).failPendingTransfer(any(), anyString());
+    }
+}
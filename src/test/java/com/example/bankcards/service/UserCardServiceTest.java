@@ -8,6 +8,9 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.CardNotActiveException;
 import com.example.bankcards.exception.CardNotFoundExcepion;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.projection.CardRow;
+import com.example.bankcards.config.RetryProperties;
+import com.example.bankcards.util.OptimisticRetryExecutor;
 import com.example.bankcards.util.mappers.CardMapper;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -15,10 +18,14 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -53,6 +60,9 @@ class UserCardServiceTest {
     @Mock
     private CardMapper cardMapper;
 
+    @Spy
+    private OptimisticRetryExecutor retryExecutor = new OptimisticRetryExecutor();
+
     @InjectMocks
     private UserCardService userCardService;
 
@@ -60,10 +70,15 @@ class UserCardServiceTest {
     private Card activeCard;
     private Card blockedCard;
     private Card expiredCard;
+    private CardRow activeRow;
+    private CardRow blockedRow;
     private CardDataUserResponse cardUserResponse;
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(retryExecutor, "transactionOperations", TransactionOperations.withoutTransaction());
+        ReflectionTestUtils.setField(retryExecutor, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(retryExecutor, "properties", new RetryProperties());
         testUser = User.builder()
                 .id(1L)
                 .name("testuser")
@@ -97,6 +112,11 @@ class UserCardServiceTest {
                 .activeTill(LocalDate.now().minusDays(1))
                 .build();
 
+        activeRow = new CardRow(100L, "1234567890123456", LocalDate.now().plusDays(30), ACTIVE,
+                BigDecimal.valueOf(1000), 1L, "testuser");
+        blockedRow = new CardRow(200L, "9876543210987654", LocalDate.now().plusDays(30), BLOCKED,
+                BigDecimal.valueOf(500), 1L, "testuser");
+
         cardUserResponse = new CardDataUserResponse(
                 "************3456",
                 LocalDate.now().plusDays(30),
@@ -153,7 +173,8 @@ class UserCardServiceTest {
 
 
         verify(cardRepository).findById(100L);
-        verify(cardRepository).updateStatusById(100L, BLOCKED);
+        assertThat(activeCard.getStatus()).isEqualTo(BLOCKED);
+        verify(cardRepository).saveAndFlush(activeCard);
     }
 
     @Test
@@ -168,7 +189,7 @@ class UserCardServiceTest {
                 .isInstanceOf(CardNotActiveException.class);
 
         verify(cardRepository).findById(200L);
-        verify(cardRepository, never()).updateStatusById(eq(200L), any(CardStatus.class));
+        verify(cardRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -182,7 +203,7 @@ class UserCardServiceTest {
                 .isInstanceOf(CardNotFoundExcepion.class);
 
         verify(cardRepository).findById(999L);
-        verify(cardRepository, never()).updateStatusById(any(Long.class), any(CardStatus.class));
+        verify(cardRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -199,12 +220,12 @@ class UserCardServiceTest {
                 .build();
 
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> cardPage = new PageImpl<>(List.of(activeCard), pageable, 1);
+        Page<CardRow> cardPage = new PageImpl<>(List.of(activeRow), pageable, 1);
 
         // Здесь мы не мокаем CardSpecifications, а просто проверяем вызов репозитория
-        when(cardRepository.findAll(any(Specification.class), eq(pageable)))
+        when(cardRepository.findRows(any(Specification.class), eq(pageable)))
                 .thenReturn(cardPage);
-        when(cardMapper.toUserDto(activeCard))
+        when(cardMapper.toUserDto(activeRow))
                 .thenReturn(cardUserResponse);
 
 
@@ -214,8 +235,8 @@ class UserCardServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getContent()).hasSize(1);
 
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
-        verify(cardMapper).toUserDto(activeCard);
+        verify(cardRepository).findRows(any(Specification.class), eq(pageable));
+        verify(cardMapper).toUserDto(activeRow);
     }
 
     @Test
@@ -225,13 +246,13 @@ class UserCardServiceTest {
         Long userId = 1L;
         var cardFilter = CardFilter.builder().build();
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> cardPage = new PageImpl<>(List.of(activeCard, blockedCard), pageable, 2);
+        Page<CardRow> cardPage = new PageImpl<>(List.of(activeRow, blockedRow), pageable, 2);
 
-        when(cardRepository.findAll(any(Specification.class), eq(pageable)))
+        when(cardRepository.findRows(any(Specification.class), eq(pageable)))
                 .thenReturn(cardPage);
-        when(cardMapper.toUserDto(activeCard))
+        when(cardMapper.toUserDto(activeRow))
                 .thenReturn(cardUserResponse);
-        when(cardMapper.toUserDto(blockedCard))
+        when(cardMapper.toUserDto(blockedRow))
                 .thenReturn(new CardDataUserResponse(
                         "************7654",
                         LocalDate.now().plusDays(30),
@@ -246,9 +267,9 @@ class UserCardServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getContent()).hasSize(2);
 
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
-        verify(cardMapper).toUserDto(activeCard);
-        verify(cardMapper).toUserDto(blockedCard);
+        verify(cardRepository).findRows(any(Specification.class), eq(pageable));
+        verify(cardMapper).toUserDto(activeRow);
+        verify(cardMapper).toUserDto(blockedRow);
     }
 
     @Test
@@ -259,11 +280,11 @@ class UserCardServiceTest {
         CardFilter filter = CardFilter.builder().build();
 
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> cardPage = new PageImpl<>(List.of(activeCard), pageable, 1);
+        Page<CardRow> cardPage = new PageImpl<>(List.of(activeRow), pageable, 1);
 
-        when(cardRepository.findAll(any(Specification.class), eq(pageable)))
+        when(cardRepository.findRows(any(Specification.class), eq(pageable)))
                 .thenReturn(cardPage);
-        when(cardMapper.toUserDto(activeCard))
+        when(cardMapper.toUserDto(activeRow))
                 .thenReturn(cardUserResponse);
 
 
@@ -272,7 +293,7 @@ class UserCardServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getContent()).hasSize(1);
 
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
+        verify(cardRepository).findRows(any(Specification.class), eq(pageable));
     }
 
     @Test
@@ -290,11 +311,11 @@ class UserCardServiceTest {
                 .build();
 
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> cardPage = new PageImpl<>(List.of(activeCard), pageable, 1);
+        Page<CardRow> cardPage = new PageImpl<>(List.of(activeRow), pageable, 1);
 
-        when(cardRepository.findAll(any(Specification.class), eq(pageable)))
+        when(cardRepository.findRows(any(Specification.class), eq(pageable)))
                 .thenReturn(cardPage);
-        when(cardMapper.toUserDto(activeCard))
+        when(cardMapper.toUserDto(activeRow))
                 .thenReturn(cardUserResponse);
 
 
@@ -304,8 +325,8 @@ class UserCardServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getContent()).hasSize(1);
 
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
-        verify(cardMapper).toUserDto(activeCard);
+        verify(cardRepository).findRows(any(Specification.class), eq(pageable));
+        verify(cardMapper).toUserDto(activeRow);
     }
 
     @Test
@@ -318,11 +339,11 @@ class UserCardServiceTest {
                 .build();
 
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> cardPage = new PageImpl<>(List.of(activeCard), pageable, 1);
+        Page<CardRow> cardPage = new PageImpl<>(List.of(activeRow), pageable, 1);
 
-        when(cardRepository.findAll(any(Specification.class), eq(pageable)))
+        when(cardRepository.findRows(any(Specification.class), eq(pageable)))
                 .thenReturn(cardPage);
-        when(cardMapper.toUserDto(activeCard))
+        when(cardMapper.toUserDto(activeRow))
                 .thenReturn(cardUserResponse);
 
         Page<CardDataUserResponse> result = userCardService.searchCardsWithNumber(userId, searchRequest, pageable);
@@ -331,7 +352,7 @@ class UserCardServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getContent()).hasSize(1);
 
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
+        verify(cardRepository).findRows(any(Specification.class), eq(pageable));
     }
 
     @Test
@@ -345,11 +366,11 @@ class UserCardServiceTest {
                 .build();
 
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> cardPage = new PageImpl<>(List.of(activeCard), pageable, 1);
+        Page<CardRow> cardPage = new PageImpl<>(List.of(activeRow), pageable, 1);
 
-        when(cardRepository.findAll(any(Specification.class), eq(pageable)))
+        when(cardRepository.findRows(any(Specification.class), eq(pageable)))
                 .thenReturn(cardPage);
-        when(cardMapper.toUserDto(activeCard))
+        when(cardMapper.toUserDto(activeRow))
                 .thenReturn(cardUserResponse);
 
 
@@ -359,7 +380,7 @@ class UserCardServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getContent()).hasSize(1);
 
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
+        verify(cardRepository).findRows(any(Specification.class), eq(pageable));
     }
 
     @Test
@@ -373,11 +394,11 @@ class UserCardServiceTest {
                 .build();
 
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> cardPage = new PageImpl<>(List.of(activeCard), pageable, 1);
+        Page<CardRow> cardPage = new PageImpl<>(List.of(activeRow), pageable, 1);
 
-        when(cardRepository.findAll(any(Specification.class), eq(pageable)))
+        when(cardRepository.findRows(any(Specification.class), eq(pageable)))
                 .thenReturn(cardPage);
-        when(cardMapper.toUserDto(activeCard))
+        when(cardMapper.toUserDto(activeRow))
                 .thenReturn(cardUserResponse);
 
 
@@ -387,7 +408,7 @@ class UserCardServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getContent()).hasSize(1);
 
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
+        verify(cardRepository).findRows(any(Specification.class), eq(pageable));
     }
 
     @Test
@@ -402,7 +423,7 @@ class UserCardServiceTest {
                 .isInstanceOf(CardNotActiveException.class);
 
         verify(cardRepository).findById(300L);
-        verify(cardRepository, never()).updateStatusById(eq(300L), any(CardStatus.class));
+        verify(cardRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -415,11 +436,11 @@ class UserCardServiceTest {
                 .build();
 
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> cardPage = new PageImpl<>(List.of(blockedCard), pageable, 1);
+        Page<CardRow> cardPage = new PageImpl<>(List.of(blockedRow), pageable, 1);
 
-        when(cardRepository.findAll(any(Specification.class), eq(pageable)))
+        when(cardRepository.findRows(any(Specification.class), eq(pageable)))
                 .thenReturn(cardPage);
-        when(cardMapper.toUserDto(blockedCard))
+        when(cardMapper.toUserDto(blockedRow))
                 .thenReturn(new CardDataUserResponse(
                         "************7654",
                         LocalDate.now().plusDays(30),
@@ -435,6 +456,6 @@ class UserCardServiceTest {
         assertThat(result.getContent()).hasSize(1);
 
 
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
+        verify(cardRepository).findRows(any(Specification.class), eq(pageable));
     }
 }
\ No newline at end of file
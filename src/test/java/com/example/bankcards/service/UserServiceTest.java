@@ -14,6 +14,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -43,6 +44,9 @@ class UserServiceTest {
     @Mock
     private RoleRepository roleRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private UserService userService;
 
@@ -82,7 +86,7 @@ class UserServiceTest {
     @DisplayName("Когда находим пользователя по существующему ID, тогда возвращается UserResponse")
     void findUserById_existingId_returnsUserResponse() {
 
-        when(userRepository.findById(1L))
+        when(userRepository.findWithRolesById(1L))
                 .thenReturn(Optional.of(testUser));
         when(mapper.toDto(testUser))
                 .thenReturn(expectedUserResponse);
@@ -95,7 +99,7 @@ class UserServiceTest {
         assertThat(result.id()).isEqualTo(1L);
         assertThat(result.name()).isEqualTo("testuser");
 
-        verify(userRepository).findById(1L);
+        verify(userRepository).findWithRolesById(1L);
         verify(mapper).toDto(testUser);
     }
 
@@ -103,7 +107,7 @@ class UserServiceTest {
     @DisplayName("Когда находим пользователя по несуществующему ID, тогда выбрасывается UserNotFoundException")
     void findUserById_nonExistentId_throwsException() {
 
-        when(userRepository.findById(999L))
+        when(userRepository.findWithRolesById(999L))
                 .thenReturn(Optional.empty());
 
 
@@ -111,7 +115,7 @@ class UserServiceTest {
                 .isInstanceOf(UserNotFoundException.class)
                 .hasMessageContaining("999");
 
-        verify(userRepository).findById(999L);
+        verify(userRepository).findWithRolesById(999L);
         verifyNoInteractions(mapper);
     }
 
@@ -153,6 +157,7 @@ class UserServiceTest {
 
         verify(userRepository).existsById(1L);
         verify(userRepository).deleteById(1L);
+        verify(eventPublisher).publishEvent(new UserChangedEvent(1L));
     }
 
     @Test
@@ -264,6 +269,7 @@ class UserServiceTest {
         verify(mapper).mapRoles(List.of("ROLE_USER", "ROLE_ADMIN").toArray(String[]::new), roleRepository);
         verify(userRepository).save(any(User.class));
         verify(mapper).toDto(updatedUser);
+        verify(eventPublisher).publishEvent(new UserChangedEvent(1L));
     }
 
     @Test
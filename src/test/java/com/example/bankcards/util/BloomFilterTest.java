@@ -0,0 +1,56 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class BloomFilterTest {
+
+    @Test
+    @DisplayName("Когда ключ добавлен, тогда фильтр всегда отвечает \"возможно\"")
+    void mightContain_insertedKeys_neverFalseNegative() {
+        BloomFilter filter = new BloomFilter(10_000, 0.001);
+        var keys = IntStream.range(0, 10_000).mapToObj(i -> UUID.randomUUID().toString()).toList();
+
+
+        keys.forEach(filter::put);
+
+
+        assertThat(keys).allMatch(filter::mightContain);
+        assertThat(filter.insertions()).isEqualTo(10_000);
+    }
+
+    @Test
+    @DisplayName("Когда фильтр заполнен до расчетного размера, тогда ложных совпадений около заданной доли")
+    void mightContain_absentKeys_falsePositivesNearConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.put(UUID.randomUUID().toString()));
+
+
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> filter.mightContain(UUID.randomUUID().toString()))
+                .count();
+
+
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    @Test
+    @DisplayName("Когда параметры фильтра некорректны, тогда выбрасывается исключение")
+    void constructor_invalidParameters_throwsException() {
+        assertThatThrownBy(() -> new BloomFilter(0, 0.01))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomFilter(100, 1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
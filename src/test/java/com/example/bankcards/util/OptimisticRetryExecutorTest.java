@@ -0,0 +1,95 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.config.RetryProperties;
+import com.example.bankcards.entity.Card;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.bankcards.util.OptimisticRetryExecutor.GIVE_UPS_METRIC;
+import static com.example.bankcards.util.OptimisticRetryExecutor.RETRIES_METRIC;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+@SpringBootTest
+class OptimisticRetryExecutorTest {
+
+    private OptimisticRetryExecutor executor;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        RetryProperties properties = new RetryProperties();
+        properties.setMaxAttempts(3);
+        properties.setInitialBackoff(Duration.ofMillis(1));
+        properties.setMaxBackoff(Duration.ofMillis(5));
+
+        executor = new OptimisticRetryExecutor();
+        ReflectionTestUtils.setField(executor, "transactionOperations", TransactionOperations.withoutTransaction());
+        ReflectionTestUtils.setField(executor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(executor, "properties", properties);
+    }
+
+    @Test
+    @DisplayName("Когда конфликт версий разрешается со второй попытки, тогда возвращается результат и считается один повтор")
+    void execute_conflictThenSuccess_returnsResultAndCountsRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = executor.execute("transfer", 1L, () -> {
+            if (attempts.incrementAndGet() == 1)
+                throw new ObjectOptimisticLockingFailureException(Card.class, 7L);
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(meterRegistry.get(RETRIES_METRIC).tags("operation", "transfer").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get(RETRIES_METRIC).counter().getId().getTag("card")).isNull();
+        assertThat(meterRegistry.find(GIVE_UPS_METRIC).counter()).isNull();
+    }
+
+    @Test
+    @DisplayName("Когда конфликт не разрешается за все попытки, тогда исключение пробрасывается и считается отказ")
+    void execute_persistentConflict_givesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> executor.execute("block", 5L, () -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockException("stale");
+        })).isInstanceOf(OptimisticLockException.class);
+
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(meterRegistry.get(RETRIES_METRIC).tags("operation", "block").counter().count())
+                .isEqualTo(2.0);
+        assertThat(meterRegistry.get(GIVE_UPS_METRIC).tags("operation", "block").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Когда операция падает не из-за версии, тогда повтора нет")
+    void execute_otherException_notRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> executor.execute("transfer", 1L, () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("сумма перевода должна быть положительным числом");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(meterRegistry.find(RETRIES_METRIC).counter()).isNull();
+    }
+}